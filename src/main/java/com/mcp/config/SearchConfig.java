@@ -0,0 +1,21 @@
+package com.mcp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class SearchConfig {
+    /**
+     * Work-stealing pool used by the parallel file walks and searches.
+     *
+     * @param parallelism the number of worker threads; 0 or less uses one worker per available processor
+     * @return the search pool
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool searchPool(@Value("${app.search.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
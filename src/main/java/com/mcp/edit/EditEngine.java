@@ -0,0 +1,140 @@
+package com.mcp.edit;
+
+import com.mcp.model.Edit;
+import com.mcp.model.EditResult;
+import com.mcp.search.AhoCorasickMatcher;
+import com.mcp.search.HorspoolMatcher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Applies a list of text replacements to the raw bytes of a file in one splice.
+ * <p>
+ * Every edit is located in the original content, not in the result of the previous edits: all the old texts
+ * are found in one pass with an Aho-Corasick automaton (or one Boyer-Moore-Horspool scan per edit when the
+ * old texts are too large for a compact automaton), each must occur exactly once, and no two may overlap.
+ * The result is then assembled with a single copy of the unchanged ranges. Edit texts are written with
+ * {@code \n} line breaks and converted to {@code \r\n} when the file uses them; bytes outside the edited
+ * ranges are copied as they are, whatever their encoding.
+ */
+public final class EditEngine {
+    private static final int MAX_AUTOMATON_BYTES = 4096;
+
+    private EditEngine() {
+    }
+
+    /**
+     * Locates and applies the edits.
+     *
+     * @param path    the file being edited, for error messages
+     * @param content the original content
+     * @param edits   the replacements
+     * @return the modified content and the replaced spans, or an error message
+     */
+    public static EditResult apply(Path path, byte[] content, List<Edit> edits) {
+        if (edits == null || edits.isEmpty()) {
+            return EditResult.error("ERROR: NO EDITS GIVEN FOR FILE: " + path);
+        }
+        boolean crlf = usesCrlf(content);
+        List<byte[]> oldTexts = new ArrayList<>(edits.size());
+        List<byte[]> newTexts = new ArrayList<>(edits.size());
+        for (Edit edit : edits) {
+            if (edit.oldText() == null || edit.oldText().isEmpty()) {
+                return EditResult.error("ERROR: TEXT TO REPLACE IS EMPTY IN EDIT FOR FILE: " + path);
+            }
+            oldTexts.add(encode(edit.oldText(), crlf));
+            newTexts.add(encode(edit.newText() == null ? "" : edit.newText(), crlf));
+        }
+        int[] starts = new int[edits.size()];
+        int[] counts = new int[edits.size()];
+        locate(ByteBuffer.wrap(content), oldTexts, starts, counts);
+
+        List<EditSpan> spans = new ArrayList<>(edits.size());
+        for (int i = 0; i < edits.size(); i++) {
+            if (counts[i] == 0) {
+                return EditResult.error("ERROR: TEXT TO REPLACE NOT FOUND IN FILE: " + path + " - TEXT: " + edits.get(i).oldText());
+            }
+            if (counts[i] > 1) {
+                return EditResult.error("ERROR: TEXT TO REPLACE FOUND " + counts[i] + " TIMES IN FILE: " + path
+                        + " - ADD SURROUNDING LINES TO MAKE IT UNIQUE - TEXT: " + edits.get(i).oldText());
+            }
+            spans.add(new EditSpan(starts[i], starts[i] + oldTexts.get(i).length, newTexts.get(i)));
+        }
+        spans.sort(Comparator.comparingInt(EditSpan::start));
+        for (int i = 1; i < spans.size(); i++) {
+            if (spans.get(i).start() < spans.get(i - 1).end()) {
+                return EditResult.error("ERROR: OVERLAPPING EDITS IN FILE: " + path + " - AT BYTES "
+                        + spans.get(i - 1).start() + " AND " + spans.get(i).start());
+            }
+        }
+        return new EditResult(content, splice(content, spans), spans, null);
+    }
+
+    /**
+     * Finds the first occurrence of every old text and counts its occurrences, up to two.
+     */
+    private static void locate(ByteBuffer buffer, List<byte[]> oldTexts, int[] starts, int[] counts) {
+        int limit = buffer.limit();
+        int total = oldTexts.stream().mapToInt(text -> text.length).sum();
+        if (oldTexts.size() > 1 && total <= MAX_AUTOMATON_BYTES) {
+            int[] remaining = {oldTexts.size() * 2};
+            new AhoCorasickMatcher(oldTexts).scan(buffer, 0, limit, (start, end, pattern) -> {
+                if (counts[pattern] < 2) {
+                    if (counts[pattern]++ == 0) {
+                        starts[pattern] = start;
+                    }
+                    remaining[0]--;
+                }
+                return remaining[0] > 0;
+            });
+            return;
+        }
+        for (int i = 0; i < oldTexts.size(); i++) {
+            HorspoolMatcher matcher = new HorspoolMatcher(oldTexts.get(i));
+            int first = matcher.indexOf(buffer, 0, limit);
+            if (first >= 0) {
+                starts[i] = first;
+                counts[i] = matcher.indexOf(buffer, first + 1, limit) >= 0 ? 2 : 1;
+            }
+        }
+    }
+
+    private static byte[] splice(byte[] content, List<EditSpan> spans) {
+        int length = content.length;
+        for (EditSpan span : spans) {
+            length += span.replacement().length - (span.end() - span.start());
+        }
+        byte[] result = new byte[length];
+        int from = 0;
+        int to = 0;
+        for (EditSpan span : spans) {
+            int unchanged = span.start() - from;
+            System.arraycopy(content, from, result, to, unchanged);
+            to += unchanged;
+            System.arraycopy(span.replacement(), 0, result, to, span.replacement().length);
+            to += span.replacement().length;
+            from = span.end();
+        }
+        System.arraycopy(content, from, result, to, content.length - from);
+        return result;
+    }
+
+    private static byte[] encode(String text, boolean crlf) {
+        String normalized = text.replace("\r\n", "\n");
+        return (crlf ? normalized.replace("\n", "\r\n") : normalized).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean usesCrlf(byte[] content) {
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                return i > 0 && content[i - 1] == '\r';
+            }
+        }
+        return false;
+    }
+}
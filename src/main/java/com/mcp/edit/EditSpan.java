@@ -0,0 +1,11 @@
+package com.mcp.edit;
+
+/**
+ * A replaced range of the original content.
+ *
+ * @param start       the offset of the first replaced byte
+ * @param end         the offset after the last replaced byte
+ * @param replacement the bytes that replace the range
+ */
+public record EditSpan(int start, int end, byte[] replacement) {
+}
@@ -0,0 +1,180 @@
+package com.mcp.edit;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.UnifiedDiffUtils;
+import com.github.difflib.patch.Patch;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds a unified diff of an edit from the replaced spans alone.
+ * <p>
+ * Each span is widened to whole lines plus the context lines around it, overlapping windows are merged,
+ * and only the lines of each window are decoded and diffed. Hunk headers are then shifted to the window's
+ * position in the file, so the cost depends on the size of the change rather than on the size of the file.
+ * Windows too large for a line diff are shown as a plain replacement, and the output stops at a line cap.
+ */
+public final class HunkDiff {
+    private static final int MAX_MYERS_LINES = 20_000;
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(,\\d+)? \\+(\\d+)(,\\d+)? @@$");
+
+    private HunkDiff() {
+    }
+
+    /**
+     * Generates the unified diff of an edit, stopping once it reaches a maximum number of lines.
+     *
+     * @param path         the edited file, for the diff headers
+     * @param original     the original content
+     * @param spans        the replaced spans, sorted and not overlapping
+     * @param contextLines the number of unchanged lines to show around each change
+     * @param maxLines     the maximum number of hunk lines; the rest of the diff is replaced by a note
+     * @return the diff lines, starting with the file headers
+     */
+    public static List<String> unifiedDiff(Path path, byte[] original, List<EditSpan> spans, int contextLines, int maxLines) {
+        List<String> diff = new ArrayList<>();
+        diff.add("--- " + path);
+        diff.add("+++ " + path);
+        int limit = maxLines + 2;
+        int lineNumber = 1;
+        int counted = 0;
+        int delta = 0;
+        List<int[]> windows = windows(original, spans, contextLines);
+        for (int w = 0; w < windows.size(); w++) {
+            int[] window = windows.get(w);
+            lineNumber += countNewlines(original, counted, window[0]);
+            counted = window[0];
+            List<String> originalLines = lines(original, window[0], window[1]);
+            List<String> modifiedLines = lines(splice(original, spans, window[0], window[1]), 0, -1);
+            List<String> hunks = originalLines.size() + modifiedLines.size() > MAX_MYERS_LINES
+                    ? replaceHunk(originalLines, modifiedLines, limit - diff.size())
+                    : myersHunks(originalLines, modifiedLines, contextLines);
+            for (String line : hunks) {
+                if (diff.size() >= limit) {
+                    diff.add("... DIFF TRUNCATED AT " + maxLines + " LINES - " + (windows.size() - w - 1)
+                            + " MORE CHANGED REGIONS NOT SHOWN");
+                    return diff;
+                }
+                diff.add(shiftHeader(line, lineNumber - 1, lineNumber - 1 + delta));
+            }
+            delta += modifiedLines.size() - originalLines.size();
+        }
+        return diff;
+    }
+
+    private static List<String> myersHunks(List<String> originalLines, List<String> modifiedLines, int contextLines) {
+        Patch<String> patch = DiffUtils.diff(originalLines, modifiedLines);
+        List<String> hunks = UnifiedDiffUtils.generateUnifiedDiff("", "", originalLines, patch, contextLines);
+        return hunks.subList(Math.min(2, hunks.size()), hunks.size());
+    }
+
+    /**
+     * Shows a window that is too large to diff line by line as the removal of all its lines followed by the
+     * addition of the new ones, producing only as many lines as the diff can still take.
+     */
+    private static List<String> replaceHunk(List<String> originalLines, List<String> modifiedLines, int room) {
+        List<String> hunk = new ArrayList<>();
+        hunk.add("@@ -1," + originalLines.size() + " +1," + modifiedLines.size() + " @@");
+        for (int i = 0; i < originalLines.size() && hunk.size() <= room; i++) {
+            hunk.add("-" + originalLines.get(i));
+        }
+        for (int i = 0; i < modifiedLines.size() && hunk.size() <= room; i++) {
+            hunk.add("+" + modifiedLines.get(i));
+        }
+        return hunk;
+    }
+
+    /**
+     * Widens each span to whole lines plus context and merges the windows that touch.
+     */
+    private static List<int[]> windows(byte[] content, List<EditSpan> spans, int contextLines) {
+        List<int[]> windows = new ArrayList<>();
+        for (EditSpan span : spans) {
+            int start = lineStart(content, span.start());
+            int end = afterLine(content, Math.max(span.start(), span.end() - 1));
+            for (int i = 0; i < contextLines && start > 0; i++) {
+                start = lineStart(content, start - 1);
+            }
+            for (int i = 0; i < contextLines && end < content.length; i++) {
+                end = afterLine(content, end);
+            }
+            int[] last = windows.isEmpty() ? null : windows.getLast();
+            if (last != null && start <= last[1]) {
+                last[1] = Math.max(last[1], end);
+            } else {
+                windows.add(new int[]{start, end});
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * Returns the bytes of a window of the original content with the spans inside it replaced.
+     */
+    private static byte[] splice(byte[] content, List<EditSpan> spans, int from, int to) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(to - from);
+        int position = from;
+        for (EditSpan span : spans) {
+            if (span.start() >= from && span.end() <= to) {
+                out.write(content, position, span.start() - position);
+                out.writeBytes(span.replacement());
+                position = span.end();
+            }
+        }
+        out.write(content, position, to - position);
+        return out.toByteArray();
+    }
+
+    private static List<String> lines(byte[] content, int from, int to) {
+        int end = to < 0 ? content.length : to;
+        String text = new String(content, from, end - from, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>(Arrays.asList(text.split("\r?\n", -1)));
+        if (text.endsWith("\n")) {
+            lines.removeLast();
+        }
+        return lines;
+    }
+
+    private static String shiftHeader(String line, int originalOffset, int modifiedOffset) {
+        Matcher matcher = HUNK_HEADER.matcher(line);
+        if (!matcher.matches()) {
+            return line;
+        }
+        return "@@ -" + (Integer.parseInt(matcher.group(1)) + originalOffset) + (matcher.group(2) == null ? "" : matcher.group(2))
+                + " +" + (Integer.parseInt(matcher.group(3)) + modifiedOffset) + (matcher.group(4) == null ? "" : matcher.group(4))
+                + " @@";
+    }
+
+    private static int countNewlines(byte[] content, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (content[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int lineStart(byte[] content, int index) {
+        int i = index;
+        while (i > 0 && content[i - 1] != '\n') {
+            i--;
+        }
+        return i;
+    }
+
+    private static int afterLine(byte[] content, int index) {
+        int i = index;
+        while (i < content.length && content[i] != '\n') {
+            i++;
+        }
+        return Math.min(i + 1, content.length);
+    }
+}
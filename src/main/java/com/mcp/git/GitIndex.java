@@ -0,0 +1,142 @@
+package com.mcp.git;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The entries of a repository's index file ({@code .git/index}), versions 2 to 4.
+ * <p>
+ * Besides the staged blob id, each entry keeps the size and modification time the file had when it was staged,
+ * which lets a caller skip hashing files whose stat data is unchanged. Extensions after the entries are ignored.
+ */
+public final class GitIndex {
+    private static final int SIGNATURE = 0x44495243;
+    private static final int FLAG_EXTENDED = 0x4000;
+    private static final int FLAG_SKIP_WORKTREE = 0x4000;
+
+    private final Map<String, Entry> entries;
+    private final long modifiedSeconds;
+
+    private GitIndex(Map<String, Entry> entries, long modifiedSeconds) {
+        this.entries = entries;
+        this.modifiedSeconds = modifiedSeconds;
+    }
+
+    /**
+     * An index entry.
+     *
+     * @param path          the path relative to the work tree, with {@code /} separators
+     * @param mode          the git file mode
+     * @param id            the hex id of the staged blob
+     * @param mtimeSeconds  the modification time of the file when it was staged, in seconds
+     * @param mtimeNanos    the nanosecond part of that time, or 0 if git did not record it
+     * @param size          the size of the file when it was staged, truncated to 32 bits
+     * @param stage         the merge stage, 0 unless the path has conflicts
+     * @param skipWorktree  whether the file is outside a sparse checkout
+     */
+    public record Entry(String path, int mode, String id, long mtimeSeconds, int mtimeNanos, int size, int stage,
+                        boolean skipWorktree) {
+    }
+
+    /**
+     * Parses an index file.
+     *
+     * @param data            the content of the file
+     * @param modifiedSeconds the modification time of the file in seconds, used to detect racily clean entries
+     * @return the index
+     * @throws IOException if the file is not a supported index
+     */
+    public static GitIndex parse(byte[] data, long modifiedSeconds) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < 12 || buffer.getInt(0) != SIGNATURE) {
+            throw new IOException("Not a git index file");
+        }
+        int version = buffer.getInt(4);
+        if (version < 2 || version > 4) {
+            throw new IOException("Unsupported git index version " + version);
+        }
+        int count = buffer.getInt(8);
+        Map<String, Entry> entries = new LinkedHashMap<>(count * 4 / 3 + 1);
+        HexFormat hex = HexFormat.of();
+        byte[] previous = new byte[0];
+        int position = 12;
+        try {
+            for (int i = 0; i < count; i++) {
+                int start = position;
+                long mtimeSeconds = buffer.getInt(start + 8) & 0xffffffffL;
+                int mtimeNanos = buffer.getInt(start + 12);
+                int mode = buffer.getInt(start + 24);
+                int size = buffer.getInt(start + 36);
+                String id = hex.formatHex(data, start + 40, start + 60);
+                int flags = buffer.getShort(start + 60) & 0xffff;
+                position = start + 62;
+                boolean skipWorktree = false;
+                if ((flags & FLAG_EXTENDED) != 0) {
+                    skipWorktree = (buffer.getShort(position) & FLAG_SKIP_WORKTREE) != 0;
+                    position += 2;
+                }
+                byte[] name;
+                if (version == 4) {
+                    int c = data[position++] & 0xff;
+                    int strip = c & 0x7f;
+                    while ((c & 0x80) != 0) {
+                        c = data[position++] & 0xff;
+                        strip = ((strip + 1) << 7) | (c & 0x7f);
+                    }
+                    int end = nul(data, position);
+                    name = Arrays.copyOf(previous, previous.length - strip + end - position);
+                    System.arraycopy(data, position, name, previous.length - strip, end - position);
+                    position = end + 1;
+                } else {
+                    int end = nul(data, position);
+                    name = Arrays.copyOfRange(data, position, end);
+                    position = start + ((end - start + 8) & ~7);
+                }
+                previous = name;
+                String path = new String(name, StandardCharsets.UTF_8);
+                entries.putIfAbsent(path, new Entry(path, mode, id, mtimeSeconds, mtimeNanos, size,
+                        (flags >> 12) & 3, skipWorktree));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated git index file", e);
+        }
+        return new GitIndex(Map.copyOf(entries), modifiedSeconds);
+    }
+
+    public Map<String, Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Checks whether a file can be taken as unchanged since it was staged without reading it. Entries written
+     * in the same second as the index itself are never trusted, since the file may have changed again within
+     * that second without its modification time moving.
+     *
+     * @param entry        the index entry
+     * @param size         the current size of the file
+     * @param mtimeSeconds the current modification time, in seconds
+     * @param mtimeNanos   the nanosecond part of the current modification time
+     * @return true if the stat data matches the entry
+     */
+    public boolean isStatClean(Entry entry, long size, long mtimeSeconds, int mtimeNanos) {
+        return entry.stage() == 0
+                && entry.size() == (int) size
+                && entry.mtimeSeconds() == (mtimeSeconds & 0xffffffffL)
+                && (entry.mtimeNanos() == 0 || entry.mtimeNanos() == mtimeNanos)
+                && entry.mtimeSeconds() < modifiedSeconds;
+    }
+
+    private static int nul(byte[] data, int from) throws IOException {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == 0) {
+                return i;
+            }
+        }
+        throw new IOException("Truncated git index file");
+    }
+}
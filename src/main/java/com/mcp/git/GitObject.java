@@ -0,0 +1,24 @@
+package com.mcp.git;
+
+/**
+ * An inflated git object.
+ *
+ * @param type the object type, one of the {@code TYPE_} constants
+ * @param data the object content, without the loose object header
+ */
+public record GitObject(int type, byte[] data) {
+    public static final int TYPE_COMMIT = 1;
+    public static final int TYPE_TREE = 2;
+    public static final int TYPE_BLOB = 3;
+    public static final int TYPE_TAG = 4;
+
+    static int typeOf(String name) {
+        return switch (name) {
+            case "commit" -> TYPE_COMMIT;
+            case "tree" -> TYPE_TREE;
+            case "blob" -> TYPE_BLOB;
+            case "tag" -> TYPE_TAG;
+            default -> throw new IllegalArgumentException("Unknown object type: " + name);
+        };
+    }
+}
@@ -0,0 +1,335 @@
+package com.mcp.git;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Read-only access to a git repository without running git.
+ * <p>
+ * Refs are resolved from the loose ref files and {@code packed-refs}, objects are read through an
+ * {@link ObjectDatabase}, and the index is parsed from {@code .git/index}. The flattened tree of the last
+ * commit asked for and the parsed index are cached, and reused for as long as the commit id and the index
+ * file's size and modification time stay the same. Linked work trees ({@code .git} files pointing at a
+ * {@code gitdir}) are supported; alternates and SHA-256 repositories are not.
+ */
+public final class GitRepository {
+    private static final int MAX_SYMREF_DEPTH = 5;
+    private static final String[] REF_PREFIXES = {"", "refs/", "refs/tags/", "refs/heads/", "refs/remotes/"};
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path workTree;
+    private final Path gitDir;
+    private final Path commonDir;
+    private final ObjectDatabase objects;
+    private String treeCommit;
+    private Map<String, TreeEntry> tree;
+    private long indexModified;
+    private long indexSize;
+    private GitIndex index;
+
+    private GitRepository(Path workTree, Path gitDir, Path commonDir) {
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.objects = new ObjectDatabase(commonDir.resolve("objects"));
+    }
+
+    /**
+     * Finds the repository containing a path by looking for a {@code .git} directory or file in the path and
+     * its parents.
+     *
+     * @param path a file or directory inside the work tree
+     * @return the repository, or null if the path is not inside one
+     * @throws IOException if a {@code .git} file cannot be read
+     */
+    public static GitRepository find(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().normalize();
+        if (!Files.isDirectory(directory)) {
+            directory = directory.getParent();
+        }
+        for (; directory != null; directory = directory.getParent()) {
+            Path dotGit = directory.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                return new GitRepository(directory, dotGit, dotGit);
+            }
+            if (Files.isRegularFile(dotGit)) {
+                String content = Files.readString(dotGit).trim();
+                if (!content.startsWith("gitdir:")) {
+                    throw new IOException("Invalid .git file: " + dotGit);
+                }
+                Path gitDir = directory.resolve(content.substring("gitdir:".length()).trim()).normalize();
+                Path commonDirFile = gitDir.resolve("commondir");
+                Path commonDir = Files.exists(commonDirFile)
+                        ? gitDir.resolve(Files.readString(commonDirFile).trim()).normalize()
+                        : gitDir;
+                return new GitRepository(directory, gitDir, commonDir);
+            }
+        }
+        return null;
+    }
+
+    public Path workTree() {
+        return workTree;
+    }
+
+    public Path gitDir() {
+        return gitDir;
+    }
+
+    /**
+     * Resolves the commit the work tree is compared against: the upstream of the current branch as configured
+     * by {@code branch.<name>.remote} and {@code branch.<name>.merge}, else the given fallback name, else HEAD.
+     *
+     * @param fallback the name to try when the branch has no upstream
+     * @return the commit id
+     * @throws IOException if HEAD cannot be resolved
+     */
+    public String baseCommit(String fallback) throws IOException {
+        Map<String, String> config = config();
+        String head = readRefFile(gitDir.resolve("HEAD"));
+        if (head != null && head.startsWith("ref: refs/heads/")) {
+            String branch = head.substring("ref: refs/heads/".length());
+            String remote = config.get("branch." + branch + ".remote");
+            String merge = config.get("branch." + branch + ".merge");
+            if (remote != null && merge != null) {
+                String upstream = ".".equals(remote)
+                        ? merge
+                        : "refs/remotes/" + remote + "/" + merge.substring(merge.startsWith("refs/heads/") ? "refs/heads/".length() : 0);
+                String id = resolveRef(upstream, 0);
+                if (id != null) {
+                    return peelToCommit(id);
+                }
+            }
+        }
+        String id = fallback == null ? null : resolve(fallback);
+        if (id == null) {
+            id = resolve("HEAD");
+        }
+        if (id == null) {
+            throw new IOException("Cannot resolve HEAD in " + gitDir);
+        }
+        return peelToCommit(id);
+    }
+
+    /**
+     * Resolves a ref name the way {@code git rev-parse} does, trying {@code <name>}, {@code refs/<name>},
+     * {@code refs/tags/<name>}, {@code refs/heads/<name>}, {@code refs/remotes/<name>} and
+     * {@code refs/remotes/<name>/HEAD} in that order.
+     *
+     * @param name the ref name
+     * @return the object id, or null if no ref matches
+     * @throws IOException if a ref file cannot be read
+     */
+    public String resolve(String name) throws IOException {
+        for (String prefix : REF_PREFIXES) {
+            String id = resolveRef(prefix + name, 0);
+            if (id != null) {
+                return id;
+            }
+        }
+        return resolveRef("refs/remotes/" + name + "/HEAD", 0);
+    }
+
+    /**
+     * Returns every file of a commit's tree, keyed by its path relative to the work tree. The result for the
+     * last commit asked for is cached.
+     *
+     * @param commitId the commit id
+     * @return the files of the commit
+     * @throws IOException if an object is missing or corrupt
+     */
+    public synchronized Map<String, TreeEntry> tree(String commitId) throws IOException {
+        if (!commitId.equals(treeCommit)) {
+            GitObject commit = objects.read(commitId);
+            String text = new String(commit.data(), StandardCharsets.UTF_8);
+            if (commit.type() != GitObject.TYPE_COMMIT || !text.startsWith("tree ")) {
+                throw new IOException("Not a commit: " + commitId);
+            }
+            Map<String, TreeEntry> files = new HashMap<>();
+            flatten(text.substring(5, 45), "", files);
+            tree = Map.copyOf(files);
+            treeCommit = commitId;
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the parsed index, re-reading it only when the index file changed.
+     *
+     * @return the index, or an empty index if the repository has none
+     * @throws IOException if the index cannot be read or parsed
+     */
+    public synchronized GitIndex index() throws IOException {
+        Path file = gitDir.resolve("index");
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return GitIndex.parse(new byte[]{'D', 'I', 'R', 'C', 0, 0, 0, 2, 0, 0, 0, 0}, 0);
+        }
+        long modified = attrs.lastModifiedTime().toMillis();
+        if (index == null || modified != indexModified || attrs.size() != indexSize) {
+            index = GitIndex.parse(Files.readAllBytes(file), modified / 1000);
+            indexModified = modified;
+            indexSize = attrs.size();
+        }
+        return index;
+    }
+
+    /**
+     * Reads the content of a blob.
+     *
+     * @param id the hex blob id
+     * @return the content
+     * @throws IOException if the object is missing, corrupt or not a blob
+     */
+    public byte[] blob(String id) throws IOException {
+        GitObject object = objects.read(id);
+        if (object.type() != GitObject.TYPE_BLOB) {
+            throw new IOException("Not a blob: " + id);
+        }
+        return object.data();
+    }
+
+    /**
+     * Reads the repository configuration as a flat map of lower-case {@code section.key} or
+     * {@code section.subsection.key} names to their last value. Includes are not followed.
+     *
+     * @return the configuration
+     * @throws IOException if the config file cannot be read
+     */
+    public Map<String, String> config() throws IOException {
+        Map<String, String> config = new HashMap<>();
+        Path file = commonDir.resolve("config");
+        if (!Files.exists(file)) {
+            return config;
+        }
+        String section = "";
+        for (String raw : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.indexOf(']') > 0) {
+                String header = line.substring(1, line.indexOf(']')).trim();
+                int quote = header.indexOf('"');
+                section = quote < 0
+                        ? header.toLowerCase(Locale.ROOT)
+                        : header.substring(0, quote).trim().toLowerCase(Locale.ROOT) + "."
+                        + header.substring(quote + 1, header.lastIndexOf('"'));
+                continue;
+            }
+            int equals = line.indexOf('=');
+            String key = (equals < 0 ? line : line.substring(0, equals)).trim().toLowerCase(Locale.ROOT);
+            String value = equals < 0 ? "true" : unquote(line.substring(equals + 1).trim());
+            config.put(section + "." + key, value);
+        }
+        return config;
+    }
+
+    private void flatten(String treeId, String prefix, Map<String, TreeEntry> files) throws IOException {
+        Deque<String[]> pending = new ArrayDeque<>();
+        pending.push(new String[]{treeId, prefix});
+        while (!pending.isEmpty()) {
+            String[] next = pending.pop();
+            GitObject object = objects.read(next[0]);
+            if (object.type() != GitObject.TYPE_TREE) {
+                throw new IOException("Not a tree: " + next[0]);
+            }
+            byte[] data = object.data();
+            int position = 0;
+            while (position < data.length) {
+                int space = position;
+                int mode = 0;
+                while (data[space] != ' ') {
+                    mode = mode * 8 + (data[space++] - '0');
+                }
+                int nul = space + 1;
+                while (data[nul] != 0) {
+                    nul++;
+                }
+                String name = next[1] + new String(data, space + 1, nul - space - 1, StandardCharsets.UTF_8);
+                String id = HEX.formatHex(data, nul + 1, nul + 21);
+                if (mode == TreeEntry.MODE_TREE) {
+                    pending.push(new String[]{id, name + "/"});
+                } else {
+                    files.put(name, new TreeEntry(mode, id));
+                }
+                position = nul + 21;
+            }
+        }
+    }
+
+    private String peelToCommit(String id) throws IOException {
+        String current = id;
+        for (int depth = 0; depth <= MAX_SYMREF_DEPTH; depth++) {
+            GitObject object = objects.read(current);
+            if (object.type() == GitObject.TYPE_COMMIT) {
+                return current;
+            }
+            String text = new String(object.data(), StandardCharsets.UTF_8);
+            if (object.type() != GitObject.TYPE_TAG || !text.startsWith("object ")) {
+                break;
+            }
+            current = text.substring(7, 47);
+        }
+        throw new IOException("Not a commit: " + id);
+    }
+
+    private String resolveRef(String name, int depth) throws IOException {
+        if (depth > MAX_SYMREF_DEPTH || name.contains("..")) {
+            return null;
+        }
+        Path base = name.equals("HEAD") || !name.startsWith("refs/") ? gitDir : commonDir;
+        String content = readRefFile(base.resolve(name));
+        if (content == null && name.startsWith("refs/")) {
+            content = packedRef(name);
+        }
+        if (content == null) {
+            return null;
+        }
+        if (content.startsWith("ref: ")) {
+            return resolveRef(content.substring(5).trim(), depth + 1);
+        }
+        return content.length() >= 40 && HexFormat.isHexDigit(content.charAt(0)) ? content.substring(0, 40) : null;
+    }
+
+    private String packedRef(String name) throws IOException {
+        Path file = commonDir.resolve("packed-refs");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            if (line.length() > 41 && line.charAt(40) == ' ' && line.substring(41).equals(name)) {
+                return line.substring(0, 40);
+            }
+        }
+        return null;
+    }
+
+    private static String readRefFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        return Files.readString(file).trim();
+    }
+
+    private static String unquote(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                ? value.substring(1, value.length() - 1)
+                : value;
+    }
+}
@@ -0,0 +1,84 @@
+package com.mcp.git;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file memory-mapped in fixed-size windows addressed by long offsets, so files larger than the
+ * 2 GiB limit of a single {@link ByteBuffer} can be read.
+ * <p>
+ * Each window also maps the first {@link #OVERLAP} bytes of the next one, so a fixed-size value or object id
+ * never straddles two buffers. Only absolute accessors are used, so one instance is safe to share between
+ * threads.
+ */
+final class MappedFile {
+    static final int OVERLAP = 64;
+    static final int WINDOW_SHIFT = 30;
+
+    private final ByteBuffer[] windows;
+    private final int windowShift;
+    private final long size;
+
+    /**
+     * Maps a file.
+     *
+     * @param path        the file
+     * @param windowShift the base-2 logarithm of the window size
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedFile(Path path, int windowShift) throws IOException {
+        this.windowShift = windowShift;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            long window = 1L << windowShift;
+            this.windows = new ByteBuffer[(int) Math.max((size + window - 1) >>> windowShift, 1)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = (long) i << windowShift;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(window + OVERLAP, size - start));
+            }
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long position) {
+        return windows[(int) (position >>> windowShift)].get(offset(position));
+    }
+
+    int getInt(long position) {
+        return windows[(int) (position >>> windowShift)].getInt(offset(position));
+    }
+
+    long getLong(long position) {
+        return windows[(int) (position >>> windowShift)].getLong(offset(position));
+    }
+
+    /**
+     * Copies bytes into an array; the length must not exceed {@link #OVERLAP}.
+     */
+    void get(long position, byte[] destination) {
+        windows[(int) (position >>> windowShift)].get(offset(position), destination);
+    }
+
+    /**
+     * Returns the bytes from a position to the end of its window, or of the file if that comes first. Reading
+     * consecutive slices visits every byte exactly once.
+     *
+     * @param position the absolute position of the first byte
+     * @return a buffer of at least one byte
+     */
+    ByteBuffer slice(long position) {
+        int offset = offset(position);
+        int end = (int) Math.min(1L << windowShift, size - (position - offset));
+        return windows[(int) (position >>> windowShift)].slice(offset, end - offset);
+    }
+
+    private int offset(long position) {
+        return (int) (position & ((1L << windowShift) - 1));
+    }
+}
@@ -0,0 +1,123 @@
+package com.mcp.git;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The objects directory of a repository: loose objects first, then the packs.
+ * <p>
+ * Packs are opened once and kept mapped. When an object is found neither loose nor in the known packs, the
+ * pack directory is listed again before giving up, so packs written by a fetch or a repack since the last
+ * lookup are picked up without reopening the ones already mapped. A pack that cannot be opened is skipped, so
+ * it only fails lookups of the objects it alone holds; it is retried on the next rescan.
+ */
+final class ObjectDatabase {
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path directory;
+    private final Map<Path, PackFile> packs = new HashMap<>();
+    private volatile List<PackFile> packList = List.of();
+    private volatile List<String> skippedPacks = List.of();
+
+    ObjectDatabase(Path directory) {
+        this.directory = directory;
+    }
+
+    GitObject read(String id) throws IOException {
+        return read(HEX.parseHex(id));
+    }
+
+    GitObject read(byte[] id) throws IOException {
+        GitObject object = readLoose(id);
+        if (object != null) {
+            return object;
+        }
+        object = readPacked(packList, id);
+        if (object == null) {
+            object = readPacked(rescanPacks(), id);
+        }
+        if (object == null) {
+            List<String> skipped = skippedPacks;
+            throw new IOException("Missing git object " + HEX.formatHex(id)
+                    + (skipped.isEmpty() ? "" : " (unreadable packs: " + String.join("; ", skipped) + ")"));
+        }
+        return object;
+    }
+
+    private GitObject readLoose(byte[] id) throws IOException {
+        String hex = HEX.formatHex(id);
+        Path file = directory.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+        byte[] raw;
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(file))) {
+            raw = in.readAllBytes();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        int space = indexOf(raw, (byte) ' ', 0);
+        int nul = indexOf(raw, (byte) 0, space + 1);
+        if (space < 0 || nul < 0) {
+            throw new IOException("Corrupt loose object " + hex);
+        }
+        byte[] data = new byte[raw.length - nul - 1];
+        System.arraycopy(raw, nul + 1, data, 0, data.length);
+        return new GitObject(GitObject.typeOf(new String(raw, 0, space, StandardCharsets.US_ASCII)), data);
+    }
+
+    private GitObject readPacked(List<PackFile> candidates, byte[] id) throws IOException {
+        for (PackFile pack : candidates) {
+            long offset = pack.find(id);
+            if (offset >= 0) {
+                return pack.read(offset, this);
+            }
+        }
+        return null;
+    }
+
+    private synchronized List<PackFile> rescanPacks() throws IOException {
+        Path packDirectory = directory.resolve("pack");
+        if (!Files.isDirectory(packDirectory)) {
+            return packList;
+        }
+        List<PackFile> found = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(packDirectory, "*.idx")) {
+            for (Path index : stream) {
+                PackFile pack = packs.get(index);
+                if (pack == null) {
+                    try {
+                        pack = new PackFile(index);
+                    } catch (IOException e) {
+                        skipped.add(index.getFileName() + " - " + e.getMessage());
+                        continue;
+                    }
+                    packs.put(index, pack);
+                }
+                found.add(pack);
+            }
+        }
+        packs.values().retainAll(found);
+        packList = List.copyOf(found);
+        skippedPacks = List.copyOf(skipped);
+        return packList;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,225 @@
+package com.mcp.git;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A packfile and its version 2 index, both memory-mapped in windows so that packs larger than 2 GiB can be read.
+ * <p>
+ * Objects are looked up by a binary search of the index within the range given by its fan-out table, and read
+ * by inflating them straight from the mapped pack. Delta objects are resolved against their base, which for
+ * {@code REF_DELTA} entries may live in another pack or in a loose object. The mapped files are only read
+ * through absolute accessors, so one instance is safe to share between threads.
+ */
+final class PackFile {
+    private static final int IDX_MAGIC = 0xff744f63;
+    private static final int FANOUT = 8;
+    private static final int IDS = FANOUT + 256 * 4;
+    private static final int ID_LENGTH = 20;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+
+    private final Path path;
+    private final MappedFile index;
+    private final MappedFile pack;
+    private final int count;
+
+    PackFile(Path indexPath) throws IOException {
+        this(indexPath, MappedFile.WINDOW_SHIFT);
+    }
+
+    PackFile(Path indexPath, int windowShift) throws IOException {
+        String name = indexPath.getFileName().toString();
+        this.path = indexPath.resolveSibling(name.substring(0, name.length() - ".idx".length()) + ".pack");
+        this.index = new MappedFile(indexPath, windowShift);
+        this.pack = new MappedFile(path, windowShift);
+        if (index.size() < IDS || index.getInt(0) != IDX_MAGIC || index.getInt(4) != 2) {
+            throw new IOException("Unsupported pack index version: " + indexPath);
+        }
+        this.count = index.getInt(FANOUT + 255 * 4);
+    }
+
+    /**
+     * Finds the offset of an object in the pack.
+     *
+     * @param id the raw object id
+     * @return the offset, or -1 if the pack does not hold the object
+     */
+    long find(byte[] id) {
+        int first = id[0] & 0xff;
+        int low = first == 0 ? 0 : index.getInt(FANOUT + (first - 1) * 4);
+        int high = index.getInt(FANOUT + first * 4);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareId(id, IDS + (long) mid * ID_LENGTH);
+            if (cmp == 0) {
+                return offsetAt(mid);
+            }
+            if (cmp < 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads and, if it is a delta, resolves the object at an offset.
+     *
+     * @param offset   the offset of the object's header in the pack
+     * @param database the database used to resolve {@code REF_DELTA} bases
+     * @return the object
+     * @throws IOException if the object is corrupt or its base is missing
+     */
+    GitObject read(long offset, ObjectDatabase database) throws IOException {
+        long position = offset;
+        int c = pack.get(position++) & 0xff;
+        int type = (c >> 4) & 7;
+        long size = c & 15;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = pack.get(position++) & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+        if (type == OBJ_OFS_DELTA) {
+            c = pack.get(position++) & 0xff;
+            long distance = c & 0x7f;
+            while ((c & 0x80) != 0) {
+                c = pack.get(position++) & 0xff;
+                distance = ((distance + 1) << 7) | (c & 0x7f);
+            }
+            GitObject base = read(offset - distance, database);
+            return new GitObject(base.type(), applyDelta(base.data(), inflate(position, size)));
+        }
+        if (type == OBJ_REF_DELTA) {
+            byte[] baseId = new byte[ID_LENGTH];
+            pack.get(position, baseId);
+            GitObject base = database.read(baseId);
+            return new GitObject(base.type(), applyDelta(base.data(), inflate(position + ID_LENGTH, size)));
+        }
+        if (type < GitObject.TYPE_COMMIT || type > GitObject.TYPE_TAG) {
+            throw new IOException("Invalid object type " + type + " at offset " + offset + " in " + path);
+        }
+        return new GitObject(type, inflate(position, size));
+    }
+
+    private long offsetAt(int i) {
+        long offsets = IDS + (long) count * (ID_LENGTH + 4);
+        int offset = index.getInt(offsets + i * 4L);
+        if (offset >= 0) {
+            return offset;
+        }
+        return index.getLong(offsets + count * 4L + (offset & 0x7fffffffL) * 8);
+    }
+
+    private int compareId(byte[] id, long position) {
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int cmp = Integer.compare(id[i] & 0xff, index.get(position + i) & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Inflates an object's data, feeding the inflater one mapped window at a time.
+     */
+    private byte[] inflate(long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Object too large at offset " + position + " in " + path);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            long input = position;
+            byte[] data = new byte[(int) size];
+            int length = 0;
+            while (length < data.length) {
+                if (inflater.needsInput() && input < pack.size()) {
+                    ByteBuffer window = pack.slice(input);
+                    input += window.remaining();
+                    inflater.setInput(window);
+                }
+                int read = inflater.inflate(data, length, data.length - length);
+                if (read == 0 && (inflater.finished() || inflater.needsDictionary()
+                        || inflater.needsInput() && input >= pack.size())) {
+                    throw new IOException("Truncated object at offset " + position + " in " + path);
+                }
+                length += read;
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt object at offset " + position + " in " + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Rebuilds an object from its base and a delta made of copy and insert instructions.
+     */
+    private static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        int[] position = {0};
+        long baseSize = readSize(delta, position);
+        long resultSize = readSize(delta, position);
+        if (baseSize != base.length) {
+            throw new IOException("Delta base size mismatch");
+        }
+        byte[] result = new byte[(int) resultSize];
+        int p = position[0];
+        int length = 0;
+        try {
+            while (p < delta.length) {
+                int command = delta[p++] & 0xff;
+                if ((command & 0x80) != 0) {
+                    int offset = 0;
+                    int size = 0;
+                    for (int i = 0; i < 4; i++) {
+                        if ((command & (1 << i)) != 0) {
+                            offset |= (delta[p++] & 0xff) << (8 * i);
+                        }
+                    }
+                    for (int i = 0; i < 3; i++) {
+                        if ((command & (0x10 << i)) != 0) {
+                            size |= (delta[p++] & 0xff) << (8 * i);
+                        }
+                    }
+                    if (size == 0) {
+                        size = 0x10000;
+                    }
+                    System.arraycopy(base, offset, result, length, size);
+                    length += size;
+                } else if (command != 0) {
+                    System.arraycopy(delta, p, result, length, command);
+                    p += command;
+                    length += command;
+                } else {
+                    throw new IOException("Invalid delta instruction");
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt delta", e);
+        }
+        if (length != result.length) {
+            throw new IOException("Delta result size mismatch");
+        }
+        return result;
+    }
+
+    private static long readSize(byte[] delta, int[] position) {
+        long size = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = delta[position[0]++] & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return size;
+    }
+}
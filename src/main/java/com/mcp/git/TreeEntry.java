@@ -0,0 +1,15 @@
+package com.mcp.git;
+
+/**
+ * A file of a flattened tree.
+ *
+ * @param mode the git file mode, such as {@code 0100644}
+ * @param id   the hex id of the blob
+ */
+public record TreeEntry(int mode, String id) {
+    public static final int MODE_FILE = 0100644;
+    public static final int MODE_EXECUTABLE = 0100755;
+    public static final int MODE_SYMLINK = 0120000;
+    public static final int MODE_GITLINK = 0160000;
+    static final int MODE_TREE = 040000;
+}
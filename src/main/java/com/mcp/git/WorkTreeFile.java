@@ -0,0 +1,78 @@
+package com.mcp.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A tracked file as git would stage it from the work tree.
+ *
+ * @param content the file's bytes, or the link target for a symbolic link
+ * @param mode    the git file mode
+ */
+public record WorkTreeFile(byte[] content, int mode) {
+
+    /**
+     * Reads a tracked file from the work tree.
+     *
+     * @param workTree the root of the work tree
+     * @param path     the path relative to the work tree, with {@code /} separators
+     * @param staged   the file's index entry, whose mode is kept when {@code fileMode} is false
+     * @param fileMode whether the executable bit is tracked ({@code core.fileMode})
+     * @return the file, or null if it no longer exists or is not a file or link
+     * @throws IOException if the file cannot be read
+     */
+    public static WorkTreeFile read(Path workTree, String path, GitIndex.Entry staged, boolean fileMode) throws IOException {
+        Path file = workTree.resolve(path);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (attrs.isSymbolicLink()) {
+            String target = Files.readSymbolicLink(file).toString();
+            return new WorkTreeFile((File.separatorChar == '/' ? target : target.replace(File.separatorChar, '/'))
+                    .getBytes(StandardCharsets.UTF_8), TreeEntry.MODE_SYMLINK);
+        }
+        if (!attrs.isRegularFile()) {
+            return null;
+        }
+        int mode = !fileMode && staged != null ? staged.mode()
+                : Files.isExecutable(file) ? TreeEntry.MODE_EXECUTABLE : TreeEntry.MODE_FILE;
+        return new WorkTreeFile(Files.readAllBytes(file), mode);
+    }
+
+    /**
+     * Computes the id the file would get as a blob.
+     *
+     * @return the hex SHA-1 of the blob
+     */
+    public String id() {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(sha1.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    /**
+     * Checks whether the file is unchanged from a tree entry, content and mode.
+     *
+     * @param entry the tree entry
+     * @return true if the file would be staged as the same blob with the same mode
+     */
+    public boolean matches(TreeEntry entry) {
+        return entry != null && entry.mode() == mode && entry.id().equals(id());
+    }
+}
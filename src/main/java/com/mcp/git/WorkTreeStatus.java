@@ -0,0 +1,20 @@
+package com.mcp.git;
+
+import com.mcp.model.FileChange;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changed files of a work tree, with the state they were computed against.
+ *
+ * @param repository the repository
+ * @param baseCommit the commit the work tree was compared with
+ * @param tree       the files of the base commit
+ * @param index      the index the changes were computed with
+ * @param fileMode   whether the executable bit is tracked ({@code core.fileMode})
+ * @param changes    the changed files under the requested path, sorted by path
+ */
+public record WorkTreeStatus(GitRepository repository, String baseCommit, Map<String, TreeEntry> tree, GitIndex index,
+                             boolean fileMode, List<FileChange> changes) {
+}
@@ -0,0 +1,54 @@
+package com.mcp.index;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Basic attributes of a {@link MetadataIndex} entry. Only the modification time is indexed, so it also stands
+ * in for the access and creation times.
+ *
+ * @param type     the entry type, one of the {@link MetadataIndex} type constants
+ * @param size     the size in bytes
+ * @param modified the modification time in millis
+ */
+public record IndexedAttributes(byte type, long size, long modified) implements BasicFileAttributes {
+    @Override
+    public FileTime lastModifiedTime() {
+        return FileTime.fromMillis(modified);
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return lastModifiedTime();
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return lastModifiedTime();
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return type == MetadataIndex.FILE;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return type == MetadataIndex.DIRECTORY;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return type == MetadataIndex.OTHER;
+    }
+
+    @Override
+    public Object fileKey() {
+        return null;
+    }
+}
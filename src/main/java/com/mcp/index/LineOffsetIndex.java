@@ -0,0 +1,124 @@
+package com.mcp.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Sparse index of line start offsets in one file.
+ * <p>
+ * Only the offset of every {@value #STRIDE}th line is kept, and the index is only extended as far as a request
+ * needs, so looking up a line costs one scan of at most {@value #STRIDE} lines from the nearest checkpoint once
+ * the file has been scanned up to it. The index is tied to the size and modification time the file had when it
+ * was created; callers drop it when either changes.
+ */
+public class LineOffsetIndex {
+    public static final int STRIDE = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long modified;
+    private final long size;
+    private long[] checkpoints = new long[16];
+    private int count = 1;
+    private boolean complete;
+
+    public LineOffsetIndex(long modified, long size) {
+        this.modified = modified;
+        this.size = size;
+    }
+
+    /**
+     * Checks whether the index still describes a file.
+     *
+     * @param modified the file's last modified time in millis
+     * @param size     the file's size in bytes
+     * @return true if the file is unchanged since the index was created
+     */
+    public boolean matches(long modified, long size) {
+        return this.modified == modified && this.size == size;
+    }
+
+    /**
+     * Finds the byte offset at which a line starts.
+     *
+     * @param channel the open file
+     * @param line    the 1-based line number
+     * @return the offset of the line, or -1 if the file has fewer lines
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized long offsetOf(FileChannel channel, long line) throws IOException {
+        if (line < 1) {
+            throw new IllegalArgumentException("Line numbers start at 1");
+        }
+        long checkpoint = (line - 1) / STRIDE;
+        if (checkpoint >= count && !complete) {
+            extend(channel, checkpoint);
+        }
+        if (checkpoint >= count) {
+            return -1;
+        }
+        return scan(channel, checkpoints[(int) checkpoint], checkpoint * STRIDE + 1, line, false);
+    }
+
+    /**
+     * Scans forward from the last checkpoint, recording new checkpoints, until the given one is known or the
+     * file ends.
+     */
+    private void extend(FileChannel channel, long checkpoint) throws IOException {
+        scan(channel, checkpoints[count - 1], (long) (count - 1) * STRIDE + 1, checkpoint * STRIDE + 1, true);
+    }
+
+    /**
+     * Counts newlines from a known line start until the target line starts.
+     *
+     * @param offset the offset of a known line start
+     * @param line   the line number starting at that offset
+     * @param target the line to find
+     * @param record whether to record the checkpoints passed on the way
+     * @return the offset of the target line, or -1 if the file ends first
+     */
+    private long scan(FileChannel channel, long offset, long line, long target, boolean record) throws IOException {
+        if (line == target) {
+            return offset < size || offset == 0 ? offset : -1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = offset;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                long next = position + i + 1;
+                if (next >= size) {
+                    break;
+                }
+                line++;
+                if (record && (line - 1) % STRIDE == 0) {
+                    addCheckpoint(next);
+                }
+                if (line == target) {
+                    return next;
+                }
+            }
+            position += read;
+        }
+        if (record) {
+            complete = true;
+        }
+        return -1;
+    }
+
+    private void addCheckpoint(long offset) {
+        if (count == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, count * 2);
+        }
+        checkpoints[count++] = offset;
+    }
+}
@@ -0,0 +1,353 @@
+package com.mcp.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact in-memory tree of file and directory metadata.
+ * <p>
+ * Every node is an index into parallel primitive arrays holding its parent, first child, previous and next
+ * sibling, name, size, modification time and flags, so a node costs a few dozen bytes and no objects. Names are
+ * path segments interned in one reference-counted table and shared by every node with the same name; a name is
+ * dropped from the table when its last node is freed. Children are found through an open-addressing hash table
+ * keyed by parent and name, so a lookup or insertion costs the same however many siblings a directory has, and
+ * a path is found by following its segments down from the root, which makes the node tree a trie of path
+ * segments. Freed nodes are reused. The index is not thread-safe; callers guard it with their own lock.
+ */
+public class MetadataIndex {
+    public static final int ROOT = 0;
+    public static final int NONE = -1;
+    public static final byte FILE = 1;
+    public static final byte DIRECTORY = 2;
+    public static final byte OTHER = 3;
+    /**
+     * Flag of an entry the walker reports but does not descend into or return, such as an ignored directory.
+     */
+    public static final byte SKIPPED = 4;
+    private static final byte TYPE_MASK = 3;
+
+    private final Map<String, Integer> nameTable = new HashMap<>();
+    private String[] names = new String[1024];
+    private int[] nameRefs = new int[1024];
+    private int nameCount;
+    private int[] freeNames = new int[64];
+    private int freeNameCount;
+
+    private int[] parents = new int[1024];
+    private int[] firstChildren = new int[1024];
+    private int[] previousSiblings = new int[1024];
+    private int[] nextSiblings = new int[1024];
+    private int[] nameIds = new int[1024];
+    private long[] sizes = new long[1024];
+    private long[] modifiedTimes = new long[1024];
+    private byte[] flags = new byte[1024];
+    private int nodeCount;
+    private int[] freeNodes = new int[64];
+    private int freeCount;
+    private int liveCount;
+    private int[] childSlots = emptySlots(2048);
+
+    /**
+     * Creates an index holding only the root directory, node {@link #ROOT}.
+     */
+    public MetadataIndex() {
+        allocate(NONE, "", DIRECTORY, 0, 0);
+    }
+
+    /**
+     * Finds a child by name.
+     *
+     * @param parent the parent node
+     * @param name   the child's name
+     * @return the child node, or {@link #NONE}
+     */
+    public int child(int parent, String name) {
+        Integer nameId = nameTable.get(name);
+        if (nameId == null) {
+            return NONE;
+        }
+        int mask = childSlots.length - 1;
+        for (int slot = slotOf(parent, nameId, mask); ; slot = (slot + 1) & mask) {
+            int node = childSlots[slot];
+            if (node == NONE || parents[node] == parent && nameIds[node] == nameId) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Adds a child or updates the existing child with the same name. A directory that becomes something else
+     * loses its children.
+     *
+     * @param parent   the parent node
+     * @param name     the child's name
+     * @param flags    the type, possibly with {@link #SKIPPED}
+     * @param size     the size in bytes
+     * @param modified the modification time in millis
+     * @return the child node
+     */
+    public int put(int parent, String name, byte flags, long size, long modified) {
+        int node = child(parent, name);
+        if (node == NONE) {
+            return allocate(parent, name, flags, size, modified);
+        }
+        if ((flags & TYPE_MASK) != DIRECTORY || (flags & SKIPPED) != 0) {
+            clear(node);
+        }
+        this.flags[node] = flags;
+        sizes[node] = size;
+        modifiedTimes[node] = modified;
+        return node;
+    }
+
+    /**
+     * Updates the size and modification time of a node.
+     *
+     * @param node     the node
+     * @param size     the size in bytes
+     * @param modified the modification time in millis
+     */
+    public void touch(int node, long size, long modified) {
+        sizes[node] = size;
+        modifiedTimes[node] = modified;
+    }
+
+    /**
+     * Removes every child of a node, with their subtrees.
+     *
+     * @param node the parent node
+     */
+    public void clear(int node) {
+        while (firstChildren[node] != NONE) {
+            remove(firstChildren[node]);
+        }
+    }
+
+    /**
+     * Removes a node and its whole subtree.
+     *
+     * @param node the node to remove, not the root
+     */
+    public void remove(int node) {
+        int parent = parents[node];
+        if (parent != NONE) {
+            int previous = previousSiblings[node];
+            int next = nextSiblings[node];
+            if (previous == NONE) {
+                firstChildren[parent] = next;
+            } else {
+                nextSiblings[previous] = next;
+            }
+            if (next != NONE) {
+                previousSiblings[next] = previous;
+            }
+        }
+        int[] stack = {node};
+        int depth = 1;
+        while (depth > 0) {
+            int current = stack[--depth];
+            for (int child = firstChildren[current]; child != NONE; child = nextSiblings[child]) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = child;
+            }
+            free(current);
+        }
+    }
+
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public String name(int node) {
+        return names[nameIds[node]];
+    }
+
+    public long size(int node) {
+        return sizes[node];
+    }
+
+    public long modified(int node) {
+        return modifiedTimes[node];
+    }
+
+    public byte type(int node) {
+        return (byte) (flags[node] & TYPE_MASK);
+    }
+
+    public boolean isSkipped(int node) {
+        return (flags[node] & SKIPPED) != 0;
+    }
+
+    /**
+     * Returns the number of live nodes, the root included.
+     *
+     * @return the node count
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * Returns the number of distinct names in use.
+     *
+     * @return the interned name count
+     */
+    public int nameCount() {
+        return nameTable.size();
+    }
+
+    private int allocate(int parent, String name, byte flags, long size, long modified) {
+        int node;
+        if (freeCount > 0) {
+            node = freeNodes[--freeCount];
+        } else {
+            if (nodeCount == parents.length) {
+                grow(nodeCount * 2);
+            }
+            node = nodeCount++;
+        }
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        previousSiblings[node] = NONE;
+        nameIds[node] = intern(name);
+        this.flags[node] = flags;
+        sizes[node] = size;
+        modifiedTimes[node] = modified;
+        if (parent != NONE) {
+            int next = firstChildren[parent];
+            nextSiblings[node] = next;
+            if (next != NONE) {
+                previousSiblings[next] = node;
+            }
+            firstChildren[parent] = node;
+            addSlot(node);
+        } else {
+            nextSiblings[node] = NONE;
+        }
+        liveCount++;
+        return node;
+    }
+
+    private void free(int node) {
+        if (parents[node] != NONE) {
+            removeSlot(node);
+        }
+        release(nameIds[node]);
+        parents[node] = NONE;
+        firstChildren[node] = NONE;
+        previousSiblings[node] = NONE;
+        nextSiblings[node] = NONE;
+        flags[node] = 0;
+        if (freeCount == freeNodes.length) {
+            freeNodes = Arrays.copyOf(freeNodes, freeCount * 2);
+        }
+        freeNodes[freeCount++] = node;
+        liveCount--;
+    }
+
+    private int intern(String name) {
+        Integer id = nameTable.get(name);
+        if (id == null) {
+            if (freeNameCount > 0) {
+                id = freeNames[--freeNameCount];
+            } else {
+                if (nameCount == names.length) {
+                    names = Arrays.copyOf(names, nameCount * 2);
+                    nameRefs = Arrays.copyOf(nameRefs, nameCount * 2);
+                }
+                id = nameCount++;
+            }
+            names[id] = name;
+            nameTable.put(name, id);
+        }
+        nameRefs[id]++;
+        return id;
+    }
+
+    private void release(int nameId) {
+        if (--nameRefs[nameId] > 0) {
+            return;
+        }
+        nameTable.remove(names[nameId]);
+        names[nameId] = null;
+        if (freeNameCount == freeNames.length) {
+            freeNames = Arrays.copyOf(freeNames, freeNameCount * 2);
+        }
+        freeNames[freeNameCount++] = nameId;
+    }
+
+    /**
+     * Adds a node to the child table, keyed by its parent and name. The table is kept at most half full.
+     */
+    private void addSlot(int node) {
+        if ((liveCount + 1) * 2 > childSlots.length) {
+            int[] old = childSlots;
+            childSlots = emptySlots(old.length * 2);
+            for (int existing : old) {
+                if (existing != NONE) {
+                    insertSlot(existing);
+                }
+            }
+        }
+        insertSlot(node);
+    }
+
+    private void insertSlot(int node) {
+        int mask = childSlots.length - 1;
+        int slot = slotOf(parents[node], nameIds[node], mask);
+        while (childSlots[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        childSlots[slot] = node;
+    }
+
+    /**
+     * Removes a node from the child table, shifting back the entries after it that would otherwise become
+     * unreachable, so the table needs no tombstones.
+     */
+    private void removeSlot(int node) {
+        int mask = childSlots.length - 1;
+        int hole = slotOf(parents[node], nameIds[node], mask);
+        while (childSlots[hole] != node) {
+            hole = (hole + 1) & mask;
+        }
+        for (int slot = (hole + 1) & mask; childSlots[slot] != NONE; slot = (slot + 1) & mask) {
+            int candidate = childSlots[slot];
+            int home = slotOf(parents[candidate], nameIds[candidate], mask);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                childSlots[hole] = candidate;
+                hole = slot;
+            }
+        }
+        childSlots[hole] = NONE;
+    }
+
+    private static int slotOf(int parent, int nameId, int mask) {
+        int hash = (parent * 0x9E3779B9 + nameId) * 0x85EBCA6B;
+        return (hash ^ (hash >>> 15)) & mask;
+    }
+
+    private static int[] emptySlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, NONE);
+        return slots;
+    }
+
+    private void grow(int capacity) {
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        previousSiblings = Arrays.copyOf(previousSiblings, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        modifiedTimes = Arrays.copyOf(modifiedTimes, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+}
@@ -0,0 +1,454 @@
+package com.mcp.index;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted trigram index over the raw bytes of every file below a root directory.
+ * <p>
+ * Each file gets an increasing integer id and every distinct 3-byte sequence of its content maps to a
+ * delta-encoded posting list of file ids. A keyword query intersects the posting lists of the keyword's
+ * trigrams, so only files that may contain the keyword have to be read. Files that are too large to index
+ * are kept as "unindexed" and are always returned as candidates, which keeps the index conservative.
+ * <p>
+ * Replacing or removing a file leaves a dead id behind; dead ids are skipped on lookup and dropped by
+ * {@link #compact()} once they outnumber the live ones.
+ */
+public class TrigramIndex {
+    private static final int MAGIC = 0x4D435458;
+    private static final int VERSION = 1;
+    private static final int MIN_COMPACT_DEAD = 1024;
+
+    @Getter
+    private final Path root;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<FileEntry> entries = new ArrayList<>();
+    private final Map<String, Integer> idByPath = new HashMap<>();
+    private final Map<Integer, PostingList> postings = new HashMap<>();
+    private final BitSet unindexed = new BitSet();
+    private BitSet seen = new BitSet();
+    private int deadCount;
+
+    public TrigramIndex(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Checks whether the stored entry for a file still matches its size and modification time,
+     * marking it as seen for the current reconcile pass.
+     *
+     * @param file  the absolute file path
+     * @param mtime the file's last modified time in millis
+     * @param size  the file's size in bytes
+     * @return true if the file is indexed and unchanged
+     */
+    public boolean isUpToDate(Path file, long mtime, long size) {
+        String rel = relativize(file);
+        lock.readLock().lock();
+        try {
+            Integer id = idByPath.get(rel);
+            if (id == null) {
+                return false;
+            }
+            FileEntry entry = entries.get(id);
+            if (entry.mtime() != mtime || entry.size() != size) {
+                return false;
+            }
+            synchronized (this) {
+                seen.set(id);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces a file in the index.
+     *
+     * @param file     the absolute file path
+     * @param mtime    the file's last modified time in millis
+     * @param size     the file's size in bytes
+     * @param trigrams the sorted distinct trigrams of the content, or null if the file was not indexed
+     */
+    public void put(Path file, long mtime, long size, int[] trigrams) {
+        String rel = relativize(file);
+        lock.writeLock().lock();
+        try {
+            Integer oldId = idByPath.get(rel);
+            if (oldId != null) {
+                kill(oldId);
+            }
+            int id = entries.size();
+            entries.add(new FileEntry(rel, mtime, size));
+            idByPath.put(rel, id);
+            seen.set(id);
+            if (trigrams == null) {
+                unindexed.set(id);
+            } else {
+                for (int trigram : trigrams) {
+                    postings.computeIfAbsent(trigram, t -> new PostingList()).add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a file from the index. If the path is not a known file it is treated as a directory
+     * and every file below it is removed.
+     *
+     * @param path the absolute path of the removed file or directory
+     */
+    public void remove(Path path) {
+        String rel = relativize(path);
+        lock.writeLock().lock();
+        try {
+            Integer id = idByPath.remove(rel);
+            if (id != null) {
+                kill(id);
+                return;
+            }
+            String prefix = rel.isEmpty() ? "" : rel + "/";
+            Iterator<Map.Entry<String, Integer>> it = idByPath.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Integer> e = it.next();
+                if (e.getKey().startsWith(prefix)) {
+                    kill(e.getValue());
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a reconcile pass; files not confirmed through {@link #isUpToDate} or {@link #put}
+     * before {@link #endReconcile()} are dropped.
+     */
+    public void beginReconcile() {
+        lock.writeLock().lock();
+        try {
+            seen = new BitSet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends a reconcile pass by removing every file that was not seen on disk, then compacts if needed.
+     */
+    public void endReconcile() {
+        lock.writeLock().lock();
+        try {
+            Iterator<Map.Entry<String, Integer>> it = idByPath.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Integer> e = it.next();
+                if (!seen.get(e.getValue())) {
+                    kill(e.getValue());
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compact();
+    }
+
+    /**
+     * Returns the files below the given directory that may contain the needle.
+     *
+     * @param startPath the directory (or file) to restrict the result to
+     * @param needle    the raw bytes to look for, at least three bytes long
+     * @return the candidate files, sorted by path
+     */
+    public List<Path> candidates(Path startPath, byte[] needle) {
+        int[] trigrams = trigramsOf(needle, 0, needle.length);
+        String rel = relativize(startPath);
+        String prefix = rel.isEmpty() ? "" : rel + "/";
+        List<Path> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) unindexed.clone();
+            matches.or(intersect(trigrams));
+            for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+                FileEntry entry = entries.get(id);
+                if (entry != null && (rel.isEmpty() || entry.path().equals(rel) || entry.path().startsWith(prefix))) {
+                    result.add(root.resolve(entry.path()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     * Rewrites the index without dead ids once they outnumber the live ones.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (deadCount < MIN_COMPACT_DEAD || deadCount < entries.size() - deadCount) {
+                return;
+            }
+            int[] remap = new int[entries.size()];
+            List<FileEntry> live = new ArrayList<>(entries.size() - deadCount);
+            BitSet newUnindexed = new BitSet();
+            BitSet newSeen = new BitSet();
+            for (int id = 0; id < entries.size(); id++) {
+                FileEntry entry = entries.get(id);
+                if (entry == null) {
+                    remap[id] = -1;
+                    continue;
+                }
+                remap[id] = live.size();
+                if (unindexed.get(id)) newUnindexed.set(live.size());
+                if (seen.get(id)) newSeen.set(live.size());
+                idByPath.put(entry.path(), live.size());
+                live.add(entry);
+            }
+            Iterator<PostingList> it = postings.values().iterator();
+            while (it.hasNext()) {
+                PostingList list = it.next();
+                list.remap(remap);
+                if (list.count == 0) {
+                    it.remove();
+                }
+            }
+            entries.clear();
+            entries.addAll(live);
+            unindexed.clear();
+            unindexed.or(newUnindexed);
+            seen = newSeen;
+            deadCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the index to a snapshot file, replacing any previous snapshot atomically.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(root.toString());
+            out.writeInt(entries.size());
+            for (int id = 0; id < entries.size(); id++) {
+                FileEntry entry = entries.get(id);
+                out.writeBoolean(entry != null);
+                if (entry != null) {
+                    out.writeUTF(entry.path());
+                    out.writeLong(entry.mtime());
+                    out.writeLong(entry.size());
+                    out.writeBoolean(unindexed.get(id));
+                }
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<Integer, PostingList> e : postings.entrySet()) {
+                PostingList list = e.getValue();
+                out.writeInt(e.getKey());
+                out.writeInt(list.count);
+                out.writeInt(list.lastId);
+                out.writeInt(list.length);
+                out.write(list.bytes, 0, list.length);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads an index snapshot written by {@link #save(Path)}.
+     *
+     * @param root the root directory the index must belong to
+     * @param file the snapshot file
+     * @return the loaded index
+     * @throws IOException if the snapshot is missing, corrupt or belongs to another root
+     */
+    public static TrigramIndex load(Path root, Path file) throws IOException {
+        TrigramIndex index = new TrigramIndex(root);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !root.toString().equals(in.readUTF())) {
+                throw new IOException("INCOMPATIBLE INDEX SNAPSHOT: " + file);
+            }
+            int entryCount = in.readInt();
+            for (int id = 0; id < entryCount; id++) {
+                if (!in.readBoolean()) {
+                    index.entries.add(null);
+                    index.deadCount++;
+                    continue;
+                }
+                FileEntry entry = new FileEntry(in.readUTF(), in.readLong(), in.readLong());
+                if (in.readBoolean()) {
+                    index.unindexed.set(id);
+                }
+                index.entries.add(entry);
+                index.idByPath.put(entry.path(), id);
+            }
+            int postingCount = in.readInt();
+            for (int i = 0; i < postingCount; i++) {
+                int trigram = in.readInt();
+                PostingList list = new PostingList();
+                list.count = in.readInt();
+                list.lastId = in.readInt();
+                list.length = in.readInt();
+                list.bytes = new byte[Math.max(list.length, 8)];
+                in.readFully(list.bytes, 0, list.length);
+                index.postings.put(trigram, list);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Extracts the sorted distinct trigrams of a byte range.
+     *
+     * @param data   the bytes to scan
+     * @param offset the start offset
+     * @param length the number of bytes to scan
+     * @return the sorted distinct trigrams, each packed into the low 24 bits of an int
+     */
+    public static int[] trigramsOf(byte[] data, int offset, int length) {
+        if (length < 3) {
+            return new int[0];
+        }
+        BitSet scratch = new BitSet();
+        int end = offset + length;
+        int trigram = ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+        for (int i = offset + 2; i < end; i++) {
+            trigram = ((trigram << 8) | (data[i] & 0xFF)) & 0xFFFFFF;
+            scratch.set(trigram);
+        }
+        return scratch.stream().toArray();
+    }
+
+    /**
+     * Returns the number of live files in the index.
+     *
+     * @return the live file count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size() - deadCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet intersect(int[] trigrams) {
+        PostingList[] lists = new PostingList[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings.get(trigrams[i]);
+            if (lists[i] == null) {
+                return new BitSet();
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.count, b.count));
+        BitSet result = lists[0].toBitSet();
+        for (int i = 1; i < lists.length && !result.isEmpty(); i++) {
+            result.and(lists[i].toBitSet());
+        }
+        return result;
+    }
+
+    private void kill(int id) {
+        if (entries.get(id) != null) {
+            entries.set(id, null);
+            unindexed.clear(id);
+            deadCount++;
+        }
+    }
+
+    private String relativize(Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    private record FileEntry(String path, long mtime, long size) {
+    }
+
+    /**
+     * Append-only list of increasing file ids stored as variable-length deltas.
+     */
+    private static final class PostingList {
+        byte[] bytes = new byte[8];
+        int length;
+        int count;
+        int lastId = -1;
+
+        void add(int id) {
+            int delta = id - lastId;
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            lastId = id;
+            count++;
+        }
+
+        BitSet toBitSet() {
+            BitSet result = new BitSet(lastId + 1);
+            int id = -1;
+            int pos = 0;
+            while (pos < length) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                result.set(id);
+            }
+            return result;
+        }
+
+        void remap(int[] remap) {
+            BitSet ids = toBitSet();
+            bytes = new byte[8];
+            length = 0;
+            count = 0;
+            lastId = -1;
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                if (remap[id] >= 0) {
+                    add(remap[id]);
+                }
+            }
+        }
+    }
+}
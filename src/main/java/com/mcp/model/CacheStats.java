@@ -0,0 +1,8 @@
+package com.mcp.model;
+
+public record CacheStats(long hits, long misses, long evictions, int entries, long weight) {
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,16 @@
+package com.mcp.model;
+
+public enum ChangeType {
+    /**
+     * The file is staged or present in the work tree but not in the base commit.
+     */
+    ADDED,
+    /**
+     * The file's content or mode differs from the base commit.
+     */
+    MODIFIED,
+    /**
+     * The file is in the base commit but no longer in the index or the work tree.
+     */
+    DELETED
+}
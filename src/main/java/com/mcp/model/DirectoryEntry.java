@@ -0,0 +1,12 @@
+package com.mcp.model;
+
+/**
+ * An entry of a directory listing with the attributes read while listing it.
+ *
+ * @param name      the entry's file name
+ * @param directory whether the entry is a directory
+ * @param size      the size in bytes
+ * @param modified  the modification time in millis
+ */
+public record DirectoryEntry(String name, boolean directory, long size, long modified) {
+}
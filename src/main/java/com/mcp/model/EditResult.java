@@ -1,5 +1,6 @@
 package com.mcp.model;
 
+import com.mcp.edit.EditSpan;
 import lombok.Getter;
 
 import java.util.List;
@@ -7,14 +8,18 @@ import java.util.List;
 @Getter
 public class EditResult {
     String error;
-    List<String> originalLines;
-    List<String> modifiedLines;
-    String modifiedContent;
+    byte[] originalContent;
+    byte[] modifiedContent;
+    List<EditSpan> spans;
 
-    public EditResult(List<String> originalLines, List<String> modifiedLines, String modifiedContent, String error) {
-        this.originalLines = originalLines;
-        this.modifiedLines = modifiedLines;
+    public EditResult(byte[] originalContent, byte[] modifiedContent, List<EditSpan> spans, String error) {
+        this.originalContent = originalContent;
         this.modifiedContent = modifiedContent;
+        this.spans = spans;
         this.error = error;
     }
+
+    public static EditResult error(String error) {
+        return new EditResult(null, null, null, error);
+    }
 }
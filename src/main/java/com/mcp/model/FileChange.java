@@ -0,0 +1,4 @@
+package com.mcp.model;
+
+public record FileChange(String path, ChangeType type) {
+}
@@ -0,0 +1,26 @@
+package com.mcp.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The attributes of one path in a bulk file-info response. Fields that were not read are left out of the JSON.
+ *
+ * @param path        the path
+ * @param type        {@code file}, {@code directory} or {@code other}
+ * @param size        the size in bytes
+ * @param modified    the modification time
+ * @param created     the creation time
+ * @param accessed    the last access time
+ * @param permissions the POSIX permissions, such as {@code rw-r--r--}
+ * @param owner       the owner
+ * @param group       the group
+ * @param cached      true if the entry came from the metadata index instead of the disk
+ * @param error       why the path could not be read
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FileInfo(String path, String type, Long size, String modified, String created, String accessed,
+                       String permissions, String owner, String group, Boolean cached, String error) {
+    public static FileInfo error(String path, String error) {
+        return new FileInfo(path, null, null, null, null, null, null, null, null, null, error);
+    }
+}
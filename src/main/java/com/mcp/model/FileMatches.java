@@ -0,0 +1,7 @@
+package com.mcp.model;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public record FileMatches(Path path, int[] matchCounts, List<LineMatch> matches) {
+}
@@ -0,0 +1,6 @@
+package com.mcp.model;
+
+import java.util.List;
+
+public record LineMatch(int pattern, int line, int column, int firstLine, List<String> lines) {
+}
@@ -0,0 +1,38 @@
+package com.mcp.model;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+public record ListingOptions(ListingSort sort, boolean descending, int offset, int limit, boolean details) {
+    public static final int DEFAULT_LIMIT = 1000;
+
+    /**
+     * Builds listing options from optional tool arguments, applying defaults and bounds.
+     *
+     * @param sort       the sort key, {@code name}, {@code size} or {@code mtime}; name when null
+     * @param descending whether to reverse the sort order
+     * @param offset     the number of sorted entries to skip
+     * @param limit      the maximum number of entries to return
+     * @param details    whether to show each entry's size and modification time
+     * @return the listing options
+     * @throws IllegalArgumentException if the sort key is unknown
+     */
+    public static ListingOptions of(String sort, Boolean descending, Integer offset, Integer limit, Boolean details) {
+        return new ListingOptions(
+                sort == null || sort.isBlank() ? ListingSort.NAME : ListingSort.valueOf(sort.trim().toUpperCase(Locale.ROOT)),
+                descending != null && descending,
+                offset == null ? 0 : Math.max(offset, 0),
+                limit == null || limit <= 0 ? DEFAULT_LIMIT : limit,
+                details != null && details
+        );
+    }
+
+    /**
+     * Returns the order entries are listed in.
+     *
+     * @return the comparator of the sort key, reversed if descending
+     */
+    public Comparator<DirectoryEntry> comparator() {
+        return descending ? sort.comparator().reversed() : sort.comparator();
+    }
+}
@@ -0,0 +1,28 @@
+package com.mcp.model;
+
+import java.util.Comparator;
+
+public enum ListingSort {
+    /**
+     * By file name.
+     */
+    NAME(Comparator.comparing(DirectoryEntry::name)),
+    /**
+     * By size in bytes, then by name.
+     */
+    SIZE(Comparator.comparingLong(DirectoryEntry::size).thenComparing(DirectoryEntry::name)),
+    /**
+     * By modification time, then by name.
+     */
+    MTIME(Comparator.comparingLong(DirectoryEntry::modified).thenComparing(DirectoryEntry::name));
+
+    private final Comparator<DirectoryEntry> comparator;
+
+    ListingSort(Comparator<DirectoryEntry> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<DirectoryEntry> comparator() {
+        return comparator;
+    }
+}
@@ -0,0 +1,53 @@
+package com.mcp.model;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Base64;
+
+public record ReadPage(int maxBytes, int path, Path file, long offset) {
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+    public static final int MIN_MAX_BYTES = 1024;
+
+    /**
+     * Builds a page request from optional tool arguments. The cursor is the opaque token returned by the
+     * previous page; it encodes the index of the requested path being read, the next file to read below it and
+     * the byte offset within that file. Resuming from a file rather than from a position in the listing keeps
+     * the pages consistent when files are added or removed between calls.
+     *
+     * @param maxBytes the maximum number of content bytes to return
+     * @param cursor   the continuation token of the previous page, or null for the first page
+     * @return the page request
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static ReadPage of(Integer maxBytes, String cursor) {
+        int budget = maxBytes == null || maxBytes <= 0 ? DEFAULT_MAX_BYTES : Math.max(maxBytes, MIN_MAX_BYTES);
+        if (cursor == null || cursor.isBlank()) {
+            return new ReadPage(budget, 0, null, 0);
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8).split(":", 3);
+            int path = Integer.parseInt(parts[0]);
+            long offset = Long.parseLong(parts[1]);
+            if (path < 0 || offset < 0) {
+                throw new IllegalArgumentException("Negative position in cursor");
+            }
+            return new ReadPage(budget, path, parts[2].isEmpty() ? null : Path.of(parts[2]).normalize(), offset);
+        } catch (IndexOutOfBoundsException | InvalidPathException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * Encodes the continuation token that resumes reading at a position.
+     *
+     * @param path   the index of the requested path being read
+     * @param file   the next file to read below it, or null to start at its first file
+     * @param offset the byte offset within that file
+     * @return the cursor
+     */
+    public static String cursor(int path, Path file, long offset) {
+        String position = path + ":" + offset + ":" + (file == null ? "" : file.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+}
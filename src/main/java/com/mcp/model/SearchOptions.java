@@ -0,0 +1,50 @@
+package com.mcp.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public record SearchOptions(boolean grep, boolean regex, int contextLines, int maxResults, int maxMatchesPerFile) {
+    public static final int DEFAULT_MAX_RESULTS = 500;
+    public static final int DEFAULT_MAX_MATCHES_PER_FILE = 50;
+    public static final int MAX_CONTEXT_LINES = 10;
+    public static final int MAX_KEYWORDS = 64;
+    public static final int MAX_KEYWORDS_BYTES = 4096;
+
+    /**
+     * Builds search options from optional tool arguments, applying defaults and bounds.
+     *
+     * @param grep              whether to return matching lines instead of file paths
+     * @param regex             whether the keywords are regular expressions
+     * @param contextLines      the number of lines to show before and after each match
+     * @param maxResults        the maximum number of matching lines (or files) to return
+     * @param maxMatchesPerFile the maximum number of matching lines to return per file and keyword
+     * @return the search options
+     */
+    public static SearchOptions of(Boolean grep, Boolean regex, Integer contextLines, Integer maxResults, Integer maxMatchesPerFile) {
+        return new SearchOptions(
+                grep != null && grep,
+                regex != null && regex,
+                contextLines == null ? 0 : Math.clamp(contextLines, 0, MAX_CONTEXT_LINES),
+                maxResults == null || maxResults <= 0 ? DEFAULT_MAX_RESULTS : maxResults,
+                maxMatchesPerFile == null || maxMatchesPerFile <= 0 ? DEFAULT_MAX_MATCHES_PER_FILE : maxMatchesPerFile
+        );
+    }
+
+    /**
+     * Checks that the keywords of one search stay within the limits that bound the size of the compiled
+     * matcher; the Aho-Corasick transition table grows with the total length of the keywords.
+     *
+     * @param keywords the keywords to search for
+     * @return a message describing the exceeded limit, or null if the keywords are within bounds
+     */
+    public static String checkKeywords(List<String> keywords) {
+        if (keywords.size() > MAX_KEYWORDS) {
+            return "Too many keywords: at most " + MAX_KEYWORDS + " can be searched at once.";
+        }
+        int bytes = keywords.stream().mapToInt(k -> k.getBytes(StandardCharsets.UTF_8).length).sum();
+        if (bytes > MAX_KEYWORDS_BYTES) {
+            return "Keywords are too long: at most " + MAX_KEYWORDS_BYTES + " bytes in total can be searched at once.";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.mcp.model;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+
+public record TreeOptions(int maxDepth, int maxNodes, boolean sizes, String path, int offset) {
+    public static final int DEFAULT_MAX_DEPTH = 10;
+    public static final int DEFAULT_MAX_NODES = 2000;
+
+    /**
+     * Builds tree options from optional tool arguments, applying defaults and bounds. The cursor is the opaque
+     * token returned for a truncated directory; it encodes the directory and the index, in name order, of the
+     * first entry that was not shown.
+     *
+     * @param maxDepth the number of directory levels to expand below the root
+     * @param maxNodes the maximum number of entries to return
+     * @param sizes    whether to add file sizes and subtree totals
+     * @param cursor   the expansion token of a truncated directory, or null to start at the given path
+     * @return the tree options, with a null path when there is no cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static TreeOptions of(Integer maxDepth, Integer maxNodes, Boolean sizes, String cursor) {
+        int depth = maxDepth == null || maxDepth <= 0 ? DEFAULT_MAX_DEPTH : maxDepth;
+        int nodes = maxNodes == null || maxNodes <= 0 ? DEFAULT_MAX_NODES : maxNodes;
+        boolean withSizes = sizes != null && sizes;
+        if (cursor == null || cursor.isBlank()) {
+            return new TreeOptions(depth, nodes, withSizes, null, 0);
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int colon = decoded.indexOf(':');
+            int offset = Integer.parseInt(decoded.substring(0, colon));
+            if (offset < 0) {
+                throw new IllegalArgumentException("Negative offset in cursor");
+            }
+            return new TreeOptions(depth, nodes, withSizes, decoded.substring(colon + 1), offset);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * Encodes the expansion token that resumes a directory at an entry.
+     *
+     * @param offset the index of the entry in the directory, in name order
+     * @param dir    the directory
+     * @return the cursor
+     */
+    public static String cursor(int offset, Path dir) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((offset + ":" + dir).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,16 @@
+package com.mcp.model;
+
+public enum WriteDurability {
+    /**
+     * Leave flushing to the operating system; the rename is still atomic, but a power loss may lose the write.
+     */
+    NONE,
+    /**
+     * Force the file's content to disk before it replaces the target.
+     */
+    DATA,
+    /**
+     * Also force the directory after the rename, so the new directory entry survives a power loss.
+     */
+    FULL
+}
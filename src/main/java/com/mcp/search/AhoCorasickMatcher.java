@@ -0,0 +1,117 @@
+package com.mcp.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick matcher for several byte patterns, finding all of them in one pass over the input.
+ * <p>
+ * The trie and its failure links are compiled into a dense state transition table, so scanning costs one
+ * table lookup per input byte regardless of the number of patterns. Every occurrence of every pattern is
+ * reported, including occurrences that overlap each other.
+ */
+public final class AhoCorasickMatcher implements ContentMatcher {
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int[] lengths;
+    private final int maxLength;
+    private int[] transitions;
+    private int[][] outputs;
+    private int stateCount = 1;
+
+    public AhoCorasickMatcher(List<byte[]> patterns) {
+        int capacity = 1 + patterns.stream().mapToInt(p -> p.length).sum();
+        this.transitions = new int[capacity * 256];
+        this.outputs = new int[capacity][];
+        this.lengths = new int[patterns.size()];
+        Arrays.fill(transitions, -1);
+        Arrays.fill(outputs, NO_OUTPUT);
+        for (int i = 0; i < patterns.size(); i++) {
+            addPattern(patterns.get(i), i);
+        }
+        this.maxLength = Arrays.stream(lengths).max().orElse(0);
+        buildFailureLinks();
+        this.transitions = Arrays.copyOf(transitions, stateCount * 256);
+        this.outputs = Arrays.copyOf(outputs, stateCount);
+    }
+
+    @Override
+    public int patternCount() {
+        return lengths.length;
+    }
+
+    @Override
+    public int overlap() {
+        return Math.max(maxLength - 1, 0);
+    }
+
+    @Override
+    public void scan(ByteBuffer buffer, int from, int to, MatchSink sink) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = transitions[(state << 8) | (buffer.get(i) & 0xFF)];
+            for (int pattern : outputs[state]) {
+                if (!sink.onMatch(i + 1 - lengths[pattern], i + 1, pattern)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void addPattern(byte[] pattern, int index) {
+        int state = 0;
+        for (byte b : pattern) {
+            int slot = (state << 8) | (b & 0xFF);
+            if (transitions[slot] < 0) {
+                transitions[slot] = stateCount++;
+            }
+            state = transitions[slot];
+        }
+        outputs[state] = append(outputs[state], index);
+        lengths[index] = pattern.length;
+    }
+
+    /**
+     * Computes failure links breadth-first and folds them into the transition table, turning the trie
+     * into a deterministic automaton; each state's outputs are extended with those of its failure state.
+     */
+    private void buildFailureLinks() {
+        int[] failure = new int[stateCount];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < 256; b++) {
+            int next = transitions[b];
+            if (next < 0) {
+                transitions[b] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int b = 0; b < 256; b++) {
+                int slot = (state << 8) | b;
+                int next = transitions[slot];
+                int fallback = transitions[(failure[state] << 8) | b];
+                if (next < 0) {
+                    transitions[slot] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    for (int pattern : outputs[fallback]) {
+                        outputs[next] = append(outputs[next], pattern);
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+}
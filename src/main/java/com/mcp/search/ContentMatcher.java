@@ -0,0 +1,69 @@
+package com.mcp.search;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Matches one or more patterns against raw file bytes.
+ * <p>
+ * Implementations are immutable once built and can be shared by every thread scanning files for one query.
+ * Matches are reported to a {@link MatchSink} in increasing order of their end index.
+ */
+public interface ContentMatcher {
+    /**
+     * Returns the number of patterns; pattern indexes reported to the sink are below this value.
+     *
+     * @return the pattern count
+     */
+    int patternCount();
+
+    /**
+     * Returns the number of bytes a window must share with the next one so that no match is split.
+     *
+     * @return the window overlap in bytes
+     */
+    int overlap();
+
+    /**
+     * Reports every match that lies in a region of the buffer.
+     *
+     * @param buffer the buffer to search
+     * @param from   the absolute start index, inclusive
+     * @param to     the absolute end index, exclusive
+     * @param sink   the receiver of matches; returning false stops the scan
+     */
+    void scan(ByteBuffer buffer, int from, int to, MatchSink sink);
+
+    /**
+     * Builds the cheapest matcher for the given patterns: Boyer-Moore-Horspool for a single literal,
+     * Aho-Corasick for several literals, or regular expressions.
+     *
+     * @param patterns the patterns to look for
+     * @param regex    whether the patterns are regular expressions
+     * @return the matcher
+     * @throws java.util.regex.PatternSyntaxException if a regular expression is invalid
+     */
+    static ContentMatcher of(List<String> patterns, boolean regex) {
+        if (regex) {
+            return new RegexMatcher(patterns);
+        }
+        if (patterns.size() == 1) {
+            return new HorspoolMatcher(patterns.getFirst().getBytes(StandardCharsets.UTF_8));
+        }
+        return new AhoCorasickMatcher(patterns.stream().map(p -> p.getBytes(StandardCharsets.UTF_8)).toList());
+    }
+
+    @FunctionalInterface
+    interface MatchSink {
+        /**
+         * Receives one match.
+         *
+         * @param start   the absolute start index of the match
+         * @param end     the absolute end index of the match, exclusive
+         * @param pattern the index of the matched pattern
+         * @return true to continue scanning
+         */
+        boolean onMatch(int start, int end, int pattern);
+    }
+}
@@ -0,0 +1,275 @@
+package com.mcp.search;
+
+import com.mcp.model.FileMatches;
+import com.mcp.model.LineMatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Scans file contents as raw bytes without decoding them to strings.
+ * <p>
+ * Small files are read into a direct buffer that is reused per thread; larger files are read through a second,
+ * larger pooled buffer in windows that overlap by the matcher's overlap, so a match spanning two windows is still
+ * found. The overlap is widened to the start of the window's last line when that line is short enough, so the
+ * next window starts on a line boundary and line-based matchers and context lines see whole lines. Nothing is
+ * memory-mapped, so scanning many large files holds no mappings waiting for the garbage collector. Files whose
+ * first bytes contain a NUL byte are treated as binary and skipped, the same heuristic git uses.
+ */
+public class FileScanner {
+    static final int SNIFF_LENGTH = 8000;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_LINE_LENGTH = 500;
+
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private final ThreadLocal<ByteBuffer> windows = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(WINDOW_SIZE));
+
+    /**
+     * Finds which patterns occur in a text file, stopping as soon as every pattern has been seen.
+     *
+     * @param file    the file to scan
+     * @param matcher the compiled patterns
+     * @return the indexes of the patterns found, or null if the file is binary
+     * @throws IOException if the file cannot be read
+     */
+    public BitSet findPatterns(Path file, ContentMatcher matcher) throws IOException {
+        BitSet found = new BitSet(matcher.patternCount());
+        boolean text = scan(file, matcher.overlap(), (window, position, length, keep) -> {
+            matcher.scan(window, 0, length, (start, end, pattern) -> {
+                found.set(pattern);
+                return found.cardinality() < matcher.patternCount();
+            });
+            return found.cardinality() < matcher.patternCount();
+        });
+        return text ? found : null;
+    }
+
+    /**
+     * Finds the lines of a text file that match the patterns, in the same pass that counts every match.
+     *
+     * @param file         the file to scan
+     * @param matcher      the compiled patterns
+     * @param contextLines the number of lines to capture before and after each matching line
+     * @param maxMatches   the maximum number of matches to capture per pattern; further matches are only counted
+     * @return the matches, or null if the file is binary or nothing matches
+     * @throws IOException if the file cannot be read
+     */
+    public FileMatches grep(Path file, ContentMatcher matcher, int contextLines, int maxMatches) throws IOException {
+        GrepState state = new GrepState(matcher, contextLines, maxMatches);
+        if (!scan(file, matcher.overlap(), state::handle) || state.matches.isEmpty()) {
+            return null;
+        }
+        return new FileMatches(file, state.matchCounts, state.matches);
+    }
+
+    /**
+     * Checks whether the first bytes of a buffer contain a NUL byte.
+     *
+     * @param buffer the buffer holding the start of a file
+     * @param length the number of valid bytes in the buffer
+     * @return true if the content looks binary
+     */
+    public static boolean isBinary(ByteBuffer buffer, int length) {
+        int end = Math.min(length, SNIFF_LENGTH);
+        for (int i = 0; i < end; i++) {
+            if (buffer.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Feeds the content of a file to a handler, either as one pooled buffer or as overlapping windows read into
+     * another pooled buffer, the bytes a window keeps being moved to the front of the buffer for the next one.
+     *
+     * @param file          the file to scan
+     * @param overlap       the number of bytes consecutive windows share
+     * @param handler       the window handler; returning false stops the scan
+     * @return false if the file is binary, true otherwise
+     * @throws IOException if the file cannot be read
+     */
+    private boolean scan(Path file, int overlap, WindowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= BUFFER_SIZE) {
+                ByteBuffer buffer = readFully(channel, (int) size);
+                if (isBinary(buffer, buffer.limit())) {
+                    return false;
+                }
+                handler.handle(buffer, 0, buffer.limit(), 0);
+                return true;
+            }
+            ByteBuffer window = windows.get().clear();
+            long position = 0;
+            while (true) {
+                boolean end = false;
+                while (window.hasRemaining() && !end) {
+                    end = channel.read(window, position + window.position()) < 0;
+                }
+                int length = window.position();
+                boolean last = end || position + length >= size;
+                window.flip();
+                if (position == 0 && isBinary(window, length)) {
+                    return false;
+                }
+                int keep = last ? 0 : keep(window, length, overlap);
+                if (!handler.handle(window, position, length, keep) || last) {
+                    return true;
+                }
+                window.position(length - keep);
+                window.compact();
+                position += length - keep;
+            }
+        }
+    }
+
+    /**
+     * Returns how many trailing bytes of a full window the next window reads again: the matcher's overlap, or the
+     * unterminated last line if it is longer but no longer than half a window.
+     */
+    private static int keep(ByteBuffer window, int length, int overlap) {
+        int lineStart = length;
+        while (lineStart > length - WINDOW_SIZE / 2 && window.get(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        return window.get(lineStart - 1) == '\n' ? Math.max(overlap, length - lineStart) : overlap;
+    }
+
+    private ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = buffers.get().clear().limit(size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading until the buffer is full or the file ends
+        }
+        return buffer.flip();
+    }
+
+    @FunctionalInterface
+    private interface WindowHandler {
+        /**
+         * Handles one window of file content.
+         *
+         * @param window   the bytes of the window, starting at index 0
+         * @param position the absolute file position of the window
+         * @param length   the number of valid bytes in the window
+         * @param keep     the number of trailing bytes that the next window scans again
+         * @return true to continue with the next window
+         */
+        boolean handle(ByteBuffer window, long position, int length, int keep);
+    }
+
+    /**
+     * Tracks line numbers and captured matches across the windows of one file. Matches starting in the part
+     * of a window that the next window scans again are left to the next window, so none is reported twice.
+     */
+    private static final class GrepState {
+        final ContentMatcher matcher;
+        final int contextLines;
+        final int maxMatches;
+        final List<LineMatch> matches = new ArrayList<>();
+        final int[] matchCounts;
+        final int[] captured;
+        long lineCursor;
+        int lineNumber = 1;
+
+        GrepState(ContentMatcher matcher, int contextLines, int maxMatches) {
+            this.matcher = matcher;
+            this.contextLines = contextLines;
+            this.maxMatches = maxMatches;
+            this.matchCounts = new int[matcher.patternCount()];
+            this.captured = new int[matcher.patternCount()];
+        }
+
+        boolean handle(ByteBuffer window, long position, int length, int keep) {
+            int limit = length - keep;
+            matcher.scan(window, 0, length, (start, end, pattern) -> {
+                if (start >= limit) {
+                    return true;
+                }
+                advanceLines(window, position, end);
+                int line = lineNumber - countNewlines(window, start, end);
+                matchCounts[pattern]++;
+                if (captured[pattern] < maxMatches) {
+                    captured[pattern]++;
+                    matches.add(toLineMatch(window, start, length, line, pattern));
+                }
+                return true;
+            });
+            advanceLines(window, position, limit);
+            return true;
+        }
+
+        private void advanceLines(ByteBuffer window, long position, int until) {
+            for (int i = (int) (lineCursor - position); i < until; i++) {
+                if (window.get(i) == '\n') {
+                    lineNumber++;
+                }
+            }
+            lineCursor = Math.max(lineCursor, position + until);
+        }
+
+        private LineMatch toLineMatch(ByteBuffer window, int index, int length, int line, int pattern) {
+            int lineStart = lineStart(window, index);
+            int lineEnd = lineEnd(window, index, length);
+            List<String> lines = new ArrayList<>();
+            int start = lineStart;
+            for (int i = 0; i < contextLines && start > 0; i++) {
+                int previousStart = lineStart(window, start - 1);
+                lines.addFirst(decode(window, previousStart, start - 1));
+                start = previousStart;
+            }
+            int firstLine = line - lines.size();
+            lines.add(decode(window, lineStart, lineEnd));
+            int end = lineEnd;
+            for (int i = 0; i < contextLines && end + 1 < length; i++) {
+                int nextEnd = lineEnd(window, end + 1, length);
+                lines.add(decode(window, end + 1, nextEnd));
+                end = nextEnd;
+            }
+            int column = StandardCharsets.UTF_8.decode(window.slice(lineStart, index - lineStart)).length() + 1;
+            return new LineMatch(pattern, line, column, firstLine, lines);
+        }
+
+        private static int countNewlines(ByteBuffer window, int start, int end) {
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                if (window.get(i) == '\n') {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static int lineStart(ByteBuffer window, int index) {
+            int i = index;
+            while (i > 0 && window.get(i - 1) != '\n') {
+                i--;
+            }
+            return i;
+        }
+
+        private static int lineEnd(ByteBuffer window, int index, int length) {
+            int i = index;
+            while (i < length && window.get(i) != '\n') {
+                i++;
+            }
+            return i;
+        }
+
+        private static String decode(ByteBuffer window, int start, int end) {
+            if (end > start && window.get(end - 1) == '\r') {
+                end--;
+            }
+            String line = StandardCharsets.UTF_8.decode(window.slice(start, end - start)).toString();
+            return line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH) + " [...]" : line;
+        }
+    }
+}
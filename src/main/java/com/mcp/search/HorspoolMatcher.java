@@ -0,0 +1,78 @@
+package com.mcp.search;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Boyer-Moore-Horspool matcher for a single byte pattern.
+ * <p>
+ * The bad-character shift table is computed once per pattern, so the same matcher can be shared by every
+ * thread scanning files for one query. Matching works on absolute positions of a {@link ByteBuffer} and
+ * never changes its position or limit. Reported matches do not overlap.
+ */
+public final class HorspoolMatcher implements ContentMatcher {
+    private final byte[] pattern;
+    private final int[] shift = new int[256];
+
+    public HorspoolMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+        Arrays.fill(shift, Math.max(pattern.length, 1));
+        for (int i = 0; i < pattern.length - 1; i++) {
+            shift[pattern[i] & 0xFF] = pattern.length - 1 - i;
+        }
+    }
+
+    @Override
+    public int patternCount() {
+        return 1;
+    }
+
+    @Override
+    public int overlap() {
+        return Math.max(pattern.length - 1, 0);
+    }
+
+    @Override
+    public void scan(ByteBuffer buffer, int from, int to, MatchSink sink) {
+        int step = Math.max(pattern.length, 1);
+        int index = indexOf(buffer, from, to);
+        while (index >= 0 && sink.onMatch(index, index + pattern.length, 0)) {
+            index = indexOf(buffer, index + step, to);
+        }
+    }
+
+    /**
+     * Finds the first occurrence of the pattern in a region of the buffer.
+     *
+     * @param buffer the buffer to search
+     * @param from   the absolute start index, inclusive
+     * @param to     the absolute end index, exclusive
+     * @return the absolute index of the first match, or -1 if there is none
+     */
+    public int indexOf(ByteBuffer buffer, int from, int to) {
+        int m = pattern.length;
+        if (m == 0) {
+            return from <= to ? from : -1;
+        }
+        int last = m - 1;
+        byte lastByte = pattern[last];
+        int i = from;
+        while (i <= to - m) {
+            byte b = buffer.get(i + last);
+            if (b == lastByte && regionMatches(buffer, i, last)) {
+                return i;
+            }
+            i += shift[b & 0xFF];
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(ByteBuffer buffer, int start, int length) {
+        for (int j = 0; j < length; j++) {
+            if (buffer.get(start + j) != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
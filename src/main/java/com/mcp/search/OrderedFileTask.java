@@ -0,0 +1,54 @@
+package com.mcp.search;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Fork-join task that applies a function to a slice of files and returns the non-null results in input order.
+ * <p>
+ * Each leaf fills its own result list and parents append the right child's list to the left one, so workers
+ * never share a buffer and the merged output follows the order of the input list no matter which worker
+ * stole which slice.
+ *
+ * @param <T> the per-file result type
+ */
+public class OrderedFileTask<T> extends RecursiveTask<List<T>> {
+    private static final int LEAF_SIZE = 16;
+
+    private final List<Path> files;
+    private final int from;
+    private final int to;
+    private final Function<Path, T> function;
+
+    public OrderedFileTask(List<Path> files, int from, int to, Function<Path, T> function) {
+        this.files = files;
+        this.from = from;
+        this.to = to;
+        this.function = function;
+    }
+
+    @Override
+    protected List<T> compute() {
+        if (to - from <= LEAF_SIZE) {
+            List<T> results = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                T result = function.apply(files.get(i));
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            return results;
+        }
+        int mid = (from + to) >>> 1;
+        OrderedFileTask<T> left = new OrderedFileTask<>(files, from, mid, function);
+        OrderedFileTask<T> right = new OrderedFileTask<>(files, mid, to, function);
+        left.fork();
+        List<T> rightResults = right.compute();
+        List<T> results = left.join();
+        results.addAll(rightResults);
+        return results;
+    }
+}
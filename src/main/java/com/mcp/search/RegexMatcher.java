@@ -0,0 +1,224 @@
+package com.mcp.search;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regular expression matcher over UTF-8 file content.
+ * <p>
+ * Regions are decoded in line-aligned chunks of at most {@link #CHUNK_SIZE} bytes, so memory use does not grow
+ * with the size of the file. Every pattern runs over the same decoded chunk; the per-pattern match streams are
+ * merged by end offset, and character offsets are mapped back to byte offsets incrementally. Malformed input
+ * decodes to U+FFFD, and the number of bytes each replacement stands for is recorded so that offsets stay exact
+ * in files that are not valid UTF-8. Patterns are compiled in {@link Pattern#MULTILINE} mode so that {@code ^}
+ * and {@code $} anchor at line boundaries. A match crossing a chunk or window boundary is not found; chunks only
+ * split lines longer than a chunk, and the scanner's windows only lines longer than half a window.
+ */
+public final class RegexMatcher implements ContentMatcher {
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final List<Pattern> patterns;
+    private final int chunkSize;
+
+    public RegexMatcher(List<String> patterns) {
+        this(patterns, CHUNK_SIZE);
+    }
+
+    RegexMatcher(List<String> patterns, int chunkSize) {
+        this.patterns = patterns.stream().map(p -> Pattern.compile(p, Pattern.MULTILINE)).toList();
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int patternCount() {
+        return patterns.size();
+    }
+
+    @Override
+    public int overlap() {
+        return 0;
+    }
+
+    @Override
+    public void scan(ByteBuffer buffer, int from, int to, MatchSink sink) {
+        ChunkDecoder decoder = new ChunkDecoder(Math.min(to - from, chunkSize));
+        for (int start = from; start < to; ) {
+            int end = chunkEnd(buffer, start, to);
+            if (!scanChunk(decoder.decode(buffer, start, end), sink)) {
+                return;
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Finds where the chunk starting at an index ends: after the last line feed that fits in a chunk, or, for a
+     * line longer than a chunk, at the last character boundary that fits.
+     */
+    private int chunkEnd(ByteBuffer buffer, int start, int to) {
+        if (to - start <= chunkSize) {
+            return to;
+        }
+        int limit = start + chunkSize;
+        for (int i = limit; i > start; i--) {
+            if (buffer.get(i - 1) == '\n') {
+                return i;
+            }
+        }
+        int end = limit;
+        while (end > limit - 3 && (buffer.get(end) & 0xC0) == 0x80) {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean scanChunk(DecodedChunk chunk, MatchSink sink) {
+        CharBuffer chars = chunk.chars;
+        Matcher[] matchers = new Matcher[patterns.size()];
+        boolean[] pending = new boolean[matchers.length];
+        for (int i = 0; i < matchers.length; i++) {
+            matchers[i] = patterns.get(i).matcher(chars);
+            pending[i] = matchers[i].find();
+        }
+        OffsetMapper offsets = new OffsetMapper(chunk);
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < matchers.length; i++) {
+                if (pending[i] && (next < 0 || matchers[i].end() < matchers[next].end())) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                return true;
+            }
+            Matcher matcher = matchers[next];
+            int start = offsets.byteOffset(matcher.start());
+            int end = offsets.byteOffset(matcher.end());
+            if (!sink.onMatch(start, end, next)) {
+                return false;
+            }
+            pending[next] = matcher.end() < chars.length() && findNext(matcher);
+        }
+    }
+
+    private static boolean findNext(Matcher matcher) {
+        if (matcher.end() == matcher.start()) {
+            return matcher.find(matcher.end() + 1);
+        }
+        return matcher.find();
+    }
+
+    /**
+     * One decoded chunk: its characters, the absolute byte index it starts at, and the character positions of
+     * the replacement characters that stand for malformed input together with the number of bytes each replaced.
+     */
+    private record DecodedChunk(CharBuffer chars, int base, int[] replaced, int[] replacedLengths, int replacedCount) {
+        int replacedLength(int charIndex) {
+            int i = Arrays.binarySearch(replaced, 0, replacedCount, charIndex);
+            return i >= 0 ? replacedLengths[i] : -1;
+        }
+    }
+
+    /**
+     * Decodes chunks into a reused character buffer, reporting malformed input instead of replacing it silently
+     * so that the byte length of every replacement is known.
+     */
+    private static final class ChunkDecoder {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final CharBuffer chars;
+        private int[] replaced = new int[16];
+        private int[] replacedLengths = new int[16];
+
+        ChunkDecoder(int capacity) {
+            // UTF-8 never decodes to more chars than it has bytes, replacements included
+            this.chars = CharBuffer.allocate(capacity);
+        }
+
+        DecodedChunk decode(ByteBuffer buffer, int from, int to) {
+            ByteBuffer in = buffer.slice(from, to - from);
+            decoder.reset();
+            chars.clear();
+            int count = 0;
+            while (true) {
+                CoderResult result = decoder.decode(in, chars, true);
+                if (!result.isError()) {
+                    break;
+                }
+                if (count == replaced.length) {
+                    replaced = Arrays.copyOf(replaced, count * 2);
+                    replacedLengths = Arrays.copyOf(replacedLengths, count * 2);
+                }
+                replaced[count] = chars.position();
+                replacedLengths[count++] = result.length();
+                chars.put('\uFFFD');
+                in.position(in.position() + result.length());
+            }
+            decoder.flush(chars);
+            return new DecodedChunk(chars.flip(), from, replaced, replacedLengths, count);
+        }
+    }
+
+    /**
+     * Maps character offsets of a decoded chunk back to byte offsets. Consecutive lookups are close to each
+     * other, so the mapper keeps its last position and walks forward or backward from there.
+     */
+    private static final class OffsetMapper {
+        private final DecodedChunk chunk;
+        private final CharSequence chars;
+        private int charOffset;
+        private int byteOffset;
+
+        OffsetMapper(DecodedChunk chunk) {
+            this.chunk = chunk;
+            this.chars = chunk.chars;
+        }
+
+        int byteOffset(int target) {
+            while (charOffset > target) {
+                char c = chars.charAt(--charOffset);
+                if (Character.isLowSurrogate(c) && charOffset > 0 && Character.isHighSurrogate(chars.charAt(charOffset - 1))) {
+                    charOffset--;
+                    byteOffset -= 4;
+                } else {
+                    byteOffset -= byteLength(c, charOffset);
+                }
+            }
+            while (charOffset < target) {
+                char c = chars.charAt(charOffset);
+                if (Character.isHighSurrogate(c)) {
+                    byteOffset += 4;
+                    charOffset += 2;
+                } else {
+                    byteOffset += byteLength(c, charOffset++);
+                }
+            }
+            return chunk.base + byteOffset;
+        }
+
+        private int byteLength(char c, int index) {
+            if (c < 0x80) {
+                return 1;
+            }
+            if (c < 0x800) {
+                return 2;
+            }
+            if (c == '\uFFFD') {
+                int replaced = chunk.replacedLength(index);
+                if (replaced > 0) {
+                    return replaced;
+                }
+            }
+            return 3;
+        }
+    }
+}
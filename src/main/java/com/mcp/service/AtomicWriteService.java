@@ -0,0 +1,14 @@
+package com.mcp.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface AtomicWriteService {
+    void write(Path path, CharSequence content) throws IOException;
+
+    void write(Path path, byte[] content) throws IOException;
+
+    Path stage(Path path, byte[] content) throws IOException;
+
+    void commit(Path staged, Path path) throws IOException;
+}
@@ -0,0 +1,9 @@
+package com.mcp.service;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+public interface BatchReadService {
+    <I, T> List<T> readAll(List<I> items, Function<I, T> reader, BiFunction<I, Exception, T> onFailure);
+}
@@ -0,0 +1,10 @@
+package com.mcp.service;
+
+import com.mcp.git.WorkTreeStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface ChangeTrackerService {
+    WorkTreeStatus getStatus(Path path) throws IOException;
+}
@@ -0,0 +1,12 @@
+package com.mcp.service;
+
+import com.mcp.model.CacheStats;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface ContentCacheService {
+    String readString(Path path) throws IOException;
+
+    CacheStats getStats();
+}
@@ -0,0 +1,9 @@
+package com.mcp.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+public interface ContentIndexService {
+    Optional<List<Path>> findCandidates(Path startPath, List<String> keywords);
+}
@@ -1,11 +1,15 @@
 package com.mcp.service;
 
+import com.mcp.model.ListingOptions;
+import com.mcp.model.TreeOptions;
+
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 
 public interface DirectoryService {
     String createDirectory(Path validPath);
 
-    String listDirectory(Path validPath);
+    String listDirectory(Path validPath, ListingOptions options, PathMatcher nameMatcher);
 
-    String buildDirectoryTree(Path currentPath);
+    String buildDirectoryTree(Path currentPath, TreeOptions options, PathMatcher excludeMatcher);
 }
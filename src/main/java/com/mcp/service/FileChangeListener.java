@@ -0,0 +1,26 @@
+package com.mcp.service;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+
+public interface FileChangeListener {
+    void onFileChange(WatchEvent.Kind<?> kind, Path path);
+
+    /**
+     * Called on the reporting thread when a change made by a tool is queued for the watcher's workers, before
+     * {@link #onFileChange} runs for it, so a listener can stop trusting what it holds for the path right away.
+     *
+     * @param path The full path of the changed file or directory
+     */
+    default void onFileChangeQueued(Path path) {
+    }
+
+    /**
+     * Called once the watcher covers an allowed directory, natively or by polling. Changes made before then
+     * produced no event, so a listener that read the tree earlier re-checks it.
+     *
+     * @param root The allowed directory
+     */
+    default void onWatchStarted(Path root) {
+    }
+}
@@ -1,6 +1,9 @@
 package com.mcp.service;
 
 import com.mcp.model.Edit;
+import com.mcp.model.EditFileArgs;
+import com.mcp.model.ReadPage;
+import com.mcp.model.SearchOptions;
 
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
@@ -9,7 +12,13 @@ import java.util.List;
 public interface FileService {
     String readFile(Path path);
 
-    String readMultipleFiles(List<Path> paths);
+    String readFileRange(Path path, long offset, int length);
+
+    String readFileLines(Path path, long startLine, long endLine);
+
+    String readFileTail(Path path, int lines);
+
+    String readMultipleFiles(List<Path> paths, ReadPage page);
 
     String writeFile(Path path, String content);
 
@@ -17,11 +26,13 @@ public interface FileService {
 
     String getFileInfo(Path path);
 
-    String searchFiles(Path startPath, PathMatcher patternMatcher, List<PathMatcher> excludeMatchers);
+    String getFilesInfo(List<Path> paths, boolean cached);
+
+    String searchFiles(Path startPath, PathMatcher patternMatcher, PathMatcher excludeMatcher);
 
     String editFile(Path path, List<Edit> edits, Boolean dryRun);
 
-    String getChanges(Path path);
+    String editFiles(List<EditFileArgs> files, Boolean dryRun);
 
-    String searchByKeyword(Path startPath, String keyword, List<PathMatcher> excludeMatchers);
+    String searchByKeyword(Path startPath, List<String> keywords, PathMatcher excludeMatcher, SearchOptions options);
 }
@@ -1,29 +1,26 @@
 package com.mcp.service;
 
 import lombok.AccessLevel;
-import lombok.Getter;
 import lombok.experimental.FieldDefaults;
 
-import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
-public class FileVisitorService extends SimpleFileVisitor<Path> {
+public class FileVisitorService implements FileWalkVisitor {
     Path startPath;
     PathMatcher patternMatcher;
-    List<PathMatcher> excludeMatchers;
-    @Getter
-    List<String> results = new ArrayList<>();
+    PathMatcher excludeMatcher;
+    Queue<String> results = new ConcurrentLinkedQueue<>();
 
-    public FileVisitorService(Path startPath, PathMatcher patternMatcher, List<PathMatcher> excludeMatchers) {
+    public FileVisitorService(Path startPath, PathMatcher patternMatcher, PathMatcher excludeMatcher) {
         this.startPath = startPath;
         this.patternMatcher = patternMatcher;
-        this.excludeMatchers = excludeMatchers;
+        this.excludeMatcher = excludeMatcher;
     }
 
     /**
@@ -32,15 +29,15 @@ public class FileVisitorService extends SimpleFileVisitor<Path> {
      *
      * @param dir   a reference to the directory
      * @param attrs the directory's basic attributes
-     * @return FileVisitResult to continue, skip subtree, or terminate
+     * @return true to walk into the directory, false to skip its subtree
      */
     @Override
-    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+    public boolean preVisitDirectory(Path dir, BasicFileAttributes attrs) {
         if (isExcluded(startPath.relativize(dir)))
-            return FileVisitResult.SKIP_SUBTREE;
+            return false;
         if (patternMatcher.matches(dir.getFileName()))
             results.add(dir.toString());
-        return FileVisitResult.CONTINUE;
+        return true;
     }
 
     /**
@@ -48,24 +45,32 @@ public class FileVisitorService extends SimpleFileVisitor<Path> {
      *
      * @param file  a reference to the file
      * @param attrs the file's basic attributes
-     * @return FileVisitResult to continue, skip siblings, or terminate
      */
     @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+    public void visitFile(Path file, BasicFileAttributes attrs) {
         if (isExcluded(startPath.relativize(file)))
-            return FileVisitResult.CONTINUE;
+            return;
         if (patternMatcher.matches(file.getFileName()))
             results.add(file.toString());
-        return FileVisitResult.CONTINUE;
     }
 
     /**
-     * Checks if the given path matches any of the exclude patterns.
+     * Returns the matching paths in path order. Directories are visited in parallel, so the
+     * results are sorted once the walk is done.
+     *
+     * @return the matching file and directory paths
+     */
+    public List<String> getResults() {
+        return results.stream().sorted().toList();
+    }
+
+    /**
+     * Checks if the given path matches any of the exclude patterns, which are combined into one matcher.
      *
      * @param path the path to check
      * @return true if the path matches any exclude pattern, false otherwise
      */
     private boolean isExcluded(Path path) {
-        return excludeMatchers.stream().anyMatch(m -> m.matches(path));
+        return excludeMatcher.matches(path);
     }
 }
@@ -0,0 +1,51 @@
+package com.mcp.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Callbacks of a {@link FileWalkerService} walk. Directories are walked in parallel, so implementations
+ * must be thread-safe and must not rely on the order of calls beyond a directory being visited before its entries.
+ */
+public interface FileWalkVisitor {
+    /**
+     * Invoked for a directory before its entries are visited.
+     *
+     * @param dir   the directory
+     * @param attrs the directory's basic attributes
+     * @return true to walk into the directory, false to skip its subtree
+     */
+    default boolean preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        return true;
+    }
+
+    /**
+     * Invoked for every non-directory entry that is not ignored.
+     *
+     * @param file  the file
+     * @param attrs the file's basic attributes
+     */
+    void visitFile(Path file, BasicFileAttributes attrs);
+
+    /**
+     * Invoked for an entry the walk neither visits nor walks into: an ignored file or directory, or a symbolic
+     * link to a directory.
+     *
+     * @param path  the skipped entry
+     * @param attrs the entry's basic attributes, following symbolic links
+     */
+    default void visitSkipped(Path path, BasicFileAttributes attrs) {
+        // Skipped entries are not reported by default
+    }
+
+    /**
+     * Invoked when a directory cannot be listed or an entry cannot be read.
+     *
+     * @param path the path that failed
+     * @param e    the error
+     */
+    default void visitFailed(Path path, IOException e) {
+        // Unreadable entries are skipped by default
+    }
+}
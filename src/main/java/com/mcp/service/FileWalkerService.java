@@ -0,0 +1,15 @@
+package com.mcp.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public interface FileWalkerService {
+    void walk(Path start, FileWalkVisitor visitor) throws IOException;
+
+    List<Path> listFiles(Path start) throws IOException;
+
+    List<Path> listFiles(Path start, Path after, int limit) throws IOException;
+
+    boolean isIgnored(Path path, boolean directory);
+}
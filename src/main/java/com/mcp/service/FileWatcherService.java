@@ -4,5 +4,5 @@ import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 
 public interface FileWatcherService {
-    void handleFileEvent(WatchEvent.Kind<?> kind, Path fullPath);
+    void notifyFileChange(WatchEvent.Kind<?> kind, Path fullPath);
 }
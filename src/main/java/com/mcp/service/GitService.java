@@ -0,0 +1,9 @@
+package com.mcp.service;
+
+import java.nio.file.Path;
+
+public interface GitService {
+    String getChanges(Path path);
+
+    String getChangedFiles(Path path);
+}
@@ -0,0 +1,9 @@
+package com.mcp.service;
+
+import com.mcp.walk.GlobSet;
+
+import java.util.List;
+
+public interface GlobService {
+    GlobSet compile(List<String> globs);
+}
@@ -0,0 +1,10 @@
+package com.mcp.service;
+
+import com.mcp.index.LineOffsetIndex;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+public interface LineIndexService {
+    LineOffsetIndex indexFor(Path file, BasicFileAttributes attrs);
+}
@@ -0,0 +1,10 @@
+package com.mcp.service;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+public interface MetadataIndexService {
+    boolean walk(Path start, FileWalkVisitor visitor);
+
+    BasicFileAttributes readAttributes(Path path);
+}
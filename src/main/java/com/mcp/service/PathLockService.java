@@ -0,0 +1,13 @@
+package com.mcp.service;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+public interface PathLockService {
+    <T> T withReadLock(Path path, Supplier<T> action);
+
+    <T> T withWriteLock(Path path, Supplier<T> action);
+
+    <T> T withWriteLocks(Collection<Path> paths, Supplier<T> action);
+}
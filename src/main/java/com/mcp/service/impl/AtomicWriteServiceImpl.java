@@ -0,0 +1,235 @@
+package com.mcp.service.impl;
+
+import com.mcp.model.WriteDurability;
+import com.mcp.service.AtomicWriteService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+
+@Service
+@Slf4j
+public class AtomicWriteServiceImpl implements AtomicWriteService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final WriteDurability durability;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    public AtomicWriteServiceImpl(@Value("${app.write.durability:DATA}") WriteDurability durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Replaces the content of a file atomically. The content is encoded as UTF-8 straight into a pooled direct
+     * buffer and streamed to a temporary file in the same directory, which is then forced to disk according to
+     * the durability policy and renamed over the target. Readers see either the old or the new content, never
+     * a partial write. A symbolic link target is resolved first, so the link itself is kept. An existing file's
+     * permissions are carried over, and its owner and group where the process may set them; a new file gets the
+     * permissions of the process umask. The target is replaced by a new inode, so other hard links to an
+     * existing file keep the old content.
+     *
+     * @param path    The file to write, created if it doesn't exist.
+     * @param content The new content.
+     * @throws IOException If the content cannot be encoded or written, in which case the target is unchanged.
+     */
+    @Override
+    public void write(Path path, CharSequence content) throws IOException {
+        replace(path, channel -> encode(content, channel));
+    }
+
+    /**
+     * Replaces the content of a file atomically with raw bytes, with the same guarantees as the text variant.
+     *
+     * @param path    The file to write, created if it doesn't exist.
+     * @param content The new content.
+     * @throws IOException If the content cannot be written, in which case the target is unchanged.
+     */
+    @Override
+    public void write(Path path, byte[] content) throws IOException {
+        replace(path, channel -> writeFully(channel, ByteBuffer.wrap(content)));
+    }
+
+    /**
+     * Writes raw bytes to a temporary file next to the target without touching the target, so several files
+     * can be prepared before any of them is replaced. The temporary file is forced to disk according to the
+     * durability policy and gets the target's permissions, owner and group as far as they can be set.
+     *
+     * @param path    The file the content is meant for.
+     * @param content The new content.
+     * @return The staged temporary file.
+     * @throws IOException If the content cannot be written; no temporary file is left behind.
+     */
+    @Override
+    public Path stage(Path path, byte[] content) throws IOException {
+        return stage(resolve(path), channel -> writeFully(channel, ByteBuffer.wrap(content)));
+    }
+
+    /**
+     * Atomically replaces a file with a staged temporary file.
+     *
+     * @param staged The temporary file returned by {@link #stage(Path, byte[])}.
+     * @param path   The file to replace.
+     * @throws IOException If the file cannot be replaced, in which case it is unchanged.
+     */
+    @Override
+    public void commit(Path staged, Path path) throws IOException {
+        Path target = resolve(path);
+        move(staged, target);
+        if (durability == WriteDurability.FULL) {
+            forceDirectory(target.toAbsolutePath().getParent());
+        }
+    }
+
+    private void replace(Path path, ContentWriter writer) throws IOException {
+        Path target = resolve(path);
+        Path temp = stage(target, writer);
+        try {
+            commit(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private Path stage(Path target, ContentWriter writer) throws IOException {
+        PosixFileAttributes targetAttrs = posixAttributes(target);
+        Path temp = createTemp(target, targetAttrs);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write(channel);
+                if (durability != WriteDurability.NONE) {
+                    channel.force(true);
+                }
+            }
+            if (targetAttrs != null) {
+                copyAttributes(targetAttrs, temp);
+            }
+            return temp;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static Path resolve(Path path) throws IOException {
+        return Files.isSymbolicLink(path) ? path.toRealPath() : path;
+    }
+
+    private void encode(CharSequence content, FileChannel channel) throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.wrap(content);
+        ByteBuffer buffer = buffers.get().clear();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            writeFully(channel, buffer.flip());
+            buffer.clear();
+        } while (result.isOverflow());
+        while (encoder.flush(buffer).isOverflow()) {
+            writeFully(channel, buffer.flip());
+            buffer.clear();
+        }
+        writeFully(channel, buffer.flip());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Creates an empty temporary file next to the target. Without attributes to copy it is created like any new
+     * file, so the process umask decides its permissions; otherwise it is created with the target's permissions,
+     * so the content is never more exposed while it is written than it was before.
+     */
+    private static Path createTemp(Path target, PosixFileAttributes targetAttrs) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        while (true) {
+            Path temp = dir.resolve("." + target.getFileName() + "." + Long.toUnsignedString(RANDOM.nextLong(), 36) + ".tmp");
+            try {
+                return targetAttrs == null
+                        ? Files.createFile(temp)
+                        : Files.createFile(temp, PosixFilePermissions.asFileAttribute(targetAttrs.permissions()));
+            } catch (FileAlreadyExistsException e) {
+                // Another temporary file has this name; draw another one
+            }
+        }
+    }
+
+    private static PosixFileAttributes posixAttributes(Path target) throws IOException {
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)
+                || Files.getFileAttributeView(target, PosixFileAttributeView.class) == null) {
+            return null;
+        }
+        return Files.readAttributes(target, PosixFileAttributes.class);
+    }
+
+    /**
+     * Gives the temporary file the target's exact permissions, which the umask may have narrowed at creation,
+     * then its group and owner. Changing them needs privileges the process often lacks, in which case the file
+     * keeps the process's own.
+     */
+    private static void copyAttributes(PosixFileAttributes targetAttrs, Path temp) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        view.setPermissions(targetAttrs.permissions());
+        PosixFileAttributes tempAttrs = view.readAttributes();
+        try {
+            if (!tempAttrs.group().equals(targetAttrs.group())) {
+                view.setGroup(targetAttrs.group());
+            }
+            if (!tempAttrs.owner().equals(targetAttrs.owner())) {
+                view.setOwner(targetAttrs.owner());
+            }
+        } catch (IOException e) {
+            log.debug("COULD NOT KEEP THE OWNER OF {} - {}", temp, e.getMessage());
+        }
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("ATOMIC MOVE NOT SUPPORTED FOR {} - REPLACING IN PLACE", target);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("COULD NOT FORCE DIRECTORY {} - {}", dir, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+}
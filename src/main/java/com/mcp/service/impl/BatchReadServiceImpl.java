@@ -0,0 +1,118 @@
+package com.mcp.service.impl;
+
+import com.mcp.service.BatchReadService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+@Service
+@Slf4j
+public class BatchReadServiceImpl implements BatchReadService {
+    private final ExecutorService readExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final long timeoutMillis;
+
+    public BatchReadServiceImpl(@Value("${app.read.concurrency:32}") int concurrency,
+                                @Value("${app.read.timeout-ms:10000}") long timeoutMillis) {
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        readExecutor.shutdownNow();
+    }
+
+    /**
+     * Reads a batch of items on virtual threads, at most the configured number at a time, and returns the
+     * results in the order of the items. Each read gets its own timeout, counted from when it starts; a read
+     * that times out is interrupted and replaced by the failure result, so one stalled file does not hold up
+     * the rest of the batch. A timed-out read holds its permit until it actually returns, so stalled reads
+     * count against the limit and never pile up beyond it.
+     *
+     * @param items     The items to read, in output order.
+     * @param reader    The blocking read of one item.
+     * @param onFailure The result to use for an item whose read threw or timed out.
+     * @return The results, in the order of the items.
+     */
+    @Override
+    public <I, T> List<T> readAll(List<I> items, Function<I, T> reader, BiFunction<I, Exception, T> onFailure) {
+        if (items.size() == 1) {
+            return List.of(read(items.getFirst(), reader, onFailure));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(items.size());
+        for (I item : items) {
+            futures.add(CompletableFuture.supplyAsync(() -> read(item, reader, onFailure), readExecutor));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    private <I, T> T read(I item, Function<I, T> reader, BiFunction<I, Exception, T> onFailure) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return onFailure.apply(item, e);
+        }
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = readExecutor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return reader.apply(item);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return onFailure.apply(item, e);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(future, claimed);
+            log.warn("READ OF {} TIMED OUT AFTER {} MS", item, timeoutMillis);
+            return onFailure.apply(item, new TimeoutException("READ TIMED OUT AFTER " + timeoutMillis + " MS"));
+        } catch (ExecutionException e) {
+            return onFailure.apply(item, e.getCause() instanceof Exception cause ? cause : e);
+        } catch (InterruptedException e) {
+            abandon(future, claimed);
+            Thread.currentThread().interrupt();
+            return onFailure.apply(item, e);
+        }
+    }
+
+    /**
+     * Cancels a read the caller stops waiting for. File channel reads do not stop when interrupted, so a read
+     * that has started keeps its permit until it really returns; a read that never started gives it back here.
+     *
+     * @param future  The read.
+     * @param claimed Set by whichever of the read and this method runs first.
+     */
+    private void abandon(Future<?> future, AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+}
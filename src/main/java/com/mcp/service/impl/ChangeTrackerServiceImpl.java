@@ -0,0 +1,231 @@
+package com.mcp.service.impl;
+
+import com.mcp.git.GitIndex;
+import com.mcp.git.GitRepository;
+import com.mcp.git.TreeEntry;
+import com.mcp.git.WorkTreeFile;
+import com.mcp.git.WorkTreeStatus;
+import com.mcp.model.ChangeType;
+import com.mcp.model.FileChange;
+import com.mcp.service.BatchReadService;
+import com.mcp.service.ChangeTrackerService;
+import com.mcp.service.FileChangeListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class ChangeTrackerServiceImpl implements ChangeTrackerService, FileChangeListener {
+    private static final String FALLBACK_BASE = "develop";
+
+    private final BatchReadService batchReadService;
+    private final long rescanIntervalMillis;
+    private final Map<Path, TrackedRepository> repositories = new ConcurrentHashMap<>();
+
+    public ChangeTrackerServiceImpl(BatchReadService batchReadService,
+                                    @Value("${app.git.rescan-interval-ms:60000}") long rescanIntervalMillis) {
+        this.batchReadService = batchReadService;
+        this.rescanIntervalMillis = rescanIntervalMillis;
+    }
+
+    /**
+     * Returns the files under a path that differ from the base commit: the upstream of the current branch, else
+     * {@code develop}, else HEAD. The first query of a repository, and any query after the base commit or the
+     * index changed, checks the stat data of every tracked file against the index. Later queries only recheck
+     * the files the file watcher reported since, so they cost nothing when nothing changed. A full check is
+     * still forced once the rescan interval has passed, to catch changes the watcher cannot see, such as files
+     * in ignored directories.
+     *
+     * @param path The directory or file to report on.
+     * @return The changed files under the path, or null if the path is not inside a git work tree.
+     * @throws IOException If the repository cannot be read.
+     */
+    @Override
+    public WorkTreeStatus getStatus(Path path) throws IOException {
+        GitRepository found = GitRepository.find(path);
+        if (found == null) {
+            return null;
+        }
+        TrackedRepository tracked = repositories.computeIfAbsent(found.gitDir(), gitDir -> new TrackedRepository(found));
+        String prefix = toGitPath(tracked.repository.workTree().relativize(path.toAbsolutePath().normalize()));
+        synchronized (tracked) {
+            refresh(tracked);
+            List<FileChange> changes = tracked.changes.values().stream()
+                    .filter(change -> isUnder(change.path(), prefix))
+                    .toList();
+            return new WorkTreeStatus(tracked.repository, tracked.baseCommit, tracked.tree, tracked.index,
+                    tracked.fileMode, changes);
+        }
+    }
+
+    /**
+     * Marks the tracked files at or under a changed path as needing a recheck on the next query.
+     *
+     * @param kind The kind of event.
+     * @param path The changed file or directory.
+     */
+    @Override
+    public void onFileChange(WatchEvent.Kind<?> kind, Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        for (TrackedRepository tracked : repositories.values()) {
+            Path workTree = tracked.repository.workTree();
+            if (!absolute.startsWith(workTree) || absolute.startsWith(tracked.repository.gitDir())) {
+                continue;
+            }
+            String relative = toGitPath(workTree.relativize(absolute));
+            if (relative.isEmpty()) {
+                tracked.scannedAt = 0;
+                continue;
+            }
+            tracked.suspects.add(relative);
+            tracked.suspects.addAll(tracked.paths.subSet(relative + "/", true, relative + "0", false));
+        }
+    }
+
+    private void refresh(TrackedRepository tracked) throws IOException {
+        GitRepository repository = tracked.repository;
+        String base = repository.baseCommit(FALLBACK_BASE);
+        Map<String, TreeEntry> tree = repository.tree(base);
+        GitIndex index = repository.index();
+        boolean fileMode = !"false".equalsIgnoreCase(repository.config().get("core.filemode"));
+        long now = System.currentTimeMillis();
+        Collection<String> toCheck;
+        if (!base.equals(tracked.baseCommit) || index != tracked.index || fileMode != tracked.fileMode
+                || now - tracked.scannedAt >= rescanIntervalMillis) {
+            NavigableSet<String> paths = new TreeSet<>(tree.keySet());
+            paths.addAll(index.entries().keySet());
+            tracked.paths = Collections.unmodifiableNavigableSet(paths);
+            tracked.suspects.clear();
+            tracked.changes.clear();
+            tracked.baseCommit = base;
+            tracked.tree = tree;
+            tracked.index = index;
+            tracked.fileMode = fileMode;
+            tracked.scannedAt = now;
+            toCheck = paths;
+            log.info("FULL STATUS SCAN OF {} TRACKED FILES IN {}", paths.size(), repository.workTree());
+        } else {
+            toCheck = new ArrayList<>();
+            for (Iterator<String> iterator = tracked.suspects.iterator(); iterator.hasNext(); ) {
+                toCheck.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        List<String> stale = new ArrayList<>();
+        for (String path : toCheck) {
+            tracked.changes.remove(path);
+            if (mayDiffer(tracked, path)) {
+                stale.add(path);
+            }
+        }
+        List<FileChange> changes = batchReadService.readAll(stale, path -> classify(tracked, path),
+                (path, e) -> new FileChange(path, ChangeType.MODIFIED));
+        for (FileChange change : changes) {
+            if (change != null) {
+                tracked.changes.put(change.path(), change);
+            }
+        }
+    }
+
+    /**
+     * Rules out, from stat data alone, tracked files that are staged as their base blob and untouched since
+     * they were staged.
+     */
+    private boolean mayDiffer(TrackedRepository tracked, String path) {
+        TreeEntry base = tracked.tree.get(path);
+        GitIndex.Entry staged = tracked.index.entries().get(path);
+        if (base == null && staged == null
+                || base != null && base.mode() == TreeEntry.MODE_GITLINK
+                || staged != null && staged.mode() == TreeEntry.MODE_GITLINK) {
+            return false;
+        }
+        if (base == null || staged == null || !base.id().equals(staged.id()) || base.mode() != staged.mode()) {
+            return true;
+        }
+        if (staged.skipWorktree()) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(tracked.repository.workTree().resolve(path),
+                    BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            FileTime modified = attrs.lastModifiedTime();
+            long nanos = modified.to(TimeUnit.NANOSECONDS);
+            return !tracked.index.isStatClean(staged, attrs.size(), modified.to(TimeUnit.SECONDS), (int) (nanos % 1_000_000_000L));
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Hashes a file whose stat data does not rule out a change and compares it with the base commit.
+     */
+    private FileChange classify(TrackedRepository tracked, String path) {
+        TreeEntry base = tracked.tree.get(path);
+        GitIndex.Entry staged = tracked.index.entries().get(path);
+        try {
+            WorkTreeFile file = staged == null ? null
+                    : WorkTreeFile.read(tracked.repository.workTree(), path, staged, tracked.fileMode);
+            if (file == null) {
+                return base == null ? null : new FileChange(path, ChangeType.DELETED);
+            }
+            if (base == null) {
+                return new FileChange(path, ChangeType.ADDED);
+            }
+            return file.matches(base) ? null : new FileChange(path, ChangeType.MODIFIED);
+        } catch (IOException e) {
+            log.warn("COULD NOT READ TRACKED FILE {} - {}", path, e.getMessage());
+            return new FileChange(path, ChangeType.MODIFIED);
+        }
+    }
+
+    private static boolean isUnder(String path, String prefix) {
+        return prefix.isEmpty() || path.equals(prefix) || path.startsWith(prefix) && path.charAt(prefix.length()) == '/';
+    }
+
+    private static String toGitPath(Path path) {
+        String text = path.toString();
+        return File.separatorChar == '/' ? text : text.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * The state of one work tree: the base and index the changes were computed against, the confirmed changes,
+     * and the paths reported by the watcher since the last query.
+     */
+    private static final class TrackedRepository {
+        private final GitRepository repository;
+        private final Set<String> suspects = ConcurrentHashMap.newKeySet();
+        private final TreeMap<String, FileChange> changes = new TreeMap<>();
+        private volatile NavigableSet<String> paths = Collections.emptyNavigableSet();
+        private volatile long scannedAt;
+        private String baseCommit;
+        private Map<String, TreeEntry> tree;
+        private GitIndex index;
+        private boolean fileMode;
+
+        private TrackedRepository(GitRepository repository) {
+            this.repository = repository;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.mcp.service.impl;
+
+import com.mcp.model.CacheStats;
+import com.mcp.service.ContentCacheService;
+import com.mcp.service.FileChangeListener;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class ContentCacheServiceImpl implements ContentCacheService, FileChangeListener {
+    private final boolean enabled;
+    private final long maxWeight;
+    private final long maxFileSize;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long weight;
+
+    public ContentCacheServiceImpl(@Value("${app.cache.enabled:true}") boolean enabled,
+                                   @Value("${app.cache.max-bytes:67108864}") long maxWeight,
+                                   @Value("${app.cache.max-file-size:2097152}") long maxFileSize) {
+        this.enabled = enabled;
+        this.maxWeight = maxWeight;
+        this.maxFileSize = Math.min(maxFileSize, maxWeight);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        CacheStats stats = getStats();
+        log.info("CONTENT CACHE - {} HITS, {} MISSES ({}% HIT RATE), {} EVICTIONS",
+                stats.hits(), stats.misses(), Math.round(stats.hitRate() * 100), stats.evictions());
+    }
+
+    /**
+     * Reads a file as a string, serving it from memory if it is cached and its size and modification time
+     * are unchanged. Files up to the size limit are cached after a miss; the least recently used entries are
+     * evicted once the total size of the cached files exceeds the budget.
+     *
+     * @param path The file to read.
+     * @return The content of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    @Override
+    public String readString(Path path) throws IOException {
+        if (!enabled) {
+            return Files.readString(path);
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        long modified = attrs.lastModifiedTime().toMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.modified() == modified && entry.size() == attrs.size()) {
+                hits.incrementAndGet();
+                return entry.content();
+            }
+        }
+        misses.incrementAndGet();
+        String content = Files.readString(path);
+        if (attrs.size() <= maxFileSize) {
+            put(path, new Entry(modified, attrs.size(), content));
+        }
+        return content;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        synchronized (entries) {
+            return new CacheStats(hits.get(), misses.get(), evictions.get(), entries.size(), weight);
+        }
+    }
+
+    /**
+     * Drops the cached content of a changed file, or of every file below a changed directory.
+     *
+     * @param kind The kind of event
+     * @param path The full path of the affected file or directory
+     */
+    @Override
+    public void onFileChange(WatchEvent.Kind<?> kind, Path path) {
+        synchronized (entries) {
+            Entry removed = entries.remove(path);
+            if (removed != null) {
+                weight -= removed.size();
+                return;
+            }
+            Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Entry> next = iterator.next();
+                if (next.getKey().startsWith(path)) {
+                    weight -= next.getValue().size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void put(Path path, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(path, entry);
+            weight += entry.size() - (previous == null ? 0 : previous.size());
+            Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                Map.Entry<Path, Entry> eldest = iterator.next();
+                weight -= eldest.getValue().size();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A cached file content, weighted by the size of the file.
+     *
+     * @param modified The file's last modified time in millis when it was read.
+     * @param size     The file's size in bytes when it was read.
+     * @param content  The decoded content.
+     */
+    private record Entry(long modified, long size, String content) {
+    }
+}
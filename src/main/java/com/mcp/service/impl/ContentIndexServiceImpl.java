@@ -0,0 +1,396 @@
+package com.mcp.service.impl;
+
+import com.mcp.index.TrigramIndex;
+import com.mcp.search.FileScanner;
+import com.mcp.service.ContentIndexService;
+import com.mcp.service.FileChangeListener;
+import com.mcp.service.FileWalkVisitor;
+import com.mcp.service.FileWalkerService;
+import com.mcp.service.PathService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class ContentIndexServiceImpl implements ContentIndexService, FileChangeListener {
+    private final PathService pathService;
+    private final FileWalkerService fileWalkerService;
+    private final boolean enabled;
+    private final Path snapshotDir;
+    private final long maxFileSize;
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService indexExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final Map<Path, TrigramIndex> indexes = new ConcurrentHashMap<>();
+    private final Set<Path> readyRoots = ConcurrentHashMap.newKeySet();
+    private final Set<Path> pendingRefreshes = ConcurrentHashMap.newKeySet();
+    private final Map<Path, Boolean> refreshes = new ConcurrentHashMap<>();
+    private final Map<Path, Integer> queuedChanges = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ContentIndexServiceImpl(PathService pathService,
+                                   FileWalkerService fileWalkerService,
+                                   @Value("${app.index.enabled:true}") boolean enabled,
+                                   @Value("${app.index.dir:${user.home}/.my-mcp/index}") String snapshotDir,
+                                   @Value("${app.index.max-file-size:1048576}") long maxFileSize) {
+        this.pathService = pathService;
+        this.fileWalkerService = fileWalkerService;
+        this.enabled = enabled;
+        this.snapshotDir = Paths.get(snapshotDir).toAbsolutePath().normalize();
+        this.maxFileSize = maxFileSize;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("CONTENT INDEX DISABLED");
+            return;
+        }
+        for (String dir : pathService.getAllowedDirsAsString()) {
+            Path root = Paths.get(dir).toAbsolutePath().normalize();
+            buildExecutor.submit(() -> buildIndex(root));
+        }
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        buildExecutor.shutdownNow();
+        indexExecutor.shutdownNow();
+        for (Path root : readyRoots) {
+            saveSnapshot(indexes.get(root));
+        }
+    }
+
+    /**
+     * Returns the files below the start path that may contain any of the keywords, according to the trigram index.
+     * Files whose refresh is still queued or running are always candidates, since their stored trigrams may be
+     * out of date.
+     *
+     * @param startPath The directory or file the search is restricted to.
+     * @param keywords  The literal keywords to look up.
+     * @return The candidate files sorted by path, or empty if the index cannot answer the query
+     * (disabled, still building, a keyword shorter than three bytes, path outside the indexed roots, or a
+     * directory in or above the start path still being refreshed).
+     */
+    @Override
+    public Optional<List<Path>> findCandidates(Path startPath, List<String> keywords) {
+        if (!enabled || keywords == null || keywords.isEmpty()) {
+            return Optional.empty();
+        }
+        Path root = findRoot(startPath);
+        if (root == null || !readyRoots.contains(root)) {
+            return Optional.empty();
+        }
+        TrigramIndex index = indexes.get(root);
+        Set<Path> candidates = new TreeSet<>();
+        for (String keyword : keywords) {
+            byte[] needle = keyword.getBytes(StandardCharsets.UTF_8);
+            if (needle.length < 3) {
+                return Optional.empty();
+            }
+            candidates.addAll(index.candidates(startPath, needle));
+        }
+        if (!addRefreshing(startPath, queuedChanges.keySet(), candidates)
+                || !addRefreshing(startPath, refreshes.keySet(), candidates)
+                || !addRefreshing(startPath, pendingRefreshes, candidates)) {
+            return Optional.empty();
+        }
+        return Optional.of(new ArrayList<>(candidates));
+    }
+
+    /**
+     * Adds the refreshing paths at or below the start path to the candidates.
+     *
+     * @param startPath  The directory or file the search is restricted to.
+     * @param refreshing The paths whose refresh is queued or running.
+     * @param candidates The candidates to add to.
+     * @return False if a refreshing directory may hold files below the start path the index does not know yet.
+     */
+    private static boolean addRefreshing(Path startPath, Set<Path> refreshing, Set<Path> candidates) {
+        for (Path path : refreshing) {
+            boolean below = path.startsWith(startPath);
+            if ((below || startPath.startsWith(path)) && Files.isDirectory(path)) {
+                return false;
+            }
+            if (below) {
+                candidates.add(path);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the index in sync with a file system event. The event kind is only a hint: the path is
+     * re-checked on disk so that reordered events still converge to the current state. Events that arrive
+     * while a root is still being built are replayed once it is done, since the build may have read the file
+     * before the change.
+     *
+     * @param kind The kind of event
+     * @param path The full path of the affected file or directory
+     */
+    @Override
+    public void onFileChange(WatchEvent.Kind<?> kind, Path path) {
+        try {
+            handleChange(path);
+        } finally {
+            queuedChanges.computeIfPresent(path, (p, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Counts a change queued by a tool until its event arrives, so that searches treat the file as a candidate
+     * in the meantime.
+     *
+     * @param path The full path of the changed file or directory
+     */
+    @Override
+    public void onFileChangeQueued(Path path) {
+        if (enabled) {
+            queuedChanges.merge(path, 1, Integer::sum);
+        }
+    }
+
+    private void handleChange(Path path) {
+        Path root = findRoot(path);
+        if (!enabled || root == null || path.startsWith(snapshotDir)) {
+            return;
+        }
+        TrigramIndex index = indexes.get(root);
+        if (index == null) {
+            return;
+        }
+        if (!readyRoots.contains(root)) {
+            pendingRefreshes.add(path);
+            if (!readyRoots.contains(root) || !pendingRefreshes.remove(path)) {
+                return;
+            }
+        }
+        scheduleRefresh(index, path);
+    }
+
+    /**
+     * Reconciles a root with the disk once the watcher covers it, since files changed between the build's walk
+     * and the registration produced no event. Runs on the build thread, after the build of the root.
+     *
+     * @param root The allowed directory now watched
+     */
+    @Override
+    public void onWatchStarted(Path root) {
+        if (enabled) {
+            buildExecutor.submit(() -> reconcile(root));
+        }
+    }
+
+    /**
+     * Refreshes a path on the index pool, one refresh per path at a time. A refresh requested while one is
+     * running for the same path runs again once it finishes, so an older read of a file can never be stored
+     * after a newer one. The map holds false while a refresh runs and true once another one was requested.
+     *
+     * @param index The index of the root containing the path
+     * @param path  The changed path
+     */
+    private void scheduleRefresh(TrigramIndex index, Path path) {
+        if (refreshes.compute(path, (p, rerun) -> rerun != null)) {
+            return;
+        }
+        indexExecutor.execute(() -> {
+            do {
+                try {
+                    refresh(index, path);
+                } catch (RuntimeException e) {
+                    log.warn("FAILED TO REFRESH CONTENT INDEX FOR {} - {}", path, e.getMessage());
+                }
+            } while (refreshes.compute(path, (p, rerun) -> rerun ? Boolean.FALSE : null) != null);
+        });
+    }
+
+    /**
+     * Loads the snapshot of a root directory if present, then reconciles it with the files on disk.
+     * Changed files are re-indexed by the walker's workers as they are visited; ignored files are left out,
+     * as keyword search never visits them.
+     *
+     * @param root The allowed directory to index
+     */
+    private void buildIndex(Path root) {
+        long start = System.currentTimeMillis();
+        TrigramIndex index = loadSnapshot(root);
+        indexes.put(root, index);
+        index.beginReconcile();
+        AtomicInteger reindexed = new AtomicInteger();
+        try {
+            fileWalkerService.walk(root, new FileWalkVisitor() {
+                @Override
+                public boolean preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(snapshotDir);
+                }
+
+                @Override
+                public void visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !index.isUpToDate(file, attrs.lastModifiedTime().toMillis(), attrs.size())) {
+                        indexFile(index, file, attrs);
+                        reindexed.incrementAndGet();
+                    }
+                }
+            });
+        } catch (Exception e) {
+            log.error("FAILED TO BUILD CONTENT INDEX FOR {}", root, e);
+            pendingRefreshes.removeIf(path -> path.startsWith(root));
+            return;
+        }
+        index.endReconcile();
+        readyRoots.add(root);
+        for (Path path : new ArrayList<>(pendingRefreshes)) {
+            if (path.startsWith(root) && pendingRefreshes.remove(path)) {
+                scheduleRefresh(index, path);
+            }
+        }
+        log.info("CONTENT INDEX READY FOR {} - {} FILES, {} REINDEXED IN {} MS",
+                root, index.size(), reindexed.get(), System.currentTimeMillis() - start);
+        saveSnapshot(index);
+    }
+
+    /**
+     * Drops the files of a ready root that are gone from disk and schedules a refresh of the changed ones,
+     * which goes through the same per-path ordering as the change events.
+     *
+     * @param root The allowed directory to reconcile
+     */
+    private void reconcile(Path root) {
+        TrigramIndex index = indexes.get(root);
+        if (index == null || !readyRoots.contains(root)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        AtomicInteger changed = new AtomicInteger();
+        index.beginReconcile();
+        try {
+            fileWalkerService.walk(root, new FileWalkVisitor() {
+                @Override
+                public boolean preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(snapshotDir);
+                }
+
+                @Override
+                public void visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !index.isUpToDate(file, attrs.lastModifiedTime().toMillis(), attrs.size())) {
+                        scheduleRefresh(index, file);
+                        changed.incrementAndGet();
+                    }
+                }
+            });
+        } catch (Exception e) {
+            log.error("FAILED TO RECONCILE CONTENT INDEX FOR {}", root, e);
+            return;
+        }
+        index.endReconcile();
+        log.info("CONTENT INDEX RECONCILED FOR {} - {} CHANGED FILES IN {} MS",
+                root, changed.get(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Re-indexes a path after a change event: removes it if it is gone, indexes it if it is a file,
+     * and schedules a refresh of every changed file below it if it is a directory.
+     *
+     * @param index The index of the root containing the path
+     * @param path  The changed path
+     */
+    private void refresh(TrigramIndex index, Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attrs.isRegularFile()) {
+                indexFile(index, path, attrs);
+            } else if (attrs.isDirectory()) {
+                fileWalkerService.walk(path, (file, fileAttrs) -> {
+                    if (fileAttrs.isRegularFile() && !index.isUpToDate(file, fileAttrs.lastModifiedTime().toMillis(), fileAttrs.size())) {
+                        scheduleRefresh(index, file);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            index.remove(path);
+        }
+    }
+
+    /**
+     * Reads a file and stores its trigrams. Files above the size limit are stored unindexed,
+     * so they are always treated as candidates; binary files are stored without trigrams,
+     * since keyword search skips them anyway.
+     *
+     * @param index The index to update
+     * @param file  The file to index
+     * @param attrs The file's attributes
+     */
+    private void indexFile(TrigramIndex index, Path file, BasicFileAttributes attrs) {
+        long mtime = attrs.lastModifiedTime().toMillis();
+        try {
+            if (attrs.size() > maxFileSize) {
+                index.put(file, mtime, attrs.size(), null);
+                return;
+            }
+            byte[] data = Files.readAllBytes(file);
+            int[] trigrams = FileScanner.isBinary(ByteBuffer.wrap(data), data.length)
+                    ? new int[0]
+                    : TrigramIndex.trigramsOf(data, 0, data.length);
+            index.put(file, mtime, attrs.size(), trigrams);
+        } catch (IOException e) {
+            index.remove(file);
+        }
+    }
+
+    private TrigramIndex loadSnapshot(Path root) {
+        Path file = snapshotFile(root);
+        if (Files.isRegularFile(file)) {
+            try {
+                return TrigramIndex.load(root, file);
+            } catch (IOException e) {
+                log.warn("DISCARDING CONTENT INDEX SNAPSHOT {} - {}", file, e.getMessage());
+            }
+        }
+        return new TrigramIndex(root);
+    }
+
+    private void saveSnapshot(TrigramIndex index) {
+        Path file = snapshotFile(index.getRoot());
+        try {
+            index.save(file);
+        } catch (IOException e) {
+            log.warn("FAILED TO SAVE CONTENT INDEX SNAPSHOT {} - {}", file, e.getMessage());
+        }
+    }
+
+    private Path snapshotFile(Path root) {
+        return snapshotDir.resolve(UUID.nameUUIDFromBytes(root.toString().getBytes(StandardCharsets.UTF_8)) + ".idx");
+    }
+
+    private Path findRoot(Path path) {
+        for (Path root : indexes.keySet()) {
+            if (path.startsWith(root)) {
+                return root;
+            }
+        }
+        return null;
+    }
+}
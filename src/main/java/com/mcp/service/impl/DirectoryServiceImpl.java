@@ -1,27 +1,48 @@
 package com.mcp.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcp.model.DirectoryEntry;
+import com.mcp.model.ListingOptions;
+import com.mcp.model.TreeOptions;
 import com.mcp.service.DirectoryService;
+import com.mcp.service.FileWalkVisitor;
+import com.mcp.service.FileWalkerService;
+import com.mcp.service.MetadataIndexService;
 import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Service
+@RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Slf4j
 public class DirectoryServiceImpl implements DirectoryService {
+    FileWalkerService fileWalkerService;
+    MetadataIndexService metadataIndexService;
     ObjectMapper mapper = new ObjectMapper();
 
     /**
@@ -41,58 +62,300 @@ public class DirectoryServiceImpl implements DirectoryService {
     }
 
     /**
-     * List the contents of a directory.
+     * List one page of the contents of a directory, ignored entries included. Entries and their attributes are
+     * read in one pass, from the metadata index or by the parallel walker, and only the entries up to the end
+     * of the page are kept, in a heap ordered by the sort key, so memory follows the page and not the size of
+     * the directory. A trailing line gives the offset of the next page when there is one.
      *
-     * @param validPath the path of the directory to list
+     * @param validPath   the path of the directory to list
+     * @param options     the sort order, the page and whether to show sizes and modification times
+     * @param nameMatcher the glob entry names must match
      * @return a formatted string listing files and directories
      */
     @Override
-    public String listDirectory(Path validPath) {
-        try (Stream<Path> stream = Files.list(validPath)) {
-            return stream
-                    .map(p -> (Files.isDirectory(p) ? "[DIR] " : "[FILE] ") + p.getFileName().toString())
-                    .collect(Collectors.joining("\n"));
+    public String listDirectory(Path validPath, ListingOptions options, PathMatcher nameMatcher) {
+        Comparator<DirectoryEntry> order = options.comparator();
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 1, (long) options.offset() + options.limit());
+        PriorityQueue<DirectoryEntry> page = new PriorityQueue<>(order.reversed());
+        AtomicInteger matched = new AtomicInteger();
+        try {
+            forEachEntry(validPath, true, entry -> {
+                if (nameMatcher != null && !nameMatcher.matches(Path.of(entry.name()))) {
+                    return;
+                }
+                matched.incrementAndGet();
+                synchronized (page) {
+                    page.add(entry);
+                    if (page.size() > capacity) {
+                        page.poll();
+                    }
+                }
+            });
         } catch (IOException e) {
             return "ERROR LISTING DIRECTORY: " + e.getMessage();
         }
+        List<DirectoryEntry> sorted = new ArrayList<>(page);
+        sorted.sort(order);
+        List<DirectoryEntry> shown = sorted.subList(Math.min(options.offset(), sorted.size()), sorted.size());
+        StringJoiner lines = new StringJoiner("\n");
+        for (DirectoryEntry entry : shown) {
+            String line = (entry.directory() ? "[DIR] " : "[FILE] ") + entry.name();
+            lines.add(options.details()
+                    ? line + "\t" + entry.size() + "\t" + Instant.ofEpochMilli(entry.modified())
+                    : line);
+        }
+        int next = options.offset() + shown.size();
+        if (next < matched.get()) {
+            lines.add("... " + (matched.get() - next) + " MORE ENTRIES - NEXT OFFSET " + next);
+        }
+        return lines.toString();
     }
 
     /**
-     * Display the directory structure as a JSON tree at the current working directory.
+     * Display the directory structure as a JSON tree, streamed straight to the output one directory listing at
+     * a time, so memory and output size are bounded by the options rather than by the size of the tree.
+     * Directories below the maximum depth, and directories whose entries did not all fit in the node budget,
+     * carry a {@code cursor} that expands them from where they stopped. With sizes, files carry their size and
+     * directories the number of files and bytes in their whole subtree, expanded or not, computed in one
+     * parallel pass before the tree is written.
      *
+     * @param currentPath    the root of the tree
+     * @param options        the depth and node limits, whether to add sizes, and the offset to resume the root at
+     * @param excludeMatcher the patterns of entries to leave out, relative to the root
      * @return a JSON representation of the directory tree
      */
     @Override
-    public String buildDirectoryTree(Path currentPath) {
-        Map<String, Object> tree = buildTree(currentPath);
-        try {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(tree);
-        } catch (JsonProcessingException e) {
+    public String buildDirectoryTree(Path currentPath, TreeOptions options, PathMatcher excludeMatcher) {
+        Map<Path, SubtreeTotals> totals = null;
+        if (options.sizes()) {
+            try {
+                totals = summarize(currentPath, excludeMatcher);
+            } catch (IOException e) {
+                log.debug("COULD NOT SUMMARIZE {} - {}", currentPath, e.getMessage());
+            }
+        }
+        StringWriter out = new StringWriter();
+        try (JsonGenerator json = mapper.getFactory().createGenerator(out).useDefaultPrettyPrinter()) {
+            new TreeWriter(json, currentPath, options, excludeMatcher, totals).writeRoot();
+        } catch (IOException e) {
             return "ERROR CONVERTING TO JSON: " + e.getMessage();
         }
+        return out.toString();
+    }
+
+    /**
+     * Lists the entries of one directory with their attributes, sorted by name, from the metadata index when
+     * it covers the directory and with the walker otherwise. Entries the walker would skip are listed only on
+     * request.
+     *
+     * @param dir            the directory
+     * @param includeSkipped whether to list ignored entries and symbolic links to directories
+     * @return the entries
+     * @throws IOException if the directory cannot be read
+     */
+    private List<DirectoryEntry> listEntries(Path dir, boolean includeSkipped) throws IOException {
+        Queue<DirectoryEntry> entries = new ConcurrentLinkedQueue<>();
+        forEachEntry(dir, includeSkipped, entries::add);
+        List<DirectoryEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(DirectoryEntry::name));
+        return sorted;
+    }
+
+    /**
+     * Passes every entry of one directory with its attributes to a consumer, possibly from several threads at
+     * once.
+     *
+     * @param dir            the directory
+     * @param includeSkipped whether to include ignored entries and symbolic links to directories
+     * @param consumer       the thread-safe consumer
+     * @throws IOException if the directory cannot be read
+     */
+    private void forEachEntry(Path dir, boolean includeSkipped, Consumer<DirectoryEntry> consumer) throws IOException {
+        Queue<IOException> errors = new ConcurrentLinkedQueue<>();
+        FileWalkVisitor visitor = new FileWalkVisitor() {
+            @Override
+            public boolean preVisitDirectory(Path subdir, BasicFileAttributes attrs) {
+                if (subdir.equals(dir)) {
+                    return true;
+                }
+                consumer.accept(toEntry(subdir, attrs));
+                return false;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.equals(dir)) {
+                    errors.add(new NotDirectoryException(dir.toString()));
+                } else {
+                    consumer.accept(toEntry(file, attrs));
+                }
+            }
+
+            @Override
+            public void visitSkipped(Path path, BasicFileAttributes attrs) {
+                if (includeSkipped) {
+                    consumer.accept(toEntry(path, attrs));
+                }
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException e) {
+                if (path.equals(dir)) {
+                    errors.add(e);
+                }
+            }
+        };
+        if (!metadataIndexService.walk(dir, visitor)) {
+            fileWalkerService.walk(dir, visitor);
+        }
+        if (!errors.isEmpty()) {
+            throw errors.peek();
+        }
     }
 
     /**
-     * Recursively build a tree structure of the directory.
+     * Counts the files and bytes below every directory of a tree, like {@code du}. One walk, from the metadata
+     * index or the parallel walker, adds each file to its own directory; the totals are then rolled up from
+     * the deepest directories to the root.
      *
-     * @param currentPath the current path being processed
-     * @return a map representing the directory tree
+     * @param root           the root of the tree
+     * @param excludeMatcher the patterns of entries to leave out, relative to the root
+     * @return the totals of every directory of the tree that is not excluded
+     * @throws IOException if the root cannot be read
      */
-    private Map<String, Object> buildTree(final Path currentPath) {
-        final Map<String, Object> entry = new LinkedHashMap<>();
-        entry.put("name", currentPath.getFileName().toString());
-        final boolean isDir = Files.isDirectory(currentPath);
-        entry.put("type", isDir ? "directory" : "file");
-
-        if (isDir) {
-            final List<Map<String, Object>> children = new ArrayList<>();
-            try (Stream<Path> stream = Files.list(currentPath)) {
-                stream.forEach(child -> children.add(buildTree(child)));
+    private Map<Path, SubtreeTotals> summarize(Path root, PathMatcher excludeMatcher) throws IOException {
+        Map<Path, SubtreeTotals> totals = new ConcurrentHashMap<>();
+        FileWalkVisitor visitor = new FileWalkVisitor() {
+            @Override
+            public boolean preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && excludeMatcher.matches(root.relativize(dir))) {
+                    return false;
+                }
+                totals.put(dir, new SubtreeTotals());
+                return true;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                if (!file.equals(root) && !excludeMatcher.matches(root.relativize(file))) {
+                    SubtreeTotals parent = totals.get(file.getParent());
+                    parent.files.increment();
+                    parent.bytes.add(attrs.size());
+                }
+            }
+        };
+        if (!metadataIndexService.walk(root, visitor)) {
+            fileWalkerService.walk(root, visitor);
+        }
+        List<Path> dirs = new ArrayList<>(totals.keySet());
+        dirs.sort(Comparator.comparingInt(Path::getNameCount).reversed());
+        for (Path dir : dirs) {
+            if (!dir.equals(root)) {
+                totals.get(dir.getParent()).add(totals.get(dir));
+            }
+        }
+        return totals;
+    }
+
+    private static DirectoryEntry toEntry(Path path, BasicFileAttributes attrs) {
+        return new DirectoryEntry(path.getFileName().toString(), attrs.isDirectory(), attrs.size(),
+                attrs.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * The number of files and bytes below a directory, filled concurrently by the walk.
+     */
+    private static final class SubtreeTotals {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        private void add(SubtreeTotals other) {
+            files.add(other.files.sum());
+            bytes.add(other.bytes.sum());
+        }
+    }
+
+    /**
+     * Writes a tree depth first while counting down the node budget. Each open directory keeps only its own
+     * listing, so memory grows with the depth of the tree, not its size.
+     */
+    private final class TreeWriter {
+        private final JsonGenerator json;
+        private final Path root;
+        private final TreeOptions options;
+        private final PathMatcher excludeMatcher;
+        private final Map<Path, SubtreeTotals> totals;
+        private int remainingNodes;
+
+        private TreeWriter(JsonGenerator json, Path root, TreeOptions options, PathMatcher excludeMatcher,
+                           Map<Path, SubtreeTotals> totals) {
+            this.json = json;
+            this.root = root;
+            this.options = options;
+            this.excludeMatcher = excludeMatcher;
+            this.totals = totals;
+            this.remainingNodes = options.maxNodes();
+        }
+
+        private void writeRoot() throws IOException {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(root, BasicFileAttributes.class);
+            } catch (IOException e) {
+                json.writeStartObject();
+                json.writeStringField("error", "COULD NOT READ DIRECTORY: " + e.getMessage());
+                json.writeEndObject();
+                return;
+            }
+            writeNode(root, attrs.isDirectory(), attrs.size(), 0, options.offset());
+        }
+
+        private void writeNode(Path path, boolean directory, long size, int depth, int offset) throws IOException {
+            json.writeStartObject();
+            Path name = path.getFileName();
+            json.writeStringField("name", name == null ? path.toString() : name.toString());
+            json.writeStringField("type", directory ? "directory" : "file");
+            if (totals != null) {
+                SubtreeTotals subtree = directory ? totals.get(path) : null;
+                if (subtree != null) {
+                    json.writeNumberField("files", subtree.files.sum());
+                    json.writeNumberField("bytes", subtree.bytes.sum());
+                } else if (!directory) {
+                    json.writeNumberField("size", size);
+                }
+            }
+            if (directory) {
+                writeChildren(path, depth, offset);
+            }
+            json.writeEndObject();
+        }
+
+        private void writeChildren(Path dir, int depth, int offset) throws IOException {
+            if (depth >= options.maxDepth()) {
+                json.writeStringField("cursor", TreeOptions.cursor(0, dir));
+                return;
+            }
+            List<DirectoryEntry> entries;
+            try {
+                entries = listEntries(dir, false);
             } catch (IOException e) {
-                return Map.of("error", "COULD NOT READ DIRECTORY: " + e.getMessage());
+                json.writeStringField("error", "COULD NOT READ DIRECTORY: " + e.getMessage());
+                return;
+            }
+            json.writeArrayFieldStart("children");
+            int next = offset;
+            for (; next < entries.size() && remainingNodes > 0; next++) {
+                DirectoryEntry entry = entries.get(next);
+                Path child = dir.resolve(entry.name());
+                if (!excludeMatcher.matches(root.relativize(child))) {
+                    remainingNodes--;
+                    writeNode(child, entry.directory(), entry.size(), depth + 1, 0);
+                }
+            }
+            json.writeEndArray();
+            if (next < entries.size()) {
+                json.writeStringField("cursor", TreeOptions.cursor(next, dir));
             }
-            entry.put("children", children);
         }
-        return entry;
     }
 }
@@ -1,73 +1,341 @@
 package com.mcp.service.impl;
 
-import com.github.difflib.DiffUtils;
-import com.github.difflib.UnifiedDiffUtils;
-import com.github.difflib.patch.Patch;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mcp.edit.EditEngine;
+import com.mcp.edit.HunkDiff;
+import com.mcp.index.LineOffsetIndex;
 import com.mcp.model.Edit;
+import com.mcp.model.EditFileArgs;
 import com.mcp.model.EditResult;
+import com.mcp.model.FileInfo;
+import com.mcp.model.FileMatches;
+import com.mcp.model.LineMatch;
+import com.mcp.model.ReadPage;
+import com.mcp.model.SearchOptions;
+import com.mcp.search.ContentMatcher;
+import com.mcp.search.FileScanner;
+import com.mcp.search.OrderedFileTask;
+import com.mcp.service.AtomicWriteService;
+import com.mcp.service.BatchReadService;
+import com.mcp.service.ContentCacheService;
+import com.mcp.service.ContentIndexService;
 import com.mcp.service.FileService;
 import com.mcp.service.FileVisitorService;
+import com.mcp.service.FileWalkerService;
+import com.mcp.service.LineIndexService;
+import com.mcp.service.MetadataIndexService;
+import com.mcp.service.PathLockService;
 import com.mcp.util.AppendUtils;
+import com.mcp.util.Utf8Utils;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class FileServiceImpl implements FileService {
+    private static final int SEARCH_BATCH_FILES_PER_WORKER = 256;
+    private static final int LIST_BATCH_FILES = 256;
+    private static final int TAIL_BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_WINDOW_BYTES = 64 * 1024 * 1024;
+    private static final int DIFF_CONTEXT_LINES = 3;
+    private static final int MAX_DIFF_LINES = 2000;
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ISO_INSTANT.withZone(ZoneId.systemDefault());
+
+    private final ContentIndexService contentIndexService;
+    private final FileWalkerService fileWalkerService;
+    private final MetadataIndexService metadataIndexService;
+    private final BatchReadService batchReadService;
+    private final LineIndexService lineIndexService;
+    private final ContentCacheService contentCacheService;
+    private final AtomicWriteService atomicWriteService;
+    private final PathLockService pathLockService;
+    private final ForkJoinPool searchPool;
+    private final FileScanner fileScanner = new FileScanner();
+    private final ObjectMapper mapper = new ObjectMapper();
+
     /**
-     * Reads the contents of a file at the given path.
+     * Reads the contents of a file at the given path, from the content cache if the file is unchanged.
      *
      * @param path The path to the file.
      * @return The contents of the file, or an error message if an error occurs.
      */
     @Override
     public String readFile(Path path) {
-        try {
-            return Files.readString(path);
+        return pathLockService.withReadLock(path, () -> {
+            try {
+                return contentCacheService.readString(path);
+            } catch (IOException e) {
+                return "ERROR READING FILE: " + path + " - " + e.getMessage();
+            }
+        });
+    }
+
+    /**
+     * Reads a byte range of a file without reading the rest of it. The range is narrowed to whole UTF-8
+     * characters at both ends.
+     *
+     * @param path   The path to the file.
+     * @param offset The offset of the first byte to read.
+     * @param length The maximum number of bytes to read.
+     * @return The content of the range, or an error message if an error occurs.
+     */
+    @Override
+    public String readFileRange(Path path, long offset, int length) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long end = Math.min(size, offset + length);
+            if (offset >= end) {
+                return "";
+            }
+            byte[] bytes = readBytes(channel, offset, end);
+            int from = offset > 0 ? Utf8Utils.firstCharacter(bytes, bytes.length) : 0;
+            int to = end < size ? Utf8Utils.completeLength(bytes, bytes.length) : bytes.length;
+            return new String(bytes, from, Math.max(0, to - from), StandardCharsets.UTF_8);
         } catch (IOException e) {
             return "ERROR READING FILE: " + path + " - " + e.getMessage();
         }
     }
 
     /**
-     * Reads the contents of multiple files or all files in a directory.
+     * Reads a window of lines of a file. Line starts are found through the file's cached sparse line offset
+     * index, so only the lines between the nearest checkpoint and the end of the window are scanned.
+     *
+     * @param path      The path to the file.
+     * @param startLine The first line to read, starting at 1.
+     * @param endLine   The last line to read, inclusive.
+     * @return The lines, or an error message if an error occurs.
+     */
+    @Override
+    public String readFileLines(Path path, long startLine, long endLine) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            LineOffsetIndex index = lineIndexService.indexFor(path, attrs);
+            long from = index.offsetOf(channel, startLine);
+            if (from < 0) {
+                return "";
+            }
+            long to = index.offsetOf(channel, endLine + 1);
+            return decodeWindow(channel, from, to < 0 ? attrs.size() : to);
+        } catch (IOException e) {
+            return "ERROR READING FILE: " + path + " - " + e.getMessage();
+        }
+    }
+
+    /**
+     * Reads the last lines of a file by scanning backwards from its end, so the cost does not depend on the
+     * size of the file. A trailing line break does not count as an empty last line.
+     *
+     * @param path  The path to the file.
+     * @param lines The number of lines to read.
+     * @return The lines, or an error message if an error occurs.
+     */
+    @Override
+    public String readFileTail(Path path, int lines) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = size;
+            long start = 0;
+            int newlines = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(TAIL_BLOCK_SIZE);
+            search:
+            while (position > 0) {
+                int length = (int) Math.min(TAIL_BLOCK_SIZE, position);
+                position -= length;
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                    // keep reading until the block is full
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n' && position + i < size - 1 && ++newlines == lines) {
+                        start = position + i + 1;
+                        break search;
+                    }
+                }
+            }
+            return decodeWindow(channel, start, size);
+        } catch (IOException e) {
+            return "ERROR READING FILE: " + path + " - " + e.getMessage();
+        }
+    }
+
+    private String decodeWindow(FileChannel channel, long from, long to) throws IOException {
+        if (to - from > MAX_WINDOW_BYTES) {
+            throw new IOException("WINDOW OF " + (to - from) + " BYTES EXCEEDS THE LIMIT OF " + MAX_WINDOW_BYTES + " BYTES");
+        }
+        return new String(readBytes(channel, from, to), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0) {
+            // keep reading until the window is full or the file ends
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Reads one page of the contents of multiple files or all files in a directory. Files are listed in path
+     * order, a batch at a time from the file the page resumes at, and read concurrently on virtual threads until
+     * the page's byte budget is spent; a file larger than the remaining budget is split at a UTF-8 character
+     * boundary and continued on the next page. The cursor names the next file rather than its position in the
+     * listing, so a page only lists the directories it reads from and files added or removed between pages are
+     * neither skipped nor repeated.
      *
      * @param paths A list of file or directory paths to read.
-     * @return The contents of the files, or error messages if any occur.
+     * @param page  The byte budget and the position to resume from.
+     * @return The contents of the files, or error messages if any occur, followed by the cursor of the next page if there is one.
      */
     @Override
-    public String readMultipleFiles(List<Path> paths) {
-        StringBuilder results = new StringBuilder();
-        for (Path validPath : paths) {
-            if (Files.isDirectory(validPath)) {
-                try (Stream<Path> stream = Files.walk(validPath)) {
-                    stream.filter(Files::isRegularFile)
-                            .forEach(file -> AppendUtils.appendFileContent(results, file));
-                } catch (IOException e) {
-                    AppendUtils.appendError(results, validPath, e);
+    public String readMultipleFiles(List<Path> paths, ReadPage page) {
+        int pathIndex = page.path();
+        Path resume = page.file();
+        if (resume != null && (pathIndex >= paths.size() || !resume.startsWith(paths.get(pathIndex)))) {
+            return "ERROR INVALID CURSOR: FILE OUTSIDE THE REQUESTED PATHS";
+        }
+        final List<FileChunk> chunks = new ArrayList<>();
+        final Deque<Path> listed = new ArrayDeque<>();
+        if (resume != null && Files.isRegularFile(resume)) {
+            listed.add(resume);
+        }
+        Path last = resume;
+        long budget = page.maxBytes();
+        try {
+            while (budget > 0 && pathIndex < paths.size()) {
+                if (listed.isEmpty()) {
+                    listed.addAll(listBatch(paths.get(pathIndex), last, LIST_BATCH_FILES));
+                    if (listed.isEmpty()) {
+                        pathIndex++;
+                        last = null;
+                        continue;
+                    }
+                }
+                Path file = listed.poll();
+                last = file;
+                long offset = file.equals(resume) ? page.offset() : 0;
+                long size = sizeOf(file);
+                long length = Math.min(Math.max(size - offset, 0), budget);
+                chunks.add(new FileChunk(pathIndex, file, offset, length, size));
+                budget -= length;
+                if (offset + length < size) {
+                    break;
+                }
+            }
+            final List<ChunkContent> contents = batchReadService.readAll(chunks, this::readChunk, this::failedChunk);
+            final StringBuilder results = new StringBuilder();
+            for (ChunkContent content : contents) {
+                results.append(content.text());
+            }
+            String cursor = null;
+            if (!chunks.isEmpty() && chunks.getLast().offset() + contents.getLast().bytesRead() < chunks.getLast().size()) {
+                FileChunk partial = chunks.getLast();
+                cursor = ReadPage.cursor(partial.index(), partial.path(), partial.offset() + contents.getLast().bytesRead());
+            } else if (pathIndex < paths.size()) {
+                if (listed.isEmpty()) {
+                    listed.addAll(listBatch(paths.get(pathIndex), last, 1));
                 }
-            } else {
-                AppendUtils.appendFileContent(results, validPath);
+                cursor = !listed.isEmpty() ? ReadPage.cursor(pathIndex, listed.peek(), 0)
+                        : pathIndex + 1 < paths.size() ? ReadPage.cursor(pathIndex + 1, null, 0) : null;
+            }
+            if (cursor != null) {
+                results.append("MORE CONTENT AVAILABLE - CALL AGAIN WITH cursor: ").append(cursor).append('\n');
+            }
+            return results.toString();
+        } catch (IOException e) {
+            return "ERROR LISTING DIRECTORY: " + paths.get(pathIndex) + " - " + e.getMessage();
+        }
+    }
+
+    private List<Path> listBatch(Path path, Path after, int limit) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return after == null ? List.of(path) : List.of();
+        }
+        return fileWalkerService.listFiles(path, after, limit);
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads one chunk of a file. A chunk that ends before the end of the file is trimmed to the last complete
+     * UTF-8 character, so the next page starts on a character boundary.
+     *
+     * @param chunk The file, offset and length to read.
+     * @return The formatted chunk and the number of bytes it consumed.
+     */
+    private ChunkContent readChunk(FileChunk chunk) {
+        final StringBuilder text = new StringBuilder();
+        if (chunk.offset() == 0 && chunk.length() == chunk.size()) {
+            try {
+                AppendUtils.appendContent(text, chunk.path(), contentCacheService.readString(chunk.path()));
+            } catch (IOException e) {
+                AppendUtils.appendError(text, chunk.path(), e);
             }
+            return new ChunkContent(text.toString(), chunk.length());
         }
-        return results.toString();
+        try (FileChannel channel = FileChannel.open(chunk.path(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) chunk.length());
+            while (buffer.hasRemaining() && channel.read(buffer, chunk.offset() + buffer.position()) >= 0) {
+                // keep reading until the chunk is full or the file ends
+            }
+            int length = buffer.position();
+            if (chunk.offset() + length < chunk.size()) {
+                length = Utf8Utils.completeLength(buffer.array(), length);
+            }
+            String content = new String(buffer.array(), 0, length, StandardCharsets.UTF_8);
+            AppendUtils.appendChunk(text, chunk.path(), chunk.offset(), chunk.offset() + length, chunk.size(), content);
+            return new ChunkContent(text.toString(), length);
+        } catch (IOException e) {
+            return failedChunk(chunk, e);
+        }
+    }
+
+    private ChunkContent failedChunk(FileChunk chunk, Exception e) {
+        final StringBuilder text = new StringBuilder();
+        AppendUtils.appendError(text, chunk.path(), e);
+        return new ChunkContent(text.toString(), chunk.size() - chunk.offset());
     }
 
     /**
-     * Writes content to a file, creating it if it doesn't exist or overwriting it if it does.
+     * Writes content to a file atomically, creating it if it doesn't exist or replacing it if it does.
      *
      * @param path    The path to the file.
      * @param content The content to write to the file.
@@ -75,12 +343,14 @@ public class FileServiceImpl implements FileService {
      */
     @Override
     public String writeFile(Path path, String content) {
-        try {
-            Files.writeString(path, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            return "SUCCESS WROTE TO FILE: " + path;
-        } catch (IOException e) {
-            return "ERROR WRITING TO FILE: " + path + " - " + e.getMessage();
-        }
+        return pathLockService.withWriteLock(path, () -> {
+            try {
+                atomicWriteService.write(path, content);
+                return "SUCCESS WROTE TO FILE: " + path;
+            } catch (IOException e) {
+                return "ERROR WRITING TO FILE: " + path + " - " + e.getMessage();
+            }
+        });
     }
 
     /**
@@ -92,16 +362,19 @@ public class FileServiceImpl implements FileService {
      */
     @Override
     public String moveFile(Path sourcePath, Path targetPath) {
-        try {
-            Files.move(sourcePath, targetPath);
-            return "SUCCESS MOVED FILE FROM: " + sourcePath + " TO: " + targetPath;
-        } catch (IOException e) {
-            return "ERROR MOVING FILE FROM: " + sourcePath + " TO: " + targetPath + " - " + e.getMessage();
-        }
+        return pathLockService.withWriteLocks(List.of(sourcePath, targetPath), () -> {
+            try {
+                Files.move(sourcePath, targetPath);
+                return "SUCCESS MOVED FILE FROM: " + sourcePath + " TO: " + targetPath;
+            } catch (IOException e) {
+                return "ERROR MOVING FILE FROM: " + sourcePath + " TO: " + targetPath + " - " + e.getMessage();
+            }
+        });
     }
 
     /**
-     * Gets information about a file, including size, creation date, modification date, access date, and permissions.
+     * Gets information about a file, including size, creation date, modification date, access date, and permissions,
+     * from a single attribute read.
      *
      * @param path The path to the file.
      * @return A string containing the file information, or an error message if an error occurs.
@@ -109,18 +382,16 @@ public class FileServiceImpl implements FileService {
     @Override
     public String getFileInfo(Path path) {
         try {
-            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
-            DateTimeFormatter formatter = DateTimeFormatter.ISO_INSTANT.withZone(ZoneId.systemDefault());
-            String permissions = getPermissions(path);
+            BasicFileAttributes attrs = readAttributes(path);
             return String.format(
                     "Size: %d bytes%nCreated: %s%nModified: %s%nAccessed: %s%nIs Directory: %b%nIs File: %b%nPermissions: %s",
                     attrs.size(),
-                    formatter.format(attrs.creationTime().toInstant()),
-                    formatter.format(attrs.lastModifiedTime().toInstant()),
-                    formatter.format(attrs.lastAccessTime().toInstant()),
+                    formatTime(attrs.creationTime()),
+                    formatTime(attrs.lastModifiedTime()),
+                    formatTime(attrs.lastAccessTime()),
                     attrs.isDirectory(),
                     attrs.isRegularFile(),
-                    permissions
+                    attrs instanceof PosixFileAttributes posix ? PosixFilePermissions.toString(posix.permissions()) : "N/A"
             );
         } catch (IOException e) {
             return String.format("ERROR GETTING INFO FOR FILE: %s - %s", path, e.getMessage());
@@ -128,18 +399,84 @@ public class FileServiceImpl implements FileService {
     }
 
     /**
-     * Searches for files and directories matching a glob pattern, with optional exclusion patterns.
+     * Gets information about several files at once, as a compact JSON array in the order of the paths. Each path
+     * costs one attribute read, with permissions, owner and group included on POSIX file systems, and the reads
+     * run in parallel on virtual threads. With the cache, paths covered by the metadata index are answered from it
+     * without touching the disk, with only their type, size and modification time.
+     *
+     * @param paths  The paths to the files.
+     * @param cached Whether to answer from the metadata index when it covers a path.
+     * @return A JSON array of file information, with an error for each path that could not be read.
+     */
+    @Override
+    public String getFilesInfo(List<Path> paths, boolean cached) {
+        List<FileInfo> infos = batchReadService.readAll(paths, path -> fileInfo(path, cached),
+                (path, e) -> FileInfo.error(path.toString(), e.getMessage()));
+        try {
+            return mapper.writeValueAsString(infos);
+        } catch (JsonProcessingException e) {
+            return "ERROR CONVERTING TO JSON: " + e.getMessage();
+        }
+    }
+
+    private FileInfo fileInfo(Path path, boolean cached) {
+        BasicFileAttributes indexed = cached ? metadataIndexService.readAttributes(path) : null;
+        if (indexed != null) {
+            return new FileInfo(path.toString(), typeOf(indexed), indexed.size(), formatTime(indexed.lastModifiedTime()),
+                    null, null, null, null, null, true, null);
+        }
+        try {
+            BasicFileAttributes attrs = readAttributes(path);
+            PosixFileAttributes posix = attrs instanceof PosixFileAttributes p ? p : null;
+            return new FileInfo(path.toString(), typeOf(attrs), attrs.size(), formatTime(attrs.lastModifiedTime()),
+                    formatTime(attrs.creationTime()), formatTime(attrs.lastAccessTime()),
+                    posix == null ? null : PosixFilePermissions.toString(posix.permissions()),
+                    posix == null ? null : posix.owner().getName(),
+                    posix == null ? null : posix.group().getName(),
+                    null, null);
+        } catch (NoSuchFileException e) {
+            return FileInfo.error(path.toString(), "FILE NOT FOUND");
+        } catch (IOException e) {
+            return FileInfo.error(path.toString(), e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the POSIX attributes of a path in one call, or only its basic attributes where POSIX attributes are
+     * not supported.
+     */
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, PosixFileAttributes.class);
+        } catch (UnsupportedOperationException e) {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        }
+    }
+
+    private static String typeOf(BasicFileAttributes attrs) {
+        return attrs.isDirectory() ? "directory" : attrs.isRegularFile() ? "file" : "other";
+    }
+
+    private static String formatTime(FileTime time) {
+        return TIMESTAMP_FORMATTER.format(time.toInstant());
+    }
+
+    /**
+     * Searches for files and directories matching a glob pattern, with optional exclusion patterns. The walk is
+     * replayed from the metadata index when it covers the start path, and done on disk otherwise.
      *
      * @param startPath       The starting directory path for the search.
      * @param patternMatcher  The glob pattern to match files and directories.
-     * @param excludeMatchers A list of glob patterns to exclude from the search.
+     * @param excludeMatcher  The combined glob patterns to exclude from the search.
      * @return A list of matching file and directory paths, or an error message if an error occurs.
      */
     @Override
-    public String searchFiles(Path startPath, PathMatcher patternMatcher, List<PathMatcher> excludeMatchers) {
-        FileVisitorService visitor = new FileVisitorService(startPath, patternMatcher, excludeMatchers);
+    public String searchFiles(Path startPath, PathMatcher patternMatcher, PathMatcher excludeMatcher) {
+        FileVisitorService visitor = new FileVisitorService(startPath, patternMatcher, excludeMatcher);
         try {
-            Files.walkFileTree(startPath, visitor);
+            if (!metadataIndexService.walk(startPath, visitor)) {
+                fileWalkerService.walk(startPath, visitor);
+            }
         } catch (IOException e) {
             return "ERROR SEARCHING FILES: " + e.getMessage();
         }
@@ -148,7 +485,9 @@ public class FileServiceImpl implements FileService {
     }
 
     /**
-     * Edits a file by applying a list of text replacements, with an option for a dry run.
+     * Edits a file by applying a list of text replacements, with an option for a dry run. Every old text must
+     * occur exactly once in the file and the replaced ranges must not overlap; they are applied together in
+     * one splice of the original bytes.
      *
      * @param path   The path to the file to edit.
      * @param edits  A list of Edit objects containing old and new text.
@@ -157,16 +496,25 @@ public class FileServiceImpl implements FileService {
      */
     @Override
     public String editFile(Path path, List<Edit> edits, Boolean dryRun) {
-        String originalContent = readFileContent(path);
-        if (originalContent == null) {
+        if (dryRun != null && dryRun) {
+            return pathLockService.withReadLock(path, () -> applyEdits(path, edits, true));
+        }
+        return pathLockService.withWriteLock(path, () -> applyEdits(path, edits, false));
+    }
+
+    private String applyEdits(Path path, List<Edit> edits, boolean dryRun) {
+        final byte[] originalContent;
+        try {
+            originalContent = Files.readAllBytes(path);
+        } catch (IOException e) {
             return "ERROR READING FILE: " + path;
         }
-        EditResult editResult = applyEdits(originalContent, edits, path);
+        EditResult editResult = EditEngine.apply(path, originalContent, edits);
         if (editResult.getError() != null) {
             return editResult.getError();
         }
-        String diff = generateDiff(path, editResult.getOriginalLines(), editResult.getOriginalLines());
-        if (dryRun == null || !dryRun) {
+        String diff = generateDiff(path, editResult);
+        if (!dryRun) {
             String writeError = writeFileContent(path, editResult.getModifiedContent());
             if (writeError != null) {
                 return writeError;
@@ -176,69 +524,121 @@ public class FileServiceImpl implements FileService {
     }
 
     /**
-     * Reads the content of a file, returning null if an error occurs.
+     * Edits several files as one transaction. Every file is read, its edits located and its diff built in
+     * parallel; if any file fails, nothing is written. Otherwise every new content is staged in a temporary
+     * file next to its target, and the staged files are renamed over their targets only once all of them are
+     * written. A file that changed since it was read, or a rename that fails, rolls back the files already
+     * replaced by writing their original content back.
      *
-     * @param path The path to the file.
-     * @return The file content, or null if an error occurs.
+     * @param files  The files to edit with their edits; per-file dry run flags are ignored.
+     * @param dryRun If true, no file will be modified, but the combined diff will be returned.
+     * @return The combined diff of all files, or the errors that aborted the batch.
      */
-    private String readFileContent(Path path) {
+    @Override
+    public String editFiles(List<EditFileArgs> files, Boolean dryRun) {
+        Set<Path> distinct = new HashSet<>();
+        for (EditFileArgs file : files) {
+            if (!distinct.add(Path.of(file.path()))) {
+                return "ERROR: BATCH EDIT ABORTED - FILE LISTED MORE THAN ONCE: " + file.path();
+            }
+        }
+        return pathLockService.withWriteLocks(distinct, () -> planAndCommit(files, dryRun != null && dryRun));
+    }
+
+    private String planAndCommit(List<EditFileArgs> files, boolean dryRun) {
+        List<PlannedEdit> plans = batchReadService.readAll(files, this::planEdit,
+                (file, e) -> PlannedEdit.failed(Path.of(file.path()), "ERROR READING FILE: " + file.path() + " - " + e.getMessage()));
+        List<String> errors = plans.stream().map(PlannedEdit::error).filter(Objects::nonNull).toList();
+        if (!errors.isEmpty()) {
+            return "ERROR: BATCH EDIT ABORTED - NO FILES CHANGED\n" + String.join("\n", errors);
+        }
+        String diff = "```diff\n" + plans.stream().map(PlannedEdit::diff).collect(Collectors.joining("\n")) + "\n```";
+        if (dryRun) {
+            return diff;
+        }
+        String commitError = commitEdits(plans);
+        return commitError != null ? commitError : diff;
+    }
+
+    private PlannedEdit planEdit(EditFileArgs file) {
+        Path path = Path.of(file.path());
         try {
-            return Files.readString(path);
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            EditResult editResult = EditEngine.apply(path, Files.readAllBytes(path), file.edits());
+            if (editResult.getError() != null) {
+                return PlannedEdit.failed(path, editResult.getError());
+            }
+            List<String> diff = HunkDiff.unifiedDiff(path, editResult.getOriginalContent(), editResult.getSpans(),
+                    DIFF_CONTEXT_LINES, MAX_DIFF_LINES);
+            return new PlannedEdit(path, editResult, String.join("\n", diff), attrs.lastModifiedTime(), attrs.size(), null);
         } catch (IOException e) {
-            return null;
+            return PlannedEdit.failed(path, "ERROR READING FILE: " + path + " - " + e.getMessage());
         }
     }
 
     /**
-     * Gets the POSIX permissions of a file, returning "N/A" if not supported or "ERROR" if an error occurs.
+     * Stages every planned edit, then replaces the targets one by one, rolling back on the first failure.
      *
-     * @param path The path to the file.
-     * @return A string representing the file permissions.
+     * @param plans The validated edits.
+     * @return Null if every file was replaced, or an error message.
      */
-    private String getPermissions(Path path) {
+    private String commitEdits(List<PlannedEdit> plans) {
+        List<Path> staged = new ArrayList<>();
         try {
-            return PosixFilePermissions.toString(Files.getPosixFilePermissions(path));
-        } catch (UnsupportedOperationException e) {
-            return "N/A";
+            for (PlannedEdit plan : plans) {
+                staged.add(atomicWriteService.stage(plan.path(), plan.result().getModifiedContent()));
+            }
         } catch (IOException e) {
-            return "ERROR";
+            discard(staged);
+            return "ERROR: BATCH EDIT ABORTED - NO FILES CHANGED - COULD NOT STAGE FILE: " + e.getMessage();
         }
+        List<PlannedEdit> committed = new ArrayList<>();
+        for (int i = 0; i < plans.size(); i++) {
+            PlannedEdit plan = plans.get(i);
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(plan.path(), BasicFileAttributes.class);
+                if (!attrs.lastModifiedTime().equals(plan.modified()) || attrs.size() != plan.size()) {
+                    throw new IOException("FILE CHANGED SINCE IT WAS READ: " + plan.path());
+                }
+                atomicWriteService.commit(staged.get(i), plan.path());
+                committed.add(plan);
+            } catch (IOException e) {
+                discard(staged);
+                List<String> rollbackErrors = new ArrayList<>();
+                for (PlannedEdit done : committed) {
+                    try {
+                        atomicWriteService.write(done.path(), done.result().getOriginalContent());
+                    } catch (IOException rollbackError) {
+                        rollbackErrors.add(done.path() + " - " + rollbackError.getMessage());
+                    }
+                }
+                return "ERROR: BATCH EDIT ROLLED BACK - " + e.getMessage()
+                        + (rollbackErrors.isEmpty() ? "" : "\nERROR: COULD NOT RESTORE: " + String.join(", ", rollbackErrors));
+            }
+        }
+        return null;
     }
 
-    /**
-     * Applies a list of text edits to the original content.
-     *
-     * @param originalContent The original file content.
-     * @param edits           A list of Edit objects containing old and new text.
-     * @param path            The path to the file being edited (for error messages).
-     * @return An EditResult containing original lines, modified lines, modified content, or an error message.
-     */
-    private EditResult applyEdits(String originalContent, List<Edit> edits, Path path) {
-        String modifiedContent = originalContent;
-        for (Edit edit : edits) {
-            String oldText = edit.oldText().replace("\r\n", "\n");
-            String newText = edit.newText().replace("\r\n", "\n");
-            if (!modifiedContent.contains(oldText)) {
-                return new EditResult(null, null, null, "ERROR: TEXT TO REPLACE NOT FOUND IN FILE: " + path + " - TEXT: " + oldText);
+    private static void discard(List<Path> stagedFiles) {
+        for (Path staged : stagedFiles) {
+            try {
+                Files.deleteIfExists(staged);
+            } catch (IOException e) {
+                log.warn("COULD NOT DELETE STAGED FILE {} - {}", staged, e.getMessage());
             }
-            modifiedContent = modifiedContent.replace(oldText, newText);
         }
-        List<String> originalLines = Arrays.asList(originalContent.split("\n"));
-        List<String> modifiedLines = Arrays.asList(modifiedContent.split("\n"));
-        return new EditResult(originalLines, modifiedLines, modifiedContent, null);
     }
 
     /**
-     * Generates a unified diff between the original and modified lines.
+     * Generates a unified diff of an edit from its replaced spans, capped at a maximum number of lines.
      *
-     * @param path          The path to the file being diffed (for headers).
-     * @param originalLines The original file lines.
-     * @param modifiedLines The modified file lines.
+     * @param path       The path to the file being diffed (for headers).
+     * @param editResult The original content and the replaced spans.
      * @return A string containing the unified diff formatted in a code block.
      */
-    private String generateDiff(Path path, List<String> originalLines, List<String> modifiedLines) {
-        Patch<String> patch = DiffUtils.diff(originalLines, modifiedLines);
-        List<String> unifiedDiff = UnifiedDiffUtils.generateUnifiedDiff(path.toString(), path.toString(), originalLines, patch, 3);
+    private String generateDiff(Path path, EditResult editResult) {
+        List<String> unifiedDiff = HunkDiff.unifiedDiff(path, editResult.getOriginalContent(), editResult.getSpans(),
+                DIFF_CONTEXT_LINES, MAX_DIFF_LINES);
         String diffString = String.join("\n", unifiedDiff);
         return "```diff\n" + diffString + "\n```";
     }
@@ -250,9 +650,9 @@ public class FileServiceImpl implements FileService {
      * @param content The modified content to write.
      * @return Null if successful, or an error message if an error occurs.
      */
-    private String writeFileContent(Path path, String content) {
+    private String writeFileContent(Path path, byte[] content) {
         try {
-            Files.writeString(path, content);
+            atomicWriteService.write(path, content);
             return null;
         } catch (IOException e) {
             return "ERROR WRITING TO FILE: " + path + " - " + e.getMessage();
@@ -260,83 +660,283 @@ public class FileServiceImpl implements FileService {
     }
 
     /**
-     * Returns a unified diff of changes made to a file since its last commit.
+     * Searches for files containing one or more keywords, with optional exclusion patterns.
+     * When the content index covers the start path, only the files it reports as candidates are read;
+     * otherwise the whole tree is walked, skipping ignored files. Files are scanned as raw UTF-8 bytes and binary files are skipped.
+     * Several literal keywords are matched together with Aho-Corasick, and in regex mode each keyword is a
+     * regular expression, so the tree is traversed once however many keywords are given. In grep mode the
+     * matching lines are returned with their line and column numbers, surrounding context and a match count
+     * per file, all computed in the same pass over each file. With several keywords the results are grouped
+     * by keyword.
+     * <p>
+     * Files are scanned on the search pool in batches, in path order, so the output is deterministic
+     * and scanning stops after the batch that reaches the result cap.
      *
-     * @param path The path to the file.
-     * @return A string containing the unified diff, or an error message.
+     * @param startPath       The starting directory path for the search.
+     * @param keywords        The keywords or regular expressions to search for within files.
+     * @param excludeMatcher  The combined glob patterns to exclude from the search.
+     * @param options         The output mode, pattern syntax, context size and result caps.
+     * @return A list of file paths or matching lines for each keyword, or an error message if an error occurs.
      */
     @Override
-    public String getChanges(Path path) {
+    public String searchByKeyword(final Path startPath, final List<String> keywords, final PathMatcher excludeMatcher,
+                                  final SearchOptions options) {
+        final ContentMatcher contentMatcher;
         try {
-            ProcessBuilder builder = new ProcessBuilder("git", "diff", getGitBranchName(path), "--", path.getFileName().toString());
-            builder.directory(path.getParent().toFile());
-            builder.redirectErrorStream(true);
-            Process process = builder.start();
-            String diff = new String(process.getInputStream().readAllBytes());
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                return "ERROR GETTING CHANGES FOR FILE: " + path;
+            contentMatcher = ContentMatcher.of(keywords, options.regex());
+        } catch (PatternSyntaxException e) {
+            return "ERROR INVALID REGEX: " + e.getMessage();
+        }
+        final Optional<List<Path>> candidates = options.regex()
+                ? Optional.empty()
+                : contentIndexService.findCandidates(startPath, keywords);
+        final List<Path> files;
+        try {
+            files = (candidates.isPresent() ? candidates.get() : fileWalkerService.listFiles(startPath)).stream()
+                    .filter(path -> !excludeMatcher.matches(path))
+                    .toList();
+        } catch (IOException e) {
+            return "ERROR SEARCHING FILES BY KEYWORD: " + e.getMessage();
+        }
+        final StringBuilder out = new StringBuilder();
+        int remaining = options.maxResults();
+        if (options.grep()) {
+            final List<FileMatches> matches = scanInOrder(files, path -> grepFile(path, contentMatcher, options),
+                    fileMatches -> fileMatches.matches().size(), options.maxResults());
+            for (int pattern = 0; pattern < keywords.size(); pattern++) {
+                appendKeywordHeader(out, keywords, pattern);
+                remaining -= appendGrepResults(out, matches, pattern, remaining);
+            }
+        } else {
+            final List<PatternHits> matches = scanInOrder(files, path -> findKeywords(path, contentMatcher),
+                    hits -> hits.patterns().cardinality(), options.maxResults());
+            for (int pattern = 0; pattern < keywords.size(); pattern++) {
+                appendKeywordHeader(out, keywords, pattern);
+                remaining -= appendFileResults(out, matches, pattern, remaining);
             }
-            return diff.isBlank() ? "NO CHANGES SINCE LAST COMMIT" : "```diff\n" + diff + "\n```";
-        } catch (IOException | InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return "ERROR GETTING CHANGES FOR FILE: " + path + " - " + e.getMessage();
         }
+        return out.toString().trim();
     }
 
     /**
-     * Searches for files containing a specific keyword, with optional exclusion patterns.
+     * Applies a scan function to files on the search pool, one batch at a time, keeping the results in file order.
+     * Each batch is split across the pool's workers, which fill their own result lists; scanning stops once the
+     * accumulated weight of the results reaches the limit.
      *
-     * @param startPath       The starting directory path for the search.
-     * @param keyword         The keyword to search for within files.
-     * @param excludeMatchers A list of glob patterns to exclude from the search.
-     * @return A list of file paths containing the keyword, or an error message if an error occurs.
+     * @param files    The files to scan, in output order.
+     * @param function The scan function, returning null for files without a result.
+     * @param weight   The weight of a result towards the limit.
+     * @param limit    The total weight after which no further batch is scanned.
+     * @return The non-null results in file order.
      */
-    @Override
-    public String searchByKeyword(final Path startPath, final String keyword, final List<PathMatcher> excludeMatchers) {
-        final StringBuilder results = new StringBuilder();
-        try (Stream<Path> stream = Files.walk(startPath)) {
-            stream
-                    .filter(Files::isRegularFile)
-                    .filter(path -> excludeMatchers == null || excludeMatchers.stream().noneMatch(matcher -> matcher.matches(path)))
-                    .parallel()
-                    .forEach(path -> {
-                        try {
-                            if (Files.readString(path).contains(keyword)) {
-                                results.append(path).append(System.lineSeparator());
-                            }
-                        } catch (IOException ignored) {
-                            // Ignore files that cannot be read
-                        }
-                    });
-        } catch (IOException e) {
-            return "ERROR SEARCHING FILES BY KEYWORD: " + e.getMessage();
+    private <T> List<T> scanInOrder(List<Path> files, Function<Path, T> function, ToIntFunction<T> weight, int limit) {
+        final int batchSize = searchPool.getParallelism() * SEARCH_BATCH_FILES_PER_WORKER;
+        final List<T> results = new ArrayList<>();
+        int total = 0;
+        for (int from = 0; from < files.size() && total < limit; from += batchSize) {
+            List<T> batch = searchPool.invoke(new OrderedFileTask<>(files, from, Math.min(files.size(), from + batchSize), function));
+            for (T result : batch) {
+                total += weight.applyAsInt(result);
+            }
+            results.addAll(batch);
         }
-        return results.isEmpty() ? "NO FILES FOUND WITH KEYWORD" : results.toString().trim();
+        return results;
     }
 
     /**
-     * Gets the name of the parent branch for the given path using Git.
+     * Finds which keywords occur in a regular file, returning null if none does or the file cannot be read.
      *
-     * @param path The path to the file or directory.
-     * @return The name of the parent branch, or "develop" if it cannot be determined.
+     * @param path    The file to scan.
+     * @param matcher The compiled keywords.
+     * @return The keywords found in the file, or null.
      */
-    private String getGitBranchName(Path path) {
+    private PatternHits findKeywords(Path path, ContentMatcher matcher) {
         try {
-            ProcessBuilder builder = new ProcessBuilder("git", "rev-parse", "--abbrev-ref", "HEAD@{upstream}");
-            builder.directory(path.getParent().toFile());
-            builder.redirectErrorStream(true);
-            Process process = builder.start();
-            String branchName = new String(process.getInputStream().readAllBytes()).trim();
-            log.info("DETECTED PARENT BRANCH NAME: {}", branchName);
-            int exitCode = process.waitFor();
-            if (exitCode == 0 && !branchName.isBlank()) {
-                return branchName;
+            BitSet found = Files.isRegularFile(path) ? fileScanner.findPatterns(path, matcher) : null;
+            return found == null || found.isEmpty() ? null : new PatternHits(path, found);
+        } catch (IOException ignored) {
+            // Ignore files that cannot be read
+            return null;
+        }
+    }
+
+    /**
+     * Collects the matching lines of a single file, returning null if it has none or cannot be read.
+     *
+     * @param path    The file to scan.
+     * @param matcher The compiled keywords.
+     * @param options The context size and per-file cap.
+     * @return The file's matches, or null.
+     */
+    private FileMatches grepFile(Path path, ContentMatcher matcher, SearchOptions options) {
+        try {
+            return Files.isRegularFile(path)
+                    ? fileScanner.grep(path, matcher, options.contextLines(), options.maxMatchesPerFile())
+                    : null;
+        } catch (IOException ignored) {
+            // Ignore files that cannot be read
+            return null;
+        }
+    }
+
+    /**
+     * Starts the result group of a keyword when several keywords were searched at once.
+     *
+     * @param out      The output to append to.
+     * @param keywords All searched keywords.
+     * @param pattern  The index of the keyword whose group starts.
+     */
+    private void appendKeywordHeader(StringBuilder out, List<String> keywords, int pattern) {
+        if (keywords.size() > 1) {
+            out.append(pattern == 0 ? "" : "\n\n").append("KEYWORD: ").append(keywords.get(pattern)).append('\n');
+        }
+    }
+
+    /**
+     * Appends the files that contain one keyword, one path per line.
+     *
+     * @param out     The output to append to.
+     * @param hits    The keywords found in each file, in output order.
+     * @param pattern The index of the keyword to list files for.
+     * @param limit   The maximum number of paths to append.
+     * @return The number of paths appended.
+     */
+    private int appendFileResults(StringBuilder out, List<PatternHits> hits, int pattern, int limit) {
+        int printed = 0;
+        boolean truncated = false;
+        for (PatternHits file : hits) {
+            if (!file.patterns().get(pattern)) {
+                continue;
+            }
+            if (printed >= limit) {
+                truncated = true;
+                break;
+            }
+            out.append(file.path()).append(System.lineSeparator());
+            printed++;
+        }
+        appendResultFooter(out, printed, truncated);
+        return printed;
+    }
+
+    /**
+     * Appends the grep results of one keyword as a per-file match count followed by grep-style lines:
+     * matching lines as {@code path:line:column: text}, context lines as {@code path-line- text} and
+     * {@code --} between non-adjacent groups.
+     *
+     * @param out     The output to append to.
+     * @param files   The matches of each file, in output order.
+     * @param pattern The index of the keyword to print matches for.
+     * @param limit   The maximum number of matching lines to append.
+     * @return The number of matching lines appended.
+     */
+    private int appendGrepResults(StringBuilder out, List<FileMatches> files, int pattern, int limit) {
+        int printed = 0;
+        boolean truncated = false;
+        for (FileMatches file : files) {
+            int matchCount = file.matchCounts()[pattern];
+            if (matchCount == 0) {
+                continue;
+            }
+            if (printed >= limit) {
+                truncated = true;
+                break;
             }
-        } catch (IOException | InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("COULD NOT DETERMINE PARENT BRANCH NAME, DEFAULTING TO 'develop' - {}", e.getMessage());
+            out.append(file.path()).append(": ").append(matchCount)
+                    .append(matchCount == 1 ? " MATCH" : " MATCHES").append('\n');
+            int lastPrinted = 0;
+            int lastHit = 0;
+            for (LineMatch match : file.matches()) {
+                if (match.pattern() != pattern) {
+                    continue;
+                }
+                if (printed >= limit) {
+                    truncated = true;
+                    break;
+                }
+                int line = match.firstLine();
+                if (lastPrinted > 0 && line > lastPrinted + 1) {
+                    out.append("--\n");
+                }
+                for (String text : match.lines()) {
+                    boolean hit = line == match.line();
+                    if (line > lastPrinted || (hit && line != lastHit)) {
+                        out.append(file.path()).append(hit ? ":" : "-").append(line);
+                        if (hit) {
+                            out.append(':').append(match.column());
+                        }
+                        out.append(hit ? ": " : "- ").append(text).append('\n');
+                        lastPrinted = Math.max(lastPrinted, line);
+                    }
+                    line++;
+                }
+                lastHit = match.line();
+                printed++;
+            }
+            out.append('\n');
+        }
+        appendResultFooter(out, printed, truncated);
+        return printed;
+    }
+
+    /**
+     * Ends the results of one keyword with a note when nothing matched or the result cap was hit.
+     *
+     * @param out       The output to append to.
+     * @param printed   The number of results appended for the keyword.
+     * @param truncated Whether results were left out because of the cap.
+     */
+    private void appendResultFooter(StringBuilder out, int printed, boolean truncated) {
+        if (truncated) {
+            out.append("RESULTS TRUNCATED - INCREASE maxResults TO SEE MORE");
+        } else if (printed == 0) {
+            out.append("NO FILES FOUND WITH KEYWORD");
+        }
+    }
+
+    /**
+     * The keywords found in one file.
+     *
+     * @param path     The file.
+     * @param patterns The indexes of the keywords it contains.
+     */
+    private record PatternHits(Path path, BitSet patterns) {
+    }
+
+    /**
+     * The part of a file that one page of read_multiple_files reads.
+     *
+     * @param index  The index of the requested path the file was listed from.
+     * @param path   The file.
+     * @param offset The byte offset to start reading at.
+     * @param length The maximum number of bytes to read.
+     * @param size   The size of the file when the page was planned.
+     */
+    private record FileChunk(int index, Path path, long offset, long length, long size) {
+    }
+
+    /**
+     * The formatted content of a chunk.
+     *
+     * @param text      The content with its header, or an error message.
+     * @param bytesRead The number of bytes of the file the chunk consumed.
+     */
+    private record ChunkContent(String text, long bytesRead) {
+    }
+
+    /**
+     * One file of a batch edit, validated but not yet written.
+     *
+     * @param path     The file.
+     * @param result   The original and modified content.
+     * @param diff     The file's part of the combined diff.
+     * @param modified The file's last modified time when it was read.
+     * @param size     The file's size when it was read.
+     * @param error    The reason the file cannot be edited, or null.
+     */
+    private record PlannedEdit(Path path, EditResult result, String diff, FileTime modified, long size, String error) {
+        static PlannedEdit failed(Path path, String error) {
+            return new PlannedEdit(path, null, null, null, 0, error);
         }
-        return "develop";
     }
 }
@@ -0,0 +1,377 @@
+package com.mcp.service.impl;
+
+import com.mcp.service.FileChangeListener;
+import com.mcp.service.FileWalkVisitor;
+import com.mcp.service.FileWalkerService;
+import com.mcp.service.PathService;
+import com.mcp.walk.IgnoreRules;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class FileWalkerServiceImpl implements FileWalkerService, FileChangeListener {
+    private static final List<String> IGNORE_FILES = List.of(".gitignore", ".ignore");
+    private static final int ENTRY_BATCH_SIZE = 256;
+
+    private final ForkJoinPool searchPool;
+    private final Set<String> ignoredDirs;
+    private final boolean useIgnoreFiles;
+    private final List<Path> allowedPaths;
+    private final Map<Path, IgnoreRules> rulesCache = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FileWalkerServiceImpl(PathService pathService,
+                                 ForkJoinPool searchPool,
+                                 @Value("${app.walk.ignored-dirs:.git,node_modules,build}") String ignoredDirs,
+                                 @Value("${app.walk.use-ignore-files:true}") boolean useIgnoreFiles) {
+        this.searchPool = searchPool;
+        this.ignoredDirs = Arrays.stream(ignoredDirs.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.useIgnoreFiles = useIgnoreFiles;
+        this.allowedPaths = pathService.getAllowedDirsAsString().stream()
+                .map(p -> Paths.get(p).toAbsolutePath().normalize())
+                .toList();
+    }
+
+    /**
+     * Walks a file tree on the fork-join pool, one task per directory and per batch of entries of a large
+     * directory, skipping the always-ignored directory names and everything matched by the
+     * {@code .gitignore}/{@code .ignore} files of the start path, its ancestors inside the allowed directory,
+     * and every directory below it. The start path itself is never skipped. Symbolic links to files are visited
+     * with the target's attributes; symbolic links to directories are not followed.
+     *
+     * @param start   The file or directory to walk.
+     * @param visitor The thread-safe visitor.
+     * @throws IOException If the start path cannot be read.
+     */
+    @Override
+    public void walk(Path start, FileWalkVisitor visitor) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(start, BasicFileAttributes.class);
+        if (!attrs.isDirectory()) {
+            visitor.visitFile(start, attrs);
+            return;
+        }
+        if (visitor.preVisitDirectory(start, attrs)) {
+            searchPool.invoke(new DirectoryTask(start, ancestorRules(start), visitor));
+        }
+    }
+
+    /**
+     * Lists the regular files below a path, in path order.
+     *
+     * @param start The file or directory to walk.
+     * @return The regular files, sorted.
+     * @throws IOException If the start path cannot be read.
+     */
+    @Override
+    public List<Path> listFiles(Path start) throws IOException {
+        ConcurrentLinkedQueue<Path> files = new ConcurrentLinkedQueue<>();
+        walk(start, (file, attrs) -> {
+            if (attrs.isRegularFile()) {
+                files.add(file);
+            }
+        });
+        List<Path> sorted = new ArrayList<>(files);
+        sorted.sort(null);
+        return sorted;
+    }
+
+    /**
+     * Lists up to a limit of the regular files below a path that come after a given file, in path order. The
+     * tree is walked depth-first in that order on the calling thread, skipping the subtrees that end before the
+     * given file and stopping at the limit, so a page of a large listing only lists the directories on its way.
+     * Entries are skipped as by {@link #walk}.
+     *
+     * @param start The file or directory to list.
+     * @param after The file to list after, which need not exist any more, or null to list from the start.
+     * @param limit The maximum number of files to return.
+     * @return The regular files, sorted.
+     * @throws IOException If the start path cannot be read.
+     */
+    @Override
+    public List<Path> listFiles(Path start, Path after, int limit) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(start, BasicFileAttributes.class);
+        List<Path> files = new ArrayList<>();
+        String afterKey = after == null ? null : after.toString();
+        if (!attrs.isDirectory()) {
+            if (attrs.isRegularFile() && (afterKey == null || start.toString().compareTo(afterKey) > 0)) {
+                files.add(start);
+            }
+        } else if (limit > 0) {
+            listFilesAfter(start, ancestorRules(start), afterKey, limit, files);
+        }
+        return files;
+    }
+
+    /**
+     * Lists the files of one directory after a path, then walks into its subdirectories in order. Entries are
+     * ordered by their path with a separator appended to directories, which is the order of the files' full
+     * paths, so a subdirectory can be skipped whole when its files all sort before the given path. Entries that
+     * sort before the given path either way are dropped before their attributes are read.
+     */
+    private void listFilesAfter(Path dir, RuleChain parentRules, String after, int limit, List<Path> files) {
+        RuleChain rules = RuleChain.extend(parentRules, dir, rulesFor(dir));
+        String separator = dir.getFileSystem().getSeparator();
+        List<Map.Entry<String, Path>> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                String directoryKey = entry + separator;
+                if (after != null && directoryKey.compareTo(after) <= 0 && !after.startsWith(directoryKey)) {
+                    continue;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isSymbolicLink()) {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                        if (attrs.isDirectory()) {
+                            continue;
+                        }
+                    }
+                } catch (IOException e) {
+                    continue;
+                }
+                boolean directory = attrs.isDirectory();
+                if (isSkipped(entry, name, directory, rules) || !directory && !attrs.isRegularFile()) {
+                    continue;
+                }
+                String key = directory ? directoryKey : entry.toString();
+                if (after == null || key.compareTo(after) > 0 || directory && after.startsWith(key)) {
+                    entries.add(Map.entry(key, entry));
+                }
+            }
+        } catch (IOException e) {
+            log.debug("COULD NOT LIST {} - {}", dir, e.getMessage());
+            return;
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        for (Map.Entry<String, Path> entry : entries) {
+            if (files.size() >= limit) {
+                return;
+            }
+            if (entry.getKey().endsWith(separator)) {
+                listFilesAfter(entry.getValue(), rules, after, limit, files);
+            } else {
+                files.add(entry.getValue());
+            }
+        }
+    }
+
+    private boolean isSkipped(Path entry, String name, boolean directory, RuleChain rules) {
+        return (directory && ignoredDirs.contains(name)) || (rules != null && rules.isIgnored(entry, name, directory));
+    }
+
+    /**
+     * Tells whether a walk would skip an entry because of its name: an always-ignored directory name, or a
+     * match in the ignore files of the entry's ancestors inside the allowed directory. Whether an ancestor is
+     * itself ignored is not checked.
+     *
+     * @param path      The entry.
+     * @param directory Whether the entry is a directory.
+     * @return True if the entry is ignored.
+     */
+    @Override
+    public boolean isIgnored(Path path, boolean directory) {
+        Path name = path.getFileName();
+        if (name == null) {
+            return false;
+        }
+        RuleChain rules = ancestorRules(path);
+        return (directory && ignoredDirs.contains(name.toString()))
+                || (rules != null && rules.isIgnored(path, name.toString(), directory));
+    }
+
+    /**
+     * Drops cached ignore rules when an ignore file or a directory changes.
+     *
+     * @param kind The kind of event
+     * @param path The full path of the affected file or directory
+     */
+    @Override
+    public void onFileChange(WatchEvent.Kind<?> kind, Path path) {
+        Path name = path.getFileName();
+        if (name != null && IGNORE_FILES.contains(name.toString())) {
+            rulesCache.remove(path.getParent());
+        } else {
+            rulesCache.remove(path);
+        }
+    }
+
+    /**
+     * Builds the chain of ignore rules that apply to the start path from its ancestors, up to the allowed
+     * directory that contains it.
+     *
+     * @param start The start directory.
+     * @return The rule chain of the start directory's parent, or null if there is none.
+     */
+    private RuleChain ancestorRules(Path start) {
+        Path top = allowedPaths.stream().filter(start::startsWith).findFirst().orElse(start);
+        List<Path> ancestors = new ArrayList<>();
+        for (Path dir = start.getParent(); dir != null && dir.startsWith(top); dir = dir.getParent()) {
+            ancestors.addFirst(dir);
+        }
+        RuleChain chain = null;
+        for (Path dir : ancestors) {
+            chain = RuleChain.extend(chain, dir, rulesFor(dir));
+        }
+        return chain;
+    }
+
+    private IgnoreRules rulesFor(Path dir) {
+        if (!useIgnoreFiles) {
+            return IgnoreRules.EMPTY;
+        }
+        return rulesCache.computeIfAbsent(dir, this::loadRules);
+    }
+
+    private IgnoreRules loadRules(Path dir) {
+        List<String> lines = new ArrayList<>();
+        for (String name : IGNORE_FILES) {
+            try {
+                lines.addAll(Files.readAllLines(dir.resolve(name)));
+            } catch (NoSuchFileException ignored) {
+                // No ignore file of this kind in the directory
+            } catch (IOException e) {
+                log.debug("COULD NOT READ IGNORE FILE IN {} - {}", dir, e.getMessage());
+            }
+        }
+        return IgnoreRules.parse(lines);
+    }
+
+    /**
+     * Immutable linked list of the ignore rules of a directory and its ancestors, innermost first.
+     */
+    private record RuleChain(Path dir, IgnoreRules rules, RuleChain parent) {
+        static RuleChain extend(RuleChain parent, Path dir, IgnoreRules rules) {
+            return rules.isEmpty() ? parent : new RuleChain(dir, rules, parent);
+        }
+
+        boolean isIgnored(Path path, String name, boolean directory) {
+            for (RuleChain chain = this; chain != null; chain = chain.parent) {
+                String relative = chain.dir.relativize(path).toString().replace('\\', '/');
+                Boolean match = chain.rules.match(relative, name, directory);
+                if (match != null) {
+                    return match;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Lists one directory, reports its files and forks one task per subdirectory. The entries of a large
+     * directory are split into batches read on several workers.
+     */
+    private final class DirectoryTask extends RecursiveAction {
+        private final Path dir;
+        private final RuleChain parentRules;
+        private final FileWalkVisitor visitor;
+
+        DirectoryTask(Path dir, RuleChain parentRules, FileWalkVisitor visitor) {
+            this.dir = dir;
+            this.parentRules = parentRules;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            RuleChain rules = RuleChain.extend(parentRules, dir, rulesFor(dir));
+            List<Path> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    entries.add(entry);
+                }
+            } catch (IOException e) {
+                visitor.visitFailed(dir, e);
+            }
+            new EntryBatchTask(entries, 0, entries.size(), rules, visitor).compute();
+        }
+    }
+
+    /**
+     * Reads the attributes of a slice of one directory's entries, halving the slice until it is small enough,
+     * and walks into the subdirectories found.
+     */
+    private final class EntryBatchTask extends RecursiveAction {
+        private final List<Path> entries;
+        private final int from;
+        private final int to;
+        private final RuleChain rules;
+        private final FileWalkVisitor visitor;
+
+        EntryBatchTask(List<Path> entries, int from, int to, RuleChain rules, FileWalkVisitor visitor) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.rules = rules;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ENTRY_BATCH_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EntryBatchTask(entries, from, mid, rules, visitor),
+                        new EntryBatchTask(entries, mid, to, rules, visitor));
+                return;
+            }
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                visitEntry(entries.get(i), subtasks);
+            }
+            invokeAll(subtasks);
+        }
+
+        private void visitEntry(Path entry, List<DirectoryTask> subtasks) {
+            String name = entry.getFileName().toString();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isSymbolicLink()) {
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                    if (attrs.isDirectory()) {
+                        visitor.visitSkipped(entry, attrs);
+                        return;
+                    }
+                }
+                boolean directory = attrs.isDirectory();
+                if (isSkipped(entry, name, directory, rules)) {
+                    visitor.visitSkipped(entry, attrs);
+                    return;
+                }
+                if (!directory) {
+                    visitor.visitFile(entry, attrs);
+                } else if (visitor.preVisitDirectory(entry, attrs)) {
+                    subtasks.add(new DirectoryTask(entry, rules, visitor));
+                }
+            } catch (IOException e) {
+                visitor.visitFailed(entry, e);
+            }
+        }
+    }
+}
@@ -1,31 +1,85 @@
 package com.mcp.service.impl;
 
+import com.mcp.service.FileChangeListener;
+import com.mcp.service.FileWalkVisitor;
+import com.mcp.service.FileWalkerService;
 import com.mcp.service.FileWatcherService;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class FileWatcherServiceImpl implements FileWatcherService {
     private final PathServiceImpl pathValidator;
+    private final FileWalkerService fileWalkerService;
+    private final List<FileChangeListener> fileChangeListeners;
+    private final long debounceMillis;
+    private final long pollIntervalMillis;
+    private final int maxDirectories;
+    private final boolean pollingOnly;
     private final ExecutorService threadExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService rescanExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService[] workers;
     private final Map<WatchKey, Path> watchKeyMap = new ConcurrentHashMap<>();
-    private final Map<String, Path> resourceMap = new ConcurrentHashMap<>();
+    private final Map<Path, WatchEvent.Kind<?>> pendingEvents = new LinkedHashMap<>();
+    private final Set<Path> pendingRescans = ConcurrentHashMap.newKeySet();
+    private final List<Path> roots = new ArrayList<>();
+    private final Map<Path, Map<Path, FileState>> pollSnapshots = new ConcurrentHashMap<>();
 
     private WatchService watcher;
     private Consumer<String> resourceChangeCallback;
+    private boolean flushScheduled;
+    private ScheduledFuture<?> pollTask;
+
+    public FileWatcherServiceImpl(PathServiceImpl pathValidator,
+                                  FileWalkerService fileWalkerService,
+                                  List<FileChangeListener> fileChangeListeners,
+                                  @Value("${app.watch.debounce-ms:100}") long debounceMillis,
+                                  @Value("${app.watch.workers:4}") int workerCount,
+                                  @Value("${app.watch.queue-capacity:1024}") int queueCapacity,
+                                  @Value("${app.watch.poll-interval-ms:5000}") long pollIntervalMillis,
+                                  @Value("${app.watch.max-directories:8192}") int maxDirectories,
+                                  @Value("${app.watch.polling:false}") boolean pollingOnly) {
+        this.pathValidator = pathValidator;
+        this.fileWalkerService = fileWalkerService;
+        this.fileChangeListeners = fileChangeListeners;
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.pollIntervalMillis = Math.max(100, pollIntervalMillis);
+        this.maxDirectories = maxDirectories;
+        this.pollingOnly = pollingOnly;
+        this.workers = new ExecutorService[Math.max(1, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), FileWatcherServiceImpl::waitForQueue);
+        }
+    }
 
     @PostConstruct
     public void init() {
@@ -33,14 +87,25 @@ public class FileWatcherServiceImpl implements FileWatcherService {
             this.watcher = FileSystems.getDefault().newWatchService();
             startFileWatching();
             for (String path : pathValidator.getAllowedDirsAsString()) {
-                Path dir = Paths.get(path);
-                registerDirectoryForWatching(dir);
+                roots.add(Paths.get(path).toAbsolutePath().normalize());
             }
         } catch (Exception e) {
             log.error("FAILED TO INITIALIZE FILE WATCHER", e);
         }
     }
 
+    /**
+     * Register the allowed directories once the server is ready, in the background, so a large workspace does
+     * not hold up startup. The indexes scan before that, so each root is handed back to the listeners to
+     * reconcile once its registration is done.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerAllowedDirs() {
+        for (Path root : roots) {
+            rescanExecutor.execute(() -> registerRoot(root));
+        }
+    }
+
     @PreDestroy
     public void cleanup() {
         try {
@@ -50,6 +115,13 @@ public class FileWatcherServiceImpl implements FileWatcherService {
         } catch (Exception e) {
             log.error("FAILED TO CLOSE FILE WATCHER", e);
         }
+        threadExecutor.shutdownNow();
+        rescanExecutor.shutdownNow();
+        pollScheduler.shutdownNow();
+        flushScheduler.shutdownNow();
+        for (ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
     }
 
     /**
@@ -71,9 +143,9 @@ public class FileWatcherServiceImpl implements FileWatcherService {
     }
 
     /**
-     * Set the callback to be invoked on resource changes
+     * Take the next signalled WatchKey, blocking until one is available
      *
-     * @return The current resource change callback
+     * @return The WatchKey, or null if the watcher was closed or the thread interrupted
      */
     private WatchKey takeWatchKey() {
         try {
@@ -82,27 +154,31 @@ public class FileWatcherServiceImpl implements FileWatcherService {
             Thread.currentThread().interrupt();
             log.info("FILE WATCHER THREAD INTERRUPTED");
             return null;
+        } catch (ClosedWatchServiceException e) {
+            log.info("FILE WATCHER CLOSED");
+            return null;
         }
     }
 
     /**
-     * Process a WatchKey by handling its events
+     * Process a WatchKey by handling its events, then reset it so it is signalled again
      *
      * @param key The WatchKey to process
      */
     private void processWatchKey(WatchKey key) {
-        Path dir = watchKeyMap.get(key);
-        if (dir == null) {
-            log.warn("WATCH KEY NOT RECOGNIZED");
-            return;
-        }
+        Path dir = watchKeyMap.getOrDefault(key, (Path) key.watchable());
         for (WatchEvent<?> event : key.pollEvents()) {
             processWatchEvent(event, dir);
         }
+        if (!key.reset()) {
+            watchKeyMap.remove(key);
+        }
     }
 
     /**
-     * Process a single WatchEvent
+     * Process a single WatchEvent. Events are queued for coalescing; an overflow means events were lost, so the
+     * directory is rescanned instead, and a new directory is registered and scanned for the files created in it
+     * before its registration took effect.
      *
      * @param event The WatchEvent to process
      * @param dir   The directory associated with the WatchKey
@@ -110,7 +186,8 @@ public class FileWatcherServiceImpl implements FileWatcherService {
     private void processWatchEvent(WatchEvent<?> event, Path dir) {
         WatchEvent.Kind<?> kind = event.kind();
         if (kind == StandardWatchEventKinds.OVERFLOW) {
-            log.warn("OVERFLOW EVENT");
+            log.warn("OVERFLOW EVENT IN {} - RESCANNING", dir);
+            scheduleRescan(dir);
             return;
         }
         @SuppressWarnings("unchecked")
@@ -118,34 +195,121 @@ public class FileWatcherServiceImpl implements FileWatcherService {
         Path filename = pathEvent.context();
         Path fullPath = dir.resolve(filename);
 
-        handleFileEvent(kind, fullPath);
+        enqueueFileEvent(kind, fullPath);
 
-        if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(fullPath)) {
-            try {
-                registerDirectoryForWatching(fullPath);
-            } catch (IOException e) {
-                log.error("FAILED TO REGISTER NEW DIRECTORY {}", fullPath, e);
-                throw new RuntimeException(e);
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(fullPath, LinkOption.NOFOLLOW_LINKS)) {
+            scheduleRescan(fullPath);
+        }
+    }
+
+    /**
+     * Queue an event, merging it with the event already pending for the same path. The latest kind wins, except
+     * that a modification does not hide a pending creation. The first event queued after a flush schedules the
+     * next flush one debounce window later.
+     *
+     * @param kind     The kind of event
+     * @param fullPath The full path of the affected file
+     */
+    private void enqueueFileEvent(WatchEvent.Kind<?> kind, Path fullPath) {
+        synchronized (pendingEvents) {
+            WatchEvent.Kind<?> previous = pendingEvents.get(fullPath);
+            boolean keepCreate = previous == StandardWatchEventKinds.ENTRY_CREATE && kind == StandardWatchEventKinds.ENTRY_MODIFY;
+            pendingEvents.put(fullPath, keepCreate ? previous : kind);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                flushScheduler.schedule(this::flushEvents, debounceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Hand the coalesced events to the workers, one batch per worker. A path always goes to the same worker, so
+     * the events of one file are handled in order while different files are handled in parallel. When a
+     * worker's queue is full the flush waits for room rather than running the batch itself, which would race
+     * with the worker; new events keep coalescing in the pending map in the meantime.
+     */
+    private void flushEvents() {
+        List<Map.Entry<Path, WatchEvent.Kind<?>>> batch;
+        synchronized (pendingEvents) {
+            batch = new ArrayList<>(pendingEvents.entrySet());
+            pendingEvents.clear();
+            flushScheduled = false;
+        }
+        log.debug("DISPATCHING {} COALESCED FILE EVENTS", batch.size());
+        List<List<Map.Entry<Path, WatchEvent.Kind<?>>>> batches = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            batches.add(new ArrayList<>());
+        }
+        for (Map.Entry<Path, WatchEvent.Kind<?>> event : batch) {
+            batches.get(workerOf(event.getKey())).add(event);
+        }
+        for (int i = 0; i < workers.length; i++) {
+            List<Map.Entry<Path, WatchEvent.Kind<?>>> events = batches.get(i);
+            if (!events.isEmpty()) {
+                workers[i].execute(() -> events.forEach(event -> dispatchFileEvent(event.getValue(), event.getKey())));
             }
         }
     }
 
     /**
-     * Handles a file system event by updating the resource map and notifying the callback
+     * Hands a change made by a tool to the worker that owns its path, behind the events already queued there, so
+     * the listeners handle the events of one file in order whichever thread reports them. The listeners are told
+     * on the calling thread that the change is queued.
      *
      * @param kind     The kind of event
      * @param fullPath The full path of the affected file
      */
-    public void handleFileEvent(WatchEvent.Kind<?> kind, Path fullPath) {
+    @Override
+    public void notifyFileChange(WatchEvent.Kind<?> kind, Path fullPath) {
+        for (FileChangeListener listener : fileChangeListeners) {
+            listener.onFileChangeQueued(fullPath);
+        }
+        workers[workerOf(fullPath)].execute(() -> dispatchFileEvent(kind, fullPath));
+    }
+
+    private int workerOf(Path path) {
+        return Math.floorMod(path.hashCode(), workers.length);
+    }
+
+    /**
+     * Rejection handler of the workers: blocks the submitting thread until the worker's queue has room, so a
+     * batch is never run outside the worker that owns its paths. Batches submitted after shutdown are dropped.
+     *
+     * @param task     The rejected batch
+     * @param executor The worker whose queue is full
+     */
+    private static void waitForQueue(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("INTERRUPTED WHILE WAITING FOR A WATCHER WORKER", e);
+        }
+    }
+
+    private void dispatchFileEvent(WatchEvent.Kind<?> kind, Path fullPath) {
+        try {
+            handleFileEvent(kind, fullPath);
+        } catch (RuntimeException e) {
+            log.error("FAILED TO HANDLE EVENT {} ON FILE {}", kind.name(), fullPath, e);
+        }
+    }
+
+    /**
+     * Handles a file system event by notifying the listeners, among them the metadata index, and the callback
+     *
+     * @param kind     The kind of event
+     * @param fullPath The full path of the affected file
+     */
+    private void handleFileEvent(WatchEvent.Kind<?> kind, Path fullPath) {
         String uri = "file://" + fullPath.toAbsolutePath().toString();
-        log.info("EVENT {} ON FILE {}", kind.name(), uri);
+        log.debug("EVENT {} ON FILE {}", kind.name(), uri);
 
-        if (kind == StandardWatchEventKinds.ENTRY_CREATE || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-            resourceMap.put(uri, fullPath);
-            log.info("EVENT {} ON FILE {}", kind.name(), uri);
-        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
-            resourceMap.remove(uri);
-            log.info("FILE DELETED: {}", uri);
+        for (FileChangeListener listener : fileChangeListeners) {
+            listener.onFileChange(kind, fullPath);
         }
 
         if (resourceChangeCallback != null) {
@@ -154,28 +318,212 @@ public class FileWatcherServiceImpl implements FileWatcherService {
     }
 
     /**
-     * Register a directory and its subdirectories for watching
+     * Schedule a rescan of a directory, unless one is already waiting to run
+     *
+     * @param directory The directory to rescan
+     */
+    private void scheduleRescan(Path directory) {
+        if (!pendingRescans.add(directory)) {
+            return;
+        }
+        rescanExecutor.execute(() -> {
+            pendingRescans.remove(directory);
+            try {
+                if (!registerDirectoryForWatching(directory, true)) {
+                    Path root = rootOf(directory);
+                    fallBackToPolling(root);
+                    notifyWatchStarted(root);
+                }
+            } catch (IOException e) {
+                log.error("FAILED TO RESCAN DIRECTORY {}", directory, e);
+            }
+        });
+    }
+
+    /**
+     * Watch an allowed directory natively, or poll it if polling is forced or the native watches run out
+     *
+     * @param root The allowed directory
+     */
+    private void registerRoot(Path root) {
+        if (watcher == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            if (pollingOnly) {
+                startPolling(root);
+            } else if (!registerDirectoryForWatching(root, false)) {
+                fallBackToPolling(root);
+            }
+            log.info("WATCHING {} ({} DIRECTORIES REGISTERED IN {} MS)", root, watchKeyMap.size(), System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.error("FAILED TO REGISTER {} FOR WATCHING", root, e);
+        }
+        notifyWatchStarted(root);
+    }
+
+    /**
+     * Tell the listeners that a tree is now watched, so they re-check what changed while it was not
+     *
+     * @param root The allowed directory
+     */
+    private void notifyWatchStarted(Path root) {
+        for (FileChangeListener listener : fileChangeListeners) {
+            try {
+                listener.onWatchStarted(root);
+            } catch (RuntimeException e) {
+                log.error("FAILED TO NOTIFY WATCH START OF {}", root, e);
+            }
+        }
+    }
+
+    /**
+     * Drop the native watches of a tree and poll it instead
+     *
+     * @param root The tree to poll
+     */
+    private void fallBackToPolling(Path root) throws IOException {
+        if (pollSnapshots.containsKey(root)) {
+            return;
+        }
+        log.warn("NATIVE WATCH LIMIT REACHED UNDER {} - POLLING EVERY {} MS INSTEAD", root, pollIntervalMillis);
+        watchKeyMap.entrySet().removeIf(entry -> {
+            if (entry.getValue().startsWith(root)) {
+                entry.getKey().cancel();
+                return true;
+            }
+            return false;
+        });
+        startPolling(root);
+    }
+
+    private void startPolling(Path root) throws IOException {
+        pollSnapshots.put(root, snapshot(root));
+        synchronized (pollSnapshots) {
+            if (pollTask == null) {
+                pollTask = pollScheduler.scheduleWithFixedDelay(this::pollAll, pollIntervalMillis, pollIntervalMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void pollAll() {
+        for (Path root : pollSnapshots.keySet()) {
+            try {
+                poll(root);
+            } catch (IOException | RuntimeException e) {
+                log.error("FAILED TO POLL {}", root, e);
+            }
+        }
+    }
+
+    /**
+     * Walk a polled tree and queue an event for every file created, modified or deleted since the last poll
+     *
+     * @param root The polled tree
+     */
+    private void poll(Path root) throws IOException {
+        Map<Path, FileState> previous = pollSnapshots.get(root);
+        Map<Path, FileState> current = snapshot(root);
+        current.forEach((path, state) -> {
+            FileState old = previous.get(path);
+            if (old == null) {
+                enqueueFileEvent(StandardWatchEventKinds.ENTRY_CREATE, path);
+            } else if (!old.equals(state)) {
+                enqueueFileEvent(StandardWatchEventKinds.ENTRY_MODIFY, path);
+            }
+        });
+        for (Path path : previous.keySet()) {
+            if (!current.containsKey(path)) {
+                enqueueFileEvent(StandardWatchEventKinds.ENTRY_DELETE, path);
+            }
+        }
+        pollSnapshots.put(root, current);
+    }
+
+    private Map<Path, FileState> snapshot(Path root) throws IOException {
+        Map<Path, FileState> files = new ConcurrentHashMap<>();
+        fileWalkerService.walk(root, (file, attrs) ->
+                files.put(file, new FileState(attrs.lastModifiedTime().toMillis(), attrs.size())));
+        return files;
+    }
+
+    private Path rootOf(Path directory) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        return roots.stream().filter(absolute::startsWith).findFirst().orElse(absolute);
+    }
+
+    /**
+     * Register a directory and its subdirectories for watching, skipping the directories the walker ignores
      *
      * @param directory The directory to register
+     * @param announce  Whether to queue a modification event for the directory and every file found in it,
+     *                  so listeners catch up with changes whose events were lost
+     * @return False if the native watch limit was reached before every directory was registered; directories
+     *         that vanish or cannot be read while registering are skipped
      * @throws IOException If an I/O error occurs
      */
-    private void registerDirectoryForWatching(Path directory) throws IOException {
+    private boolean registerDirectoryForWatching(Path directory, boolean announce) throws IOException {
         if (!Files.isDirectory(directory)) {
             log.error("{} IS NOT A DIRECTORY", directory);
-            return;
+            return true;
+        }
+        if (announce) {
+            enqueueFileEvent(StandardWatchEventKinds.ENTRY_MODIFY, directory);
         }
 
-        Files.walk(directory)
-                .filter(Files::isDirectory)
-                .forEach(dir -> {
-                    try {
-                        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
-                                StandardWatchEventKinds.ENTRY_DELETE,
-                                StandardWatchEventKinds.ENTRY_MODIFY);
-                        log.info("REGISTERED DIRECTORY {}", dir);
-                    } catch (IOException e) {
-                        log.error("FAILED TO REGISTER DIRECTORY {}", dir, e);
+        AtomicBoolean exhausted = new AtomicBoolean();
+        fileWalkerService.walk(directory, new FileWalkVisitor() {
+            @Override
+            public boolean preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (exhausted.get() || watchKeyMap.size() >= maxDirectories) {
+                    exhausted.set(true);
+                    return false;
+                }
+                try {
+                    WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchKeyMap.put(key, dir);
+                    log.debug("REGISTERED DIRECTORY {}", dir);
+                } catch (NoSuchFileException | AccessDeniedException e) {
+                    log.debug("SKIPPING DIRECTORY {} - {}", dir, e.getClass().getSimpleName());
+                    return false;
+                } catch (IOException e) {
+                    if (isWatchLimit(e)) {
+                        log.warn("FAILED TO REGISTER DIRECTORY {} - {}", dir, e.getMessage());
+                        exhausted.set(true);
+                    } else {
+                        log.warn("SKIPPING DIRECTORY {} - {}", dir, e.getMessage());
                     }
-                });
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                if (announce) {
+                    enqueueFileEvent(StandardWatchEventKinds.ENTRY_MODIFY, file);
+                }
+            }
+        });
+        return !exhausted.get();
+    }
+
+    /**
+     * Tell whether a registration failed because the native watches ran out, rather than because of the
+     * directory itself, such as one deleted after the walker listed it
+     *
+     * @param e The registration failure
+     * @return True if no more directories can be registered
+     */
+    private boolean isWatchLimit(IOException e) {
+        String message = e.getMessage();
+        return message != null && message.contains("inotify watches reached") || watchKeyMap.size() >= maxDirectories;
+    }
+
+    private record FileState(long modified, long size) {
     }
 }
@@ -0,0 +1,180 @@
+package com.mcp.service.impl;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.UnifiedDiffUtils;
+import com.mcp.git.GitIndex;
+import com.mcp.git.TreeEntry;
+import com.mcp.git.WorkTreeFile;
+import com.mcp.git.WorkTreeStatus;
+import com.mcp.service.BatchReadService;
+import com.mcp.service.ChangeTrackerService;
+import com.mcp.service.GitService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class GitServiceImpl implements GitService {
+    private static final int DIFF_CONTEXT_LINES = 3;
+    private static final int MAX_DIFF_LINES = 5000;
+    private static final int BINARY_PROBE_BYTES = 8000;
+
+    private final ChangeTrackerService changeTrackerService;
+    private final BatchReadService batchReadService;
+
+    /**
+     * Diffs the work tree under a path against the upstream of the current branch (or {@code develop}, or
+     * HEAD when neither exists), reading the repository directly instead of running git. Only the files the
+     * change tracker reports as changed are read and diffed, in parallel.
+     *
+     * @param path The directory or file to diff; the whole work tree if it is the repository root.
+     * @return The unified diff of every changed file under the path, or an error message if an error occurs.
+     */
+    @Override
+    public String getChanges(Path path) {
+        try {
+            WorkTreeStatus status = changeTrackerService.getStatus(path);
+            if (status == null) {
+                return "ERROR GETTING CHANGES FOR FILE: " + path + " - NOT A GIT REPOSITORY";
+            }
+            List<String> diffs = batchReadService.readAll(status.changes(), change -> diffFile(status, change.path()),
+                    (change, e) -> "ERROR READING FILE: " + change.path() + " - " + e.getMessage());
+            return format(diffs.stream().filter(Objects::nonNull).toList());
+        } catch (IOException e) {
+            log.warn("COULD NOT READ GIT REPOSITORY FOR {} - {}", path, e.getMessage());
+            return "ERROR GETTING CHANGES FOR FILE: " + path + " - " + e.getMessage();
+        }
+    }
+
+    /**
+     * Lists the changed files under a path with their status, without reading or diffing them.
+     *
+     * @param path The directory or file to report on.
+     * @return One {@code A}, {@code M} or {@code D} line per changed file, or an error message if an error occurs.
+     */
+    @Override
+    public String getChangedFiles(Path path) {
+        try {
+            WorkTreeStatus status = changeTrackerService.getStatus(path);
+            if (status == null) {
+                return "ERROR GETTING CHANGES FOR FILE: " + path + " - NOT A GIT REPOSITORY";
+            }
+            if (status.changes().isEmpty()) {
+                return "NO CHANGES SINCE LAST COMMIT";
+            }
+            return status.changes().stream()
+                    .map(change -> change.type().name().charAt(0) + " " + change.path())
+                    .collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            log.warn("COULD NOT READ GIT REPOSITORY FOR {} - {}", path, e.getMessage());
+            return "ERROR GETTING CHANGES FOR FILE: " + path + " - " + e.getMessage();
+        }
+    }
+
+    private String diffFile(WorkTreeStatus status, String path) {
+        TreeEntry base = status.tree().get(path);
+        GitIndex.Entry staged = status.index().entries().get(path);
+        try {
+            WorkTreeFile file = staged == null ? null
+                    : WorkTreeFile.read(status.repository().workTree(), path, staged, status.fileMode());
+            if (base == null && file == null || file != null && file.matches(base)) {
+                return null;
+            }
+            String id = file == null ? null : file.id();
+            byte[] original = base == null ? null : base.id().equals(id) ? file.content() : status.repository().blob(base.id());
+            return formatFile(path, base, original, file == null ? 0 : file.mode(), id, file == null ? null : file.content());
+        } catch (IOException e) {
+            return "ERROR READING FILE: " + path + " - " + e.getMessage();
+        }
+    }
+
+    /**
+     * Formats the diff of one file the way {@code git diff} does, with mode changes, new and deleted files and
+     * binary files reported in its header lines.
+     */
+    private String formatFile(String path, TreeEntry base, byte[] original, int mode, String id, byte[] content) {
+        List<String> lines = new ArrayList<>();
+        lines.add("diff --git a/" + path + " b/" + path);
+        if (base == null) {
+            lines.add("new file mode " + Integer.toOctalString(mode));
+        } else if (content == null) {
+            lines.add("deleted file mode " + Integer.toOctalString(base.mode()));
+        } else if (base.mode() != mode) {
+            lines.add("old mode " + Integer.toOctalString(base.mode()));
+            lines.add("new mode " + Integer.toOctalString(mode));
+        }
+        String oldId = base == null ? "0".repeat(40) : base.id();
+        String newId = id == null ? "0".repeat(40) : id;
+        if (oldId.equals(newId)) {
+            return String.join("\n", lines);
+        }
+        lines.add("index " + oldId.substring(0, 7) + ".." + newId.substring(0, 7)
+                + (base != null && content != null && base.mode() == mode ? " " + Integer.toOctalString(mode) : ""));
+        String from = base == null ? "/dev/null" : "a/" + path;
+        String to = content == null ? "/dev/null" : "b/" + path;
+        if (isBinary(original) || isBinary(content)) {
+            lines.add("Binary files " + from + " and " + to + " differ");
+            return String.join("\n", lines);
+        }
+        List<String> originalLines = lines(original);
+        List<String> modifiedLines = lines(content);
+        lines.addAll(UnifiedDiffUtils.generateUnifiedDiff(from, to, originalLines,
+                DiffUtils.diff(originalLines, modifiedLines), DIFF_CONTEXT_LINES));
+        return String.join("\n", lines);
+    }
+
+    private String format(List<String> diffs) {
+        if (diffs.isEmpty()) {
+            return "NO CHANGES SINCE LAST COMMIT";
+        }
+        StringBuilder builder = new StringBuilder("```diff\n");
+        int lineCount = 0;
+        for (int i = 0; i < diffs.size(); i++) {
+            String diff = diffs.get(i);
+            int diffLines = (int) diff.lines().count();
+            if (i > 0 && lineCount + diffLines > MAX_DIFF_LINES) {
+                builder.append("... DIFF TRUNCATED AT ").append(MAX_DIFF_LINES).append(" LINES - ")
+                        .append(diffs.size() - i).append(" MORE CHANGED FILES NOT SHOWN\n");
+                break;
+            }
+            builder.append(diff).append('\n');
+            lineCount += diffLines;
+        }
+        return builder.append("```").toString();
+    }
+
+    private static List<String> lines(byte[] content) {
+        if (content == null || content.length == 0) {
+            return List.of();
+        }
+        String text = new String(content, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>(Arrays.asList(text.split("\r?\n", -1)));
+        if (text.endsWith("\n")) {
+            lines.removeLast();
+        }
+        return lines;
+    }
+
+    private static boolean isBinary(byte[] content) {
+        if (content == null) {
+            return false;
+        }
+        for (int i = 0; i < Math.min(content.length, BINARY_PROBE_BYTES); i++) {
+            if (content[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.mcp.service.impl;
+
+import com.mcp.service.GlobService;
+import com.mcp.walk.GlobSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class GlobServiceImpl implements GlobService {
+    private final Map<List<String>, GlobSet> cache;
+
+    public GlobServiceImpl(@Value("${app.glob.cache-size:256}") int cacheSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, GlobSet> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled matcher for a list of globs, compiling it on first use. Recently used
+     * glob sets are kept in an LRU cache, so repeated searches with the same patterns skip compilation.
+     *
+     * @param globs The globs to combine; null or empty matches nothing.
+     * @return A matcher that is true if any of the globs matches.
+     * @throws java.util.regex.PatternSyntaxException If a glob is invalid.
+     */
+    @Override
+    public GlobSet compile(List<String> globs) {
+        if (globs == null || globs.isEmpty()) {
+            return GlobSet.NONE;
+        }
+        List<String> key = List.copyOf(globs);
+        synchronized (cache) {
+            GlobSet cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        GlobSet compiled = GlobSet.compile(key);
+        synchronized (cache) {
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mcp.service.impl;
+
+import com.mcp.index.LineOffsetIndex;
+import com.mcp.service.FileChangeListener;
+import com.mcp.service.LineIndexService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+public class LineIndexServiceImpl implements LineIndexService, FileChangeListener {
+    private final Map<Path, LineOffsetIndex> cache;
+
+    public LineIndexServiceImpl(@Value("${app.read.line-index-cache-size:64}") int cacheSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, LineOffsetIndex> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached line offset index of a file, replacing it if the file's size or modification time
+     * changed since it was created. Recently read files are kept in an LRU cache.
+     *
+     * @param file  The file.
+     * @param attrs The file's current attributes.
+     * @return The line offset index of the file.
+     */
+    @Override
+    public LineOffsetIndex indexFor(Path file, BasicFileAttributes attrs) {
+        long modified = attrs.lastModifiedTime().toMillis();
+        synchronized (cache) {
+            LineOffsetIndex index = cache.get(file);
+            if (index == null || !index.matches(modified, attrs.size())) {
+                index = new LineOffsetIndex(modified, attrs.size());
+                cache.put(file, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Drops the index of a changed file.
+     *
+     * @param kind The kind of event
+     * @param path The full path of the affected file or directory
+     */
+    @Override
+    public void onFileChange(WatchEvent.Kind<?> kind, Path path) {
+        synchronized (cache) {
+            cache.remove(path);
+        }
+    }
+}
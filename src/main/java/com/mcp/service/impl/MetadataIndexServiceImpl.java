@@ -0,0 +1,431 @@
+package com.mcp.service.impl;
+
+import com.mcp.index.IndexedAttributes;
+import com.mcp.index.MetadataIndex;
+import com.mcp.service.FileChangeListener;
+import com.mcp.service.FileWalkVisitor;
+import com.mcp.service.FileWalkerService;
+import com.mcp.service.MetadataIndexService;
+import com.mcp.service.PathService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+@Service
+@Slf4j
+public class MetadataIndexServiceImpl implements MetadataIndexService, FileChangeListener {
+    private static final List<String> IGNORE_FILES = List.of(".gitignore", ".ignore");
+
+    private final PathService pathService;
+    private final FileWalkerService fileWalkerService;
+    private final boolean enabled;
+    private final ExecutorService scanExecutor = Executors.newSingleThreadExecutor();
+    private final Map<Path, RootIndex> indexes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MetadataIndexServiceImpl(PathService pathService,
+                                    FileWalkerService fileWalkerService,
+                                    @Value("${app.metadata.enabled:true}") boolean enabled) {
+        this.pathService = pathService;
+        this.fileWalkerService = fileWalkerService;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("METADATA INDEX DISABLED");
+            return;
+        }
+        for (String dir : pathService.getAllowedDirsAsString()) {
+            Path root = Paths.get(dir).toAbsolutePath().normalize();
+            RootIndex rootIndex = new RootIndex(root);
+            indexes.put(root, rootIndex);
+            scanExecutor.submit(() -> buildIndex(rootIndex));
+        }
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        scanExecutor.shutdownNow();
+    }
+
+    /**
+     * Replays a walk from the index instead of the disk, with the same callbacks, in the same order constraints
+     * and with the same entries skipped as {@link FileWalkerService#walk}. The attributes passed to the visitor
+     * are {@link IndexedAttributes}. The index is read-locked for the whole walk, so the visitor must not block.
+     *
+     * @param start   The file or directory to walk.
+     * @param visitor The visitor.
+     * @return False, without calling the visitor, if the index cannot answer: disabled, still building, or the
+     * start path is outside the allowed directories, missing or skipped by the walker.
+     */
+    @Override
+    public boolean walk(Path start, FileWalkVisitor visitor) {
+        Path absolute = start.toAbsolutePath().normalize();
+        RootIndex rootIndex = findRoot(absolute);
+        if (rootIndex == null || !rootIndex.ready) {
+            return false;
+        }
+        rootIndex.lock.readLock().lock();
+        try {
+            MetadataIndex index = rootIndex.index;
+            int node = rootIndex.locate(absolute);
+            if (node == MetadataIndex.NONE) {
+                return false;
+            }
+            if (index.type(node) != MetadataIndex.DIRECTORY) {
+                visitor.visitFile(absolute, attributes(index, node));
+                return true;
+            }
+            if (!visitor.preVisitDirectory(absolute, attributes(index, node))) {
+                return true;
+            }
+            Deque<Path> dirs = new ArrayDeque<>();
+            Deque<Integer> dirNodes = new ArrayDeque<>();
+            dirs.push(absolute);
+            dirNodes.push(node);
+            while (!dirs.isEmpty()) {
+                Path dir = dirs.pop();
+                int dirNode = dirNodes.pop();
+                for (int child = index.firstChild(dirNode); child != MetadataIndex.NONE; child = index.nextSibling(child)) {
+                    Path entry = dir.resolve(index.name(child));
+                    IndexedAttributes attrs = attributes(index, child);
+                    if (index.isSkipped(child)) {
+                        visitor.visitSkipped(entry, attrs);
+                    } else if (!attrs.isDirectory()) {
+                        visitor.visitFile(entry, attrs);
+                    } else if (visitor.preVisitDirectory(entry, attrs)) {
+                        dirs.push(entry);
+                        dirNodes.push(child);
+                    }
+                }
+            }
+            return true;
+        } finally {
+            rootIndex.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the indexed attributes of a path without touching the disk.
+     *
+     * @param path The file or directory.
+     * @return The {@link IndexedAttributes}, or null if the index cannot answer: disabled, still building, or
+     * the path is outside the allowed directories, missing or skipped by the walker.
+     */
+    @Override
+    public BasicFileAttributes readAttributes(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        RootIndex rootIndex = findRoot(absolute);
+        if (rootIndex == null || !rootIndex.ready) {
+            return null;
+        }
+        rootIndex.lock.readLock().lock();
+        try {
+            int node = rootIndex.locate(absolute);
+            return node == MetadataIndex.NONE ? null : attributes(rootIndex.index, node);
+        } finally {
+            rootIndex.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keeps the index in sync with a file system event. As with the content index, the event kind is only a
+     * hint: the path is re-read on disk, then added, updated or removed with its subtree. A directory that is
+     * new to the index is scanned, and a changed ignore file rescans its directory, since it can hide or reveal
+     * any entry below it. Events that arrive while a root is still being scanned are replayed once it is done.
+     *
+     * @param kind The kind of event
+     * @param path The full path of the affected file or directory
+     */
+    @Override
+    public void onFileChange(WatchEvent.Kind<?> kind, Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        RootIndex rootIndex = enabled ? findRoot(absolute) : null;
+        if (rootIndex == null || absolute.equals(rootIndex.root)) {
+            return;
+        }
+        if (!rootIndex.ready) {
+            rootIndex.pending.add(absolute);
+            if (!rootIndex.ready || !rootIndex.pending.remove(absolute)) {
+                return;
+            }
+        }
+        update(rootIndex, absolute);
+    }
+
+    /**
+     * Rescans a root once the watcher covers it, since entries changed between the first scan and the
+     * registration produced no event. The rescan is queued on the scan thread, after the first scan.
+     *
+     * @param root The allowed directory now watched
+     */
+    @Override
+    public void onWatchStarted(Path root) {
+        RootIndex rootIndex = enabled ? indexes.get(root) : null;
+        if (rootIndex != null) {
+            rescan(rootIndex, root);
+        }
+    }
+
+    /**
+     * Fills the index of an allowed directory with one parallel walk, after recording the attributes of the
+     * directory itself, then replays the events that arrived in the meantime. Nothing else writes to the index before it is ready, so entries are added as they are
+     * visited.
+     *
+     * @param rootIndex The index to fill
+     */
+    private void buildIndex(RootIndex rootIndex) {
+        long start = System.currentTimeMillis();
+        Map<Path, Integer> dirNodes = new ConcurrentHashMap<>();
+        dirNodes.put(rootIndex.root, MetadataIndex.ROOT);
+        try {
+            BasicFileAttributes rootAttrs = Files.readAttributes(rootIndex.root, BasicFileAttributes.class);
+            rootIndex.lock.writeLock().lock();
+            try {
+                rootIndex.index.touch(MetadataIndex.ROOT, rootAttrs.size(), rootAttrs.lastModifiedTime().toMillis());
+            } finally {
+                rootIndex.lock.writeLock().unlock();
+            }
+            scan(rootIndex.root, entry -> {
+                rootIndex.lock.writeLock().lock();
+                try {
+                    put(rootIndex.index, dirNodes, entry);
+                } finally {
+                    rootIndex.lock.writeLock().unlock();
+                }
+            });
+        } catch (Exception e) {
+            log.error("FAILED TO BUILD METADATA INDEX FOR {}", rootIndex.root, e);
+            return;
+        }
+        rootIndex.ready = true;
+        for (Path path : new ArrayList<>(rootIndex.pending)) {
+            if (rootIndex.pending.remove(path)) {
+                update(rootIndex, path);
+            }
+        }
+        log.info("METADATA INDEX READY FOR {} - {} ENTRIES IN {} MS",
+                rootIndex.root, rootIndex.index.size() - 1, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Replaces the subtree of an indexed directory with the result of a walk, and refreshes the directory's own
+     * attributes. The entries are collected first
+     * and applied under one write lock, so that concurrent updates cannot leave them under a removed parent.
+     *
+     * @param rootIndex The index of the root containing the directory
+     * @param dir       The directory to rescan
+     */
+    private void rescan(RootIndex rootIndex, Path dir) {
+        scanExecutor.execute(() -> {
+            Queue<ScannedEntry> entries = new ConcurrentLinkedQueue<>();
+            BasicFileAttributes dirAttrs;
+            try {
+                dirAttrs = Files.readAttributes(dir, BasicFileAttributes.class);
+                scan(dir, entries::add);
+            } catch (IOException e) {
+                log.debug("COULD NOT RESCAN {} - {}", dir, e.getMessage());
+                return;
+            }
+            rootIndex.lock.writeLock().lock();
+            try {
+                int node = rootIndex.locate(dir);
+                if (node == MetadataIndex.NONE || rootIndex.index.type(node) != MetadataIndex.DIRECTORY) {
+                    return;
+                }
+                rootIndex.index.touch(node, dirAttrs.size(), dirAttrs.lastModifiedTime().toMillis());
+                rootIndex.index.clear(node);
+                Map<Path, Integer> dirNodes = new HashMap<>();
+                dirNodes.put(dir, node);
+                for (ScannedEntry entry : entries) {
+                    put(rootIndex.index, dirNodes, entry);
+                }
+            } finally {
+                rootIndex.lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Walks a directory and reports every entry below it, skipped ones included. Directories are reported
+     * before their entries.
+     */
+    private void scan(Path dir, Consumer<ScannedEntry> consumer) throws IOException {
+        fileWalkerService.walk(dir, new FileWalkVisitor() {
+            @Override
+            public boolean preVisitDirectory(Path subdir, BasicFileAttributes attrs) {
+                if (!subdir.equals(dir)) {
+                    consumer.accept(new ScannedEntry(subdir, attrs, false));
+                }
+                return true;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                consumer.accept(new ScannedEntry(file, attrs, false));
+            }
+
+            @Override
+            public void visitSkipped(Path path, BasicFileAttributes attrs) {
+                consumer.accept(new ScannedEntry(path, attrs, true));
+            }
+        });
+    }
+
+    private static void put(MetadataIndex index, Map<Path, Integer> dirNodes, ScannedEntry entry) {
+        BasicFileAttributes attrs = entry.attrs();
+        int node = index.put(dirNodes.get(entry.path().getParent()), entry.path().getFileName().toString(),
+                flagsOf(attrs, entry.skipped()), attrs.size(), attrs.lastModifiedTime().toMillis());
+        if (attrs.isDirectory() && !entry.skipped()) {
+            dirNodes.put(entry.path(), node);
+        }
+    }
+
+    /**
+     * Re-reads one path and its parent directory, whose modification time changes with its entries without an
+     * event of its own, and applies them to the index. Paths whose parent is not indexed, or is skipped, are
+     * left alone: they are ignored, or their parent's own event will scan them.
+     *
+     * @param rootIndex The index of the root containing the path
+     * @param path      The changed path
+     */
+    private void update(RootIndex rootIndex, Path path) {
+        BasicFileAttributes attrs;
+        boolean skipped = false;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attrs.isSymbolicLink()) {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                skipped = attrs.isDirectory();
+            }
+            skipped = skipped || fileWalkerService.isIgnored(path, attrs.isDirectory());
+        } catch (IOException e) {
+            attrs = null;
+        }
+        Path parentPath = path.getParent();
+        BasicFileAttributes parentAttrs = null;
+        try {
+            parentAttrs = Files.readAttributes(parentPath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // The parent is gone too; its own event removes it
+        }
+        String name = path.getFileName().toString();
+        boolean scanDirectory = false;
+        rootIndex.lock.writeLock().lock();
+        try {
+            MetadataIndex index = rootIndex.index;
+            int parent = rootIndex.locate(parentPath);
+            if (parent == MetadataIndex.NONE || index.type(parent) != MetadataIndex.DIRECTORY) {
+                return;
+            }
+            if (parentAttrs != null) {
+                index.touch(parent, parentAttrs.size(), parentAttrs.lastModifiedTime().toMillis());
+            }
+            int node = index.child(parent, name);
+            if (attrs == null) {
+                if (node != MetadataIndex.NONE) {
+                    index.remove(node);
+                }
+                return;
+            }
+            boolean indexedDirectory = node != MetadataIndex.NONE && !index.isSkipped(node)
+                    && index.type(node) == MetadataIndex.DIRECTORY;
+            index.put(parent, name, flagsOf(attrs, skipped), attrs.size(), attrs.lastModifiedTime().toMillis());
+            scanDirectory = attrs.isDirectory() && !skipped && !indexedDirectory;
+        } finally {
+            rootIndex.lock.writeLock().unlock();
+        }
+        if (scanDirectory) {
+            rescan(rootIndex, path);
+        } else if (IGNORE_FILES.contains(name)) {
+            rescan(rootIndex, path.getParent());
+        }
+    }
+
+    private RootIndex findRoot(Path path) {
+        for (RootIndex rootIndex : indexes.values()) {
+            if (path.startsWith(rootIndex.root)) {
+                return rootIndex;
+            }
+        }
+        return null;
+    }
+
+    private static IndexedAttributes attributes(MetadataIndex index, int node) {
+        return new IndexedAttributes(index.type(node), index.size(node), index.modified(node));
+    }
+
+    private static byte flagsOf(BasicFileAttributes attrs, boolean skipped) {
+        byte type = attrs.isDirectory() ? MetadataIndex.DIRECTORY
+                : attrs.isRegularFile() ? MetadataIndex.FILE
+                : MetadataIndex.OTHER;
+        return skipped ? (byte) (type | MetadataIndex.SKIPPED) : type;
+    }
+
+    private record ScannedEntry(Path path, BasicFileAttributes attrs, boolean skipped) {
+    }
+
+    /**
+     * The index of one allowed directory, its lock, and the events received before its first scan finished.
+     */
+    private static final class RootIndex {
+        private final Path root;
+        private final MetadataIndex index = new MetadataIndex();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+        private volatile boolean ready;
+
+        private RootIndex(Path root) {
+            this.root = root;
+        }
+
+        /**
+         * Follows the segments of a path down from the root. Skipped entries and everything below them are
+         * treated as missing. Callers hold the lock.
+         */
+        private int locate(Path path) {
+            if (!path.startsWith(root)) {
+                return MetadataIndex.NONE;
+            }
+            int node = MetadataIndex.ROOT;
+            for (Path segment : root.relativize(path)) {
+                if (segment.toString().isEmpty()) {
+                    continue;
+                }
+                node = index.child(node, segment.toString());
+                if (node == MetadataIndex.NONE || index.isSkipped(node)) {
+                    return MetadataIndex.NONE;
+                }
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mcp.service.impl;
+
+import com.mcp.service.PathLockService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+@Service
+public class PathLockServiceImpl implements PathLockService {
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+
+    public PathLockServiceImpl(@Value("${app.lock.stripes:256}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Runs an action while holding the shared lock of a path's stripe, so it does not overlap a write to the
+     * same file; reads of the same or other files run in parallel.
+     *
+     * @param path   The path to lock.
+     * @param action The action to run.
+     * @return The action's result.
+     */
+    @Override
+    public <T> T withReadLock(Path path, Supplier<T> action) {
+        return withLock(stripeOf(path).readLock(), action);
+    }
+
+    /**
+     * Runs an action while holding the exclusive lock of a path's stripe, serializing it with every other
+     * reader and writer of the same file.
+     *
+     * @param path   The path to lock.
+     * @param action The action to run.
+     * @return The action's result.
+     */
+    @Override
+    public <T> T withWriteLock(Path path, Supplier<T> action) {
+        return withLock(stripeOf(path).writeLock(), action);
+    }
+
+    /**
+     * Runs an action while holding the exclusive locks of several paths. The stripes are taken in index order,
+     * each at most once, so two callers locking overlapping sets cannot deadlock.
+     *
+     * @param paths  The paths to lock.
+     * @param action The action to run.
+     * @return The action's result.
+     */
+    @Override
+    public <T> T withWriteLocks(Collection<Path> paths, Supplier<T> action) {
+        int[] indexes = paths.stream().mapToInt(this::indexOf).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].writeLock().lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[indexes[i]].writeLock().unlock();
+            }
+        }
+    }
+
+    private static <T> T withLock(Lock lock, Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock stripeOf(Path path) {
+        return stripes[indexOf(path)];
+    }
+
+    private int indexOf(Path path) {
+        int hash = path.toAbsolutePath().normalize().hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -1,6 +1,9 @@
 package com.mcp.tool;
 
+import com.mcp.model.ListingOptions;
+import com.mcp.model.TreeOptions;
 import com.mcp.service.DirectoryService;
+import com.mcp.service.GlobService;
 import com.mcp.service.PathService;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -9,6 +12,8 @@ import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -16,6 +21,7 @@ import java.nio.file.Path;
 public class DirectoryTools {
     PathService pathService;
     DirectoryService directoryService;
+    GlobService globService;
 
     /**
      * Create a new directory, including any necessary but nonexistent parent directories.
@@ -30,26 +36,67 @@ public class DirectoryTools {
     }
 
     /**
-     * List the contents of a directory.
+     * List one page of the contents of a directory.
      *
-     * @param path the path of the directory to list; if null or blank, lists the first allowed directory
+     * @param path       the path of the directory to list; if null or blank, lists the first allowed directory
+     * @param pattern    a glob entry names must match
+     * @param sort       the sort key: name, size or mtime
+     * @param descending whether to reverse the sort order
+     * @param offset     the number of sorted entries to skip
+     * @param limit      the maximum number of entries to return
+     * @param details    whether to show each entry's size in bytes and modification time
      * @return a formatted string listing files and directories
      */
-    @Tool(name = "d02_list_directory", description = "List the contents of a directory.")
-    public String listDirectory(@ToolParam(required = false) String path) {
+    @Tool(name = "d02_list_directory", description = "List the contents of a directory. Entries can be filtered by a glob on their name "
+            + "and sorted by name, size or mtime; at most limit entries (default " + ListingOptions.DEFAULT_LIMIT + ") are returned "
+            + "from offset, and a last line gives the next offset when more remain. Set details to show sizes and modification times.")
+    public String listDirectory(@ToolParam(required = false) String path,
+                                @ToolParam(required = false) String pattern,
+                                @ToolParam(required = false) String sort,
+                                @ToolParam(required = false) Boolean descending,
+                                @ToolParam(required = false) Integer offset,
+                                @ToolParam(required = false) Integer limit,
+                                @ToolParam(required = false) Boolean details) {
+        final ListingOptions options;
+        try {
+            options = ListingOptions.of(sort, descending, offset, limit, details);
+        } catch (IllegalArgumentException e) {
+            return "ERROR INVALID SORT: " + sort + " - EXPECTED name, size OR mtime";
+        }
         Path currentPath = (path == null || path.isBlank()) ? pathService.getCurrentWorkingDir() : pathService.validatePath(path);
-        return directoryService.listDirectory(currentPath);
+        PathMatcher nameMatcher = (pattern == null || pattern.isBlank()) ? null : globService.compile(List.of(pattern));
+        return directoryService.listDirectory(currentPath, options, nameMatcher);
     }
 
     /**
-     * Display the directory structure as a JSON tree.
+     * Display the directory structure as a JSON tree, bounded in depth and size. Truncated directories carry a
+     * cursor; passing it back expands that directory from where it stopped.
      *
-     * @param path the path of the directory to display
+     * @param path            the path of the directory to display
+     * @param maxDepth        the number of directory levels to expand
+     * @param maxNodes        the maximum number of entries to return
+     * @param excludePatterns glob patterns of entries to leave out, relative to the displayed directory
+     * @param sizes           whether to add file sizes and, for directories, the files and bytes of their whole subtree
+     * @param cursor          the cursor of a truncated directory to expand instead of the path
      * @return a JSON representation of the directory tree
      */
-    @Tool(name = "d03_directory_tree", description = "Display the directory structure as a JSON tree.")
-    public String directoryTree(@ToolParam(required = false) String path) {
-        Path currentPath = (path == null || path.isBlank()) ? pathService.getCurrentWorkingDir() : pathService.validatePath(path);
-        return directoryService.buildDirectoryTree(currentPath);
+    @Tool(name = "d03_directory_tree", description = "Display the directory structure as a JSON tree. Expansion is limited by maxDepth "
+            + "(default " + TreeOptions.DEFAULT_MAX_DEPTH + ") and maxNodes (default " + TreeOptions.DEFAULT_MAX_NODES + "); a truncated "
+            + "directory has a cursor that can be passed back to expand it. Set sizes to add file sizes and du-style subtree totals.")
+    public String directoryTree(@ToolParam(required = false) String path,
+                                @ToolParam(required = false) Integer maxDepth,
+                                @ToolParam(required = false) Integer maxNodes,
+                                @ToolParam(required = false) List<String> excludePatterns,
+                                @ToolParam(required = false) Boolean sizes,
+                                @ToolParam(required = false) String cursor) {
+        final TreeOptions options;
+        try {
+            options = TreeOptions.of(maxDepth, maxNodes, sizes, cursor);
+        } catch (IllegalArgumentException e) {
+            return "ERROR INVALID CURSOR: " + cursor;
+        }
+        String start = options.path() != null ? options.path() : path;
+        Path currentPath = (start == null || start.isBlank()) ? pathService.getCurrentWorkingDir() : pathService.validatePath(start);
+        return directoryService.buildDirectoryTree(currentPath, options, globService.compile(excludePatterns));
     }
 }
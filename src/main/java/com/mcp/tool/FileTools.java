@@ -1,8 +1,12 @@
 package com.mcp.tool;
 
 import com.mcp.model.EditFileArgs;
+import com.mcp.model.ReadPage;
+import com.mcp.model.SearchOptions;
 import com.mcp.service.FileService;
 import com.mcp.service.FileWatcherService;
+import com.mcp.service.GitService;
+import com.mcp.service.GlobService;
 import com.mcp.service.PathService;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -10,44 +14,91 @@ import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.StandardWatchEventKinds;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = lombok.AccessLevel.PRIVATE, makeFinal = true)
 public class FileTools {
+    private static final int DEFAULT_LINE_WINDOW = 1000;
+    private static final int DEFAULT_RANGE_BYTES = 64 * 1024;
+    private static final int MAX_RANGE_BYTES = 64 * 1024 * 1024;
+    private static final long MAX_LINE = Long.MAX_VALUE - 1;
+
     PathService pathService;
     FileWatcherService fileWatcherService;
     FileService fileService;
+    GlobService globService;
+    GitService gitService;
 
     /**
-     * Tool to read the contents of a file
+     * Tool to read the contents of a file, or only a byte range, a window of lines or the last lines of it
      *
-     * @param path The path to the file
-     * @return The contents of the file, or an error message if an error occurs
+     * @param path      The path to the file
+     * @param offset    The offset of the first byte to read
+     * @param length    The maximum number of bytes to read from the offset
+     * @param startLine The first line to read, starting at 1
+     * @param endLine   The last line to read, inclusive
+     * @param tailLines The number of lines to read from the end of the file
+     * @return The contents of the file or of the requested part, or an error message if an error occurs
      */
-    @Tool(name = "f01_read_file", description = "Read the contents of a file")
-    public String readFile(@ToolParam String path) {
+    @Tool(name = "f01_read_file", description = "Read the contents of a file. "
+            + "Set tailLines to read the last lines, startLine/endLine (1-based, inclusive) to read a window of lines, "
+            + "or offset/length to read a byte range; only the requested part of the file is read.")
+    public String readFile(@ToolParam String path,
+                           @ToolParam(required = false) Long offset,
+                           @ToolParam(required = false) Integer length,
+                           @ToolParam(required = false) Long startLine,
+                           @ToolParam(required = false) Long endLine,
+                           @ToolParam(required = false) Integer tailLines) {
         Path validPath = pathService.validatePath(path);
+        if (tailLines != null) {
+            return fileService.readFileTail(validPath, Math.max(1, tailLines));
+        }
+        if (startLine != null || endLine != null) {
+            long start = startLine == null ? 1 : Math.max(1, startLine);
+            long end = endLine == null
+                    ? start + Math.min(DEFAULT_LINE_WINDOW - 1, MAX_LINE - start)
+                    : Math.min(endLine, MAX_LINE);
+            if (end < start) {
+                return "ERROR INVALID LINE RANGE: " + start + "-" + end;
+            }
+            return fileService.readFileLines(validPath, start, end);
+        }
+        if (offset != null || length != null) {
+            long start = offset == null ? 0 : Math.max(0, offset);
+            int size = length == null ? DEFAULT_RANGE_BYTES : Math.clamp(length, 1, MAX_RANGE_BYTES);
+            return fileService.readFileRange(validPath, start, size);
+        }
         return fileService.readFile(validPath);
     }
 
     /**
-     * Tool to read the contents of multiple files or all files in a directory
+     * Tool to read the contents of multiple files or all files in a directory, one page at a time
      *
-     * @param paths A list of file or directory paths to read. If empty, reads from all allowed directories.
-     * @return The contents of the files, or error messages if any occur
+     * @param paths    A list of file or directory paths to read. If empty, reads from all allowed directories.
+     * @param maxBytes The maximum number of content bytes to return in this page
+     * @param cursor   The continuation token returned by the previous page
+     * @return The contents of the files, or error messages if any occur, and the cursor of the next page if there is more
      */
-    @Tool(name = "f02_read_multiple_files", description = "Read the contents of multiple files or all files in a directory")
-    public String readMultipleFiles(@ToolParam(required = false) List<String> paths) {
+    @Tool(name = "f02_read_multiple_files", description = "Read the contents of multiple files or all files in a directory. "
+            + "Output is paginated by maxBytes (default 1 MiB); when more content is available the response ends with a cursor, "
+            + "pass it back with the same paths to read the next page.")
+    public String readMultipleFiles(@ToolParam(required = false) List<String> paths,
+                                    @ToolParam(required = false) Integer maxBytes,
+                                    @ToolParam(required = false) String cursor) {
+        final ReadPage page;
+        try {
+            page = ReadPage.of(maxBytes, cursor);
+        } catch (IllegalArgumentException e) {
+            return "ERROR INVALID CURSOR: " + cursor;
+        }
         List<String> pathsToRead = (paths == null || paths.isEmpty()) ? pathService.getAllowedDirsAsString() : paths;
         List<Path> validPaths = pathsToRead.stream().map(pathService::validatePath).toList();
-        return fileService.readMultipleFiles(validPaths);
+        return fileService.readMultipleFiles(validPaths, page);
     }
 
     /**
@@ -62,7 +113,7 @@ public class FileTools {
         Path validPath = pathService.validatePath(path);
         String result = fileService.writeFile(validPath, content);
         if (result.startsWith("SUCCESS")) {
-            fileWatcherService.handleFileEvent(StandardWatchEventKinds.ENTRY_MODIFY, validPath);
+            fileWatcherService.notifyFileChange(StandardWatchEventKinds.ENTRY_MODIFY, validPath);
         }
         return result;
     }
@@ -80,8 +131,8 @@ public class FileTools {
         Path validTargetPath = pathService.validatePath(targetPath);
         String result = fileService.moveFile(validSourcePath, validTargetPath);
         if (result.startsWith("SUCCESS")) {
-            fileWatcherService.handleFileEvent(StandardWatchEventKinds.ENTRY_DELETE, validSourcePath);
-            fileWatcherService.handleFileEvent(StandardWatchEventKinds.ENTRY_CREATE, validTargetPath);
+            fileWatcherService.notifyFileChange(StandardWatchEventKinds.ENTRY_DELETE, validSourcePath);
+            fileWatcherService.notifyFileChange(StandardWatchEventKinds.ENTRY_CREATE, validTargetPath);
         }
         return result;
     }
@@ -111,11 +162,7 @@ public class FileTools {
                               @ToolParam String pattern,
                               @ToolParam(required = false) List<String> excludePatterns) {
         Path startPath = (path == null || path.isBlank()) ? pathService.getCurrentWorkingDir() : pathService.validatePath(path);
-        PathMatcher patternMatcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
-        List<PathMatcher> excludeMatchers = (excludePatterns == null) ? Collections.emptyList() : excludePatterns.stream()
-                .map(p -> FileSystems.getDefault().getPathMatcher("glob:" + p))
-                .toList();
-        return fileService.searchFiles(startPath, patternMatcher, excludeMatchers);
+        return fileService.searchFiles(startPath, globService.compile(List.of(pattern)), globService.compile(excludePatterns));
     }
 
     /**
@@ -127,29 +174,116 @@ public class FileTools {
     @Tool(name = "f07_edit_file", description = "Perform a series of text replacements in a file.")
     public String editFile(EditFileArgs editFileArgs) {
         Path validPath = pathService.validatePath(editFileArgs.path());
-        return fileService.editFile(validPath, editFileArgs.edits(), editFileArgs.dryRun());
+        String result = fileService.editFile(validPath, editFileArgs.edits(), editFileArgs.dryRun());
+        if (!result.startsWith("ERROR") && (editFileArgs.dryRun() == null || !editFileArgs.dryRun())) {
+            fileWatcherService.notifyFileChange(StandardWatchEventKinds.ENTRY_MODIFY, validPath);
+        }
+        return result;
     }
 
     /**
      * Tool to get diffs of changed files with the latest commit in the specified directory
      *
-     * @param dirPath The path to the directory to check for changes
+     * @param dirPath  The path to the directory to check for changes
+     * @param nameOnly Whether to list the changed files with their status instead of diffing them
      * @return A unified diff of the changes, or an error message if an error occurs
      */
-    @Tool(name = "f08_get_changes", description = "Get diffs of changed files.")
-    public String getChanges(@ToolParam(required = false) String dirPath) {
+    @Tool(name = "f08_get_changes", description = "Get diffs of changed files. "
+            + "Set nameOnly to true to only list the changed files, one per line as A (added), M (modified) or D (deleted) and the path.")
+    public String getChanges(@ToolParam(required = false) String dirPath,
+                             @ToolParam(required = false) Boolean nameOnly) {
         Path validDirPath = (dirPath == null || dirPath.isBlank()) ? pathService.getCurrentWorkingDir() : pathService.validatePath(dirPath);
-        return fileService.getChanges(validDirPath);
+        if (nameOnly != null && nameOnly) {
+            return gitService.getChangedFiles(validDirPath);
+        }
+        return gitService.getChanges(validDirPath);
     }
 
-    @Tool(name = "f09_search_by_keyword", description = "Search for files containing a specific keyword.")
+    /**
+     * Tool to search for files containing one or more keywords, optionally returning the matching lines grep-style
+     *
+     * @param path              The starting directory path for the search
+     * @param keyword           The keyword to search for within files
+     * @param keywords          Additional keywords to search for in the same pass; results are grouped by keyword
+     * @param regex             Whether the keywords are regular expressions
+     * @param excludePatterns   A list of glob patterns to exclude from the search
+     * @param grep              Whether to return matching lines with line and column numbers instead of file paths
+     * @param contextLines      The number of lines to show before and after each matching line
+     * @param maxResults        The maximum number of matching lines (or files) to return across all keywords
+     * @param maxMatchesPerFile The maximum number of matching lines to return per file and keyword
+     * @return A list of matching file paths or lines, or an error message if an error occurs
+     */
+    @Tool(name = "f09_search_by_keyword", description = "Search for files containing a specific keyword. "
+            + "Pass up to 64 keywords to search for all of them in one traversal (results are grouped by keyword), "
+            + "and set regex to true to treat them as regular expressions. "
+            + "Set grep to true to get matching lines as path:line:column with optional context lines and a match count per file.")
     public String searchByKeyword(@ToolParam(required = false) String path,
-                                  @ToolParam String keyword,
-                                  @ToolParam(required = false) List<String> excludePatterns) {
+                                  @ToolParam(required = false) String keyword,
+                                  @ToolParam(required = false) List<String> keywords,
+                                  @ToolParam(required = false) Boolean regex,
+                                  @ToolParam(required = false) List<String> excludePatterns,
+                                  @ToolParam(required = false) Boolean grep,
+                                  @ToolParam(required = false) Integer contextLines,
+                                  @ToolParam(required = false) Integer maxResults,
+                                  @ToolParam(required = false) Integer maxMatchesPerFile) {
+        List<String> allKeywords = new ArrayList<>();
+        if (keyword != null) {
+            allKeywords.add(keyword);
+        }
+        if (keywords != null) {
+            allKeywords.addAll(keywords);
+        }
+        if (allKeywords.isEmpty() || allKeywords.stream().anyMatch(k -> k == null || k.isEmpty())) {
+            return "Keyword is empty.";
+        }
+        List<String> distinctKeywords = allKeywords.stream().distinct().toList();
+        String keywordsError = SearchOptions.checkKeywords(distinctKeywords);
+        if (keywordsError != null) {
+            return keywordsError;
+        }
         Path startPath = (path == null || path.isBlank()) ? pathService.getCurrentWorkingDir() : pathService.validatePath(path);
-        List<PathMatcher> excludeMatchers = (excludePatterns == null) ? Collections.emptyList() : excludePatterns.stream()
-                .map(p -> FileSystems.getDefault().getPathMatcher("glob:" + p))
+        SearchOptions options = SearchOptions.of(grep, regex, contextLines, maxResults, maxMatchesPerFile);
+        return fileService.searchByKeyword(startPath, distinctKeywords, globService.compile(excludePatterns), options);
+    }
+
+    /**
+     * Tool to apply text replacements to several files as one transaction, with an option for a dry run
+     *
+     * @param files  The files to edit, each with its path and list of Edit objects
+     * @param dryRun Whether to only return the combined diff without modifying any file
+     * @return The combined unified diff of all files, or the errors that aborted the batch
+     */
+    @Tool(name = "f10_batch_edit_files", description = "Perform text replacements in several files at once. "
+            + "All files are validated first and either every file is changed or none is. Returns one combined diff.")
+    public String batchEditFiles(@ToolParam List<EditFileArgs> files, @ToolParam(required = false) Boolean dryRun) {
+        if (files == null || files.isEmpty()) {
+            return "No files to edit.";
+        }
+        List<EditFileArgs> validFiles = files.stream()
+                .map(file -> new EditFileArgs(pathService.validatePath(file.path()).toString(), file.edits(), dryRun))
                 .toList();
-        return fileService.searchByKeyword(startPath, keyword, excludeMatchers);
+        String result = fileService.editFiles(validFiles, dryRun);
+        if (!result.startsWith("ERROR") && (dryRun == null || !dryRun)) {
+            validFiles.forEach(file -> fileWatcherService.notifyFileChange(StandardWatchEventKinds.ENTRY_MODIFY, Path.of(file.path())));
+        }
+        return result;
+    }
+
+    /**
+     * Tool to get information about several files or directories at once
+     *
+     * @param paths  The paths to the files or directories
+     * @param cached Whether to answer from the in-memory metadata index when it covers a path
+     * @return A JSON array with the information of each path, or an error for each path that could not be read
+     */
+    @Tool(name = "f11_get_files_info", description = "Get information about several files or directories at once as a compact JSON array: "
+            + "type, size, modified/created/accessed times, permissions, owner and group. "
+            + "Set cached to answer from the in-memory metadata index where possible, with only type, size and modified time.")
+    public String getFilesInfo(@ToolParam List<String> paths, @ToolParam(required = false) Boolean cached) {
+        if (paths == null || paths.isEmpty()) {
+            return "[]";
+        }
+        List<Path> validPaths = paths.stream().map(pathService::validatePath).toList();
+        return fileService.getFilesInfo(validPaths, cached != null && cached);
     }
 }
@@ -2,36 +2,38 @@ package com.mcp.util;
 
 import lombok.experimental.UtilityClass;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 @UtilityClass
 public class AppendUtils {
 
     /**
-     * Append the content of a file to the provided StringBuilder
+     * Append file content to the results with formatting
      *
      * @param builder The StringBuilder to append to
-     * @param file    The file whose content to append
+     * @param path    The path of the file
+     * @param content The content of the file
      */
-    public void appendFileContent(StringBuilder builder, Path file) {
-        try {
-            String content = Files.readString(file);
-            appendContent(builder, file, content);
-        } catch (Exception e) {
-            appendError(builder, file, e);
-        }
+    public void appendContent(StringBuilder builder, Path path, String content) {
+        builder.append(path.toString())
+                .append(":\n")
+                .append(content)
+                .append("\n\n---\n");
     }
 
     /**
-     * Append file content to the results with formatting
+     * Append part of a file's content to the results, with the byte range it covers
      *
      * @param builder The StringBuilder to append to
      * @param path    The path of the file
-     * @param content The content of the file
+     * @param from    The offset of the first byte of the part
+     * @param to      The offset after the last byte of the part
+     * @param size    The size of the file
+     * @param content The content of the part
      */
-    public void appendContent(StringBuilder builder, Path path, String content) {
+    public void appendChunk(StringBuilder builder, Path path, long from, long to, long size, String content) {
         builder.append(path.toString())
+                .append(" (bytes ").append(from).append('-').append(to).append(" of ").append(size).append(')')
                 .append(":\n")
                 .append(content)
                 .append("\n\n---\n");
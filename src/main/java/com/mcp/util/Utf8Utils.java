@@ -0,0 +1,40 @@
+package com.mcp.util;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Utf8Utils {
+
+    /**
+     * Find the length of the longest prefix of a buffer that does not end in the middle of a UTF-8 character
+     *
+     * @param bytes  The buffer
+     * @param length The number of valid bytes in the buffer
+     * @return The length of the prefix
+     */
+    public int completeLength(byte[] bytes, int length) {
+        for (int i = length - 1; i >= Math.max(0, length - 4); i--) {
+            int b = bytes[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                int expected = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+                return i + expected <= length ? length : i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Find the index of the first byte of a buffer that starts a UTF-8 character
+     *
+     * @param bytes  The buffer
+     * @param length The number of valid bytes in the buffer
+     * @return The index of the first character start, skipping at most three continuation bytes
+     */
+    public int firstCharacter(byte[] bytes, int length) {
+        int i = 0;
+        while (i < Math.min(length, 3) && (bytes[i] & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,216 @@
+package com.mcp.walk;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A set of globs compiled into a single matcher that is true if any glob matches.
+ * <p>
+ * Globs follow the {@code glob:} syntax of {@link java.nio.file.FileSystem#getPathMatcher}. The common shapes
+ * are answered without regular expressions: exact paths through a hash set, {@code **}{@code /name},
+ * {@code **.ext}, {@code *.ext} and {@code **}{@code /*.ext} through suffix checks and {@code dir/**} through
+ * prefix checks. All other globs are merged into one alternation, so a path is run through at most one regular
+ * expression however many globs the set holds.
+ */
+public final class GlobSet implements PathMatcher {
+    public static final GlobSet NONE = new GlobSet(Set.of(), new String[0], new String[0], new String[0], new String[0], null);
+
+    private final Set<String> exact;
+    private final String[] suffixes;
+    private final String[] nameSuffixes;
+    private final String[] nestedNameSuffixes;
+    private final String[] prefixes;
+    private final Pattern combined;
+
+    private GlobSet(Set<String> exact, String[] suffixes, String[] nameSuffixes, String[] nestedNameSuffixes,
+                    String[] prefixes, Pattern combined) {
+        this.exact = exact;
+        this.suffixes = suffixes;
+        this.nameSuffixes = nameSuffixes;
+        this.nestedNameSuffixes = nestedNameSuffixes;
+        this.prefixes = prefixes;
+        this.combined = combined;
+    }
+
+    /**
+     * Compiles a list of globs.
+     *
+     * @param globs the globs, without the {@code glob:} prefix
+     * @return the compiled set, or {@link #NONE} if the list is empty
+     * @throws PatternSyntaxException if a glob is invalid
+     */
+    public static GlobSet compile(List<String> globs) {
+        if (globs == null || globs.isEmpty()) {
+            return NONE;
+        }
+        Set<String> exact = new HashSet<>();
+        List<String> suffixes = new ArrayList<>();
+        List<String> nameSuffixes = new ArrayList<>();
+        List<String> nestedNameSuffixes = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        StringJoiner alternation = new StringJoiner("|");
+        for (String glob : globs) {
+            if (isLiteral(glob)) {
+                exact.add(glob);
+            } else if (glob.startsWith("**/") && isLiteral(glob.substring(3))) {
+                suffixes.add(glob.substring(2));
+            } else if (glob.startsWith("**") && isLiteral(glob.substring(2))) {
+                suffixes.add(glob.substring(2));
+            } else if (glob.startsWith("*") && isLiteralName(glob.substring(1))) {
+                nameSuffixes.add(glob.substring(1));
+            } else if (glob.startsWith("**/*") && isLiteralName(glob.substring(4))) {
+                nestedNameSuffixes.add(glob.substring(4));
+            } else if (glob.endsWith("/**") && isLiteral(glob.substring(0, glob.length() - 3))) {
+                prefixes.add(glob.substring(0, glob.length() - 2));
+            } else {
+                alternation.add("(?:" + toRegex(glob) + ")");
+            }
+        }
+        return new GlobSet(Set.copyOf(exact), suffixes.toArray(String[]::new), nameSuffixes.toArray(String[]::new),
+                nestedNameSuffixes.toArray(String[]::new), prefixes.toArray(String[]::new),
+                alternation.length() == 0 ? null : Pattern.compile(alternation.toString()));
+    }
+
+    @Override
+    public boolean matches(Path path) {
+        String text = path.toString();
+        return matches(File.separatorChar == '/' ? text : text.replace(File.separatorChar, '/'));
+    }
+
+    /**
+     * Matches a path string that uses {@code /} separators.
+     *
+     * @param path the path
+     * @return true if any glob of the set matches the whole path
+     */
+    public boolean matches(String path) {
+        if (exact.contains(path)) {
+            return true;
+        }
+        for (String suffix : suffixes) {
+            if (path.endsWith(suffix)) {
+                return true;
+            }
+        }
+        if (nameSuffixes.length > 0 || nestedNameSuffixes.length > 0) {
+            int slash = path.lastIndexOf('/');
+            String[] candidates = slash < 0 ? nameSuffixes : nestedNameSuffixes;
+            for (String suffix : candidates) {
+                if (path.endsWith(suffix) && path.length() - suffix.length() > slash) {
+                    return true;
+                }
+            }
+        }
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return combined != null && combined.matcher(path).matches();
+    }
+
+    public boolean isEmpty() {
+        return this == NONE;
+    }
+
+    private static boolean isLiteral(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLiteralName(String s) {
+        return isLiteral(s) && s.indexOf('/') < 0;
+    }
+
+    /**
+     * Translates a glob into a regular expression with the same semantics as the default file system's
+     * {@code glob:} matcher: {@code *} and {@code ?} stay within one path segment, {@code **} crosses segments,
+     * {@code [...]} never matches a separator and {@code {a,b}} is a group of alternatives.
+     */
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            switch (c) {
+                case '\\' -> {
+                    if (i == glob.length()) {
+                        throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                    }
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i++))));
+                }
+                case '*' -> {
+                    if (i < glob.length() && glob.charAt(i) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '[' -> i = appendClass(glob, i, regex);
+                case '{' -> {
+                    if (inGroup) {
+                        throw new PatternSyntaxException("Cannot nest groups", glob, i - 1);
+                    }
+                    regex.append("(?:(?:");
+                    inGroup = true;
+                }
+                case '}' -> {
+                    if (inGroup) {
+                        regex.append("))");
+                        inGroup = false;
+                    } else {
+                        regex.append("\\}");
+                    }
+                }
+                case ',' -> regex.append(inGroup ? ")|(?:" : ",");
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        if (inGroup) {
+            throw new PatternSyntaxException("Missing '}'", glob, glob.length() - 1);
+        }
+        return regex.toString();
+    }
+
+    private static int appendClass(String glob, int i, StringBuilder regex) {
+        regex.append("[[^/]&&[");
+        if (i < glob.length() && glob.charAt(i) == '!') {
+            regex.append('^');
+            i++;
+        } else if (i < glob.length() && glob.charAt(i) == '^') {
+            regex.append("\\^");
+            i++;
+        }
+        while (i < glob.length()) {
+            char c = glob.charAt(i++);
+            if (c == ']') {
+                regex.append("]]");
+                return i;
+            }
+            if (c == '/') {
+                throw new PatternSyntaxException("Explicit 'name separator' in class", glob, i - 1);
+            }
+            if (c == '\\' || c == '[' || c == '&' && i < glob.length() && glob.charAt(i) == '&') {
+                regex.append('\\');
+            }
+            regex.append(c);
+        }
+        throw new PatternSyntaxException("Missing ']'", glob, glob.length() - 1);
+    }
+}
@@ -0,0 +1,168 @@
+package com.mcp.walk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled rules of the {@code .gitignore} and {@code .ignore} files of one directory.
+ * <p>
+ * Supports the usual gitignore syntax: comments, {@code !} negation, trailing {@code /} for directories only,
+ * patterns anchored to the directory when they contain a slash, and the {@code *}, {@code ?}, {@code [...]}
+ * and {@code **} wildcards. Literal names and {@code *.ext} patterns are matched without regular expressions.
+ * Later rules take precedence over earlier ones, as in git.
+ */
+public final class IgnoreRules {
+    public static final IgnoreRules EMPTY = new IgnoreRules(List.of());
+
+    private final List<Rule> rules;
+
+    private IgnoreRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Compiles the lines of one or more ignore files.
+     *
+     * @param lines the raw lines
+     * @return the compiled rules, or {@link #EMPTY} if there are none
+     */
+    public static IgnoreRules parse(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String raw : lines) {
+            Rule rule = Rule.parse(raw);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules.isEmpty() ? EMPTY : new IgnoreRules(List.copyOf(rules));
+    }
+
+    /**
+     * Matches a path against the rules.
+     *
+     * @param relativePath the path relative to the directory holding the ignore files, with {@code /} separators
+     * @param name         the last segment of the path
+     * @param directory    whether the path is a directory
+     * @return TRUE if the path is ignored, FALSE if a negated rule re-includes it, or null if no rule matches
+     */
+    public Boolean match(String relativePath, String name, boolean directory) {
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if ((!rule.directoryOnly || directory) && rule.matches(relativePath, name)) {
+                return !rule.negated;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    private record Rule(boolean negated, boolean directoryOnly, boolean anchored, String literal, String suffix, Pattern pattern) {
+        static Rule parse(String raw) {
+            String line = stripTrailingSpaces(raw);
+            if (line.isEmpty() || line.startsWith("#")) {
+                return null;
+            }
+            boolean negated = line.startsWith("!");
+            if (negated || line.startsWith("\\!") || line.startsWith("\\#")) {
+                line = line.substring(1);
+            }
+            boolean directoryOnly = line.endsWith("/");
+            if (directoryOnly) {
+                line = line.substring(0, line.length() - 1);
+            }
+            boolean anchored = line.contains("/");
+            if (line.startsWith("/")) {
+                line = line.substring(1);
+            }
+            if (line.isEmpty()) {
+                return null;
+            }
+            if (!anchored && isLiteral(line)) {
+                return new Rule(negated, directoryOnly, false, line, null, null);
+            }
+            if (!anchored && line.startsWith("*") && isLiteral(line.substring(1))) {
+                return new Rule(negated, directoryOnly, false, null, line.substring(1), null);
+            }
+            return new Rule(negated, directoryOnly, anchored, null, null, Pattern.compile(toRegex(line)));
+        }
+
+        boolean matches(String relativePath, String name) {
+            if (literal != null) {
+                return literal.equals(name);
+            }
+            if (suffix != null) {
+                return name.endsWith(suffix);
+            }
+            return pattern.matcher(anchored ? relativePath : name).matches();
+        }
+
+        private static boolean isLiteral(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '*' || c == '?' || c == '[' || c == '\\' || c == '/') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String stripTrailingSpaces(String line) {
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+                end--;
+            }
+            return line.substring(0, end);
+        }
+
+        /**
+         * Translates a gitignore glob into a regular expression matched against a whole relative path or name.
+         */
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int i = 0;
+            while (i < glob.length()) {
+                char c = glob.charAt(i);
+                if (glob.startsWith("**/", i) && (i == 0 || glob.charAt(i - 1) == '/')) {
+                    regex.append("(?:.*/)?");
+                    i += 3;
+                } else if (glob.startsWith("/**", i) && i + 3 == glob.length()) {
+                    regex.append("/.*");
+                    i += 3;
+                } else if (glob.startsWith("**", i)) {
+                    regex.append(".*");
+                    i += 2;
+                } else if (c == '*') {
+                    regex.append("[^/]*");
+                    i++;
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                    i++;
+                } else if (c == '[') {
+                    int close = glob.indexOf(']', i + 2);
+                    if (close < 0) {
+                        regex.append("\\[");
+                        i++;
+                    } else {
+                        String set = glob.substring(i + 1, close);
+                        if (set.startsWith("!")) {
+                            set = "^" + set.substring(1);
+                        }
+                        regex.append('[').append(set.replace("\\", "\\\\")).append(']');
+                        i = close + 1;
+                    }
+                } else if (c == '\\' && i + 1 < glob.length()) {
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i + 1))));
+                    i += 2;
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                    i++;
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
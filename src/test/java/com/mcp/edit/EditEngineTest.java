@@ -0,0 +1,145 @@
+package com.mcp.edit;
+
+import com.mcp.model.Edit;
+import com.mcp.model.EditResult;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditEngineTest {
+    private static final Path FILE = Path.of("/work/file.txt");
+
+    @Test
+    void replacesASingleOccurrence() {
+        EditResult result = apply("alpha\nbeta\ngamma\n", new Edit("beta", "BETA"));
+
+        assertNull(result.getError());
+        assertEquals("alpha\nBETA\ngamma\n", text(result.getModifiedContent()));
+        assertEquals(1, result.getSpans().size());
+        assertEquals(6, result.getSpans().getFirst().start());
+        assertEquals(10, result.getSpans().getFirst().end());
+    }
+
+    @Test
+    void locatesEveryEditInTheOriginalContent() {
+        EditResult result = apply("one two three", new Edit("two", "three"), new Edit("three", "four"), new Edit("one", ""));
+
+        assertNull(result.getError());
+        assertEquals(" three four", text(result.getModifiedContent()));
+        assertEquals(List.of(0, 4, 8), result.getSpans().stream().map(EditSpan::start).toList());
+    }
+
+    @Test
+    void deletesWhenTheNewTextIsNull() {
+        EditResult result = apply("keep drop keep", new Edit(" drop", null));
+
+        assertEquals("keep keep", text(result.getModifiedContent()));
+    }
+
+    @Test
+    void copiesBytesOutsideTheEditsUnchanged() {
+        byte[] content = concat("caf".getBytes(StandardCharsets.US_ASCII), new byte[]{(byte) 0xE9, (byte) 0xFF},
+                " old €".getBytes(StandardCharsets.UTF_8));
+
+        EditResult result = EditEngine.apply(FILE, content, List.of(new Edit("old", "néw")));
+
+        byte[] expected = concat("caf".getBytes(StandardCharsets.US_ASCII), new byte[]{(byte) 0xE9, (byte) 0xFF},
+                " néw €".getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals(expected, result.getModifiedContent());
+        assertSame(content, result.getOriginalContent());
+    }
+
+    @Test
+    void convertsLineBreaksToThoseOfTheFile() {
+        EditResult result = apply("a\r\nb\r\nc\r\n", new Edit("a\nb\n", "x\ny\nz\n"));
+
+        assertNull(result.getError());
+        assertEquals("x\r\ny\r\nz\r\nc\r\n", text(result.getModifiedContent()));
+    }
+
+    @Test
+    void keepsLineFeedsInFilesWithoutCarriageReturns() {
+        EditResult result = apply("a\nb\n", new Edit("a\r\nb", "c\r\nd"));
+
+        assertEquals("c\nd\n", text(result.getModifiedContent()));
+    }
+
+    @Test
+    void rejectsMissingText() {
+        EditResult result = apply("alpha beta", new Edit("beta", "b"), new Edit("delta", "d"));
+
+        assertTrue(result.getError().startsWith("ERROR: TEXT TO REPLACE NOT FOUND IN FILE: "), result.getError());
+        assertTrue(result.getError().endsWith("TEXT: delta"));
+        assertNull(result.getModifiedContent());
+    }
+
+    @Test
+    void rejectsAmbiguousText() {
+        EditResult single = apply("x = 1; x = 1;", new Edit("x = 1;", "x = 2;"));
+        EditResult several = apply("x = 1; x = 1; y", new Edit("y", "z"), new Edit("x = 1;", "x = 2;"));
+
+        assertTrue(single.getError().startsWith("ERROR: TEXT TO REPLACE FOUND 2 TIMES IN FILE: "), single.getError());
+        assertTrue(several.getError().startsWith("ERROR: TEXT TO REPLACE FOUND 2 TIMES IN FILE: "), several.getError());
+    }
+
+    @Test
+    void rejectsOverlappingEdits() {
+        EditResult result = apply("abcdef", new Edit("abcd", "1"), new Edit("cdef", "2"));
+
+        assertEquals("ERROR: OVERLAPPING EDITS IN FILE: " + FILE + " - AT BYTES 0 AND 2", result.getError());
+    }
+
+    @Test
+    void acceptsAdjacentEdits() {
+        EditResult result = apply("abcdef", new Edit("abc", "1"), new Edit("def", "2"));
+
+        assertEquals("12", text(result.getModifiedContent()));
+    }
+
+    @Test
+    void rejectsEmptyOldTextAndMissingEdits() {
+        assertTrue(apply("abc", new Edit("", "x")).getError().startsWith("ERROR: TEXT TO REPLACE IS EMPTY"));
+        assertTrue(EditEngine.apply(FILE, new byte[0], List.of()).getError().startsWith("ERROR: NO EDITS GIVEN"));
+        assertTrue(EditEngine.apply(FILE, new byte[0], null).getError().startsWith("ERROR: NO EDITS GIVEN"));
+    }
+
+    @Test
+    void locatesLargeOldTextsOneByOne() {
+        String first = "first block " + "a".repeat(3000) + "\n";
+        String second = "second block " + "b".repeat(3000) + "\n";
+        String content = "head\n" + first + "middle\n" + second + "tail\n";
+
+        EditResult result = apply(content, new Edit(second, "2\n"), new Edit(first, "1\n"));
+        EditResult ambiguous = apply(content + first, new Edit(second, "2\n"), new Edit(first, "1\n"));
+
+        assertEquals("head\n1\nmiddle\n2\ntail\n", text(result.getModifiedContent()));
+        assertTrue(ambiguous.getError().startsWith("ERROR: TEXT TO REPLACE FOUND 2 TIMES"), ambiguous.getError());
+    }
+
+    private static EditResult apply(String content, Edit... edits) {
+        return EditEngine.apply(FILE, content.getBytes(StandardCharsets.UTF_8), Arrays.asList(edits));
+    }
+
+    private static String text(byte[] content) {
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        byte[] result = new byte[0];
+        for (byte[] part : parts) {
+            int length = result.length;
+            result = Arrays.copyOf(result, length + part.length);
+            System.arraycopy(part, 0, result, length, part.length);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+package com.mcp.git;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parses the index files under {@code src/test/resources/com/mcp/git}, written by git for the fixture repository:
+ * {@code index-v2} as staged, {@code index-v3} after {@code git update-index --skip-worktree src/main/Util.java},
+ * and {@code index-v4} after {@code git update-index --index-version 4}.
+ */
+class GitIndexTest {
+
+    @Test
+    void parsesVersion2() throws Exception {
+        GitIndex index = parse("index-v2");
+
+        assertEntries(index);
+        assertFalse(index.entries().get("src/main/Util.java").skipWorktree());
+    }
+
+    @Test
+    void parsesExtendedFlagsOfVersion3() throws Exception {
+        GitIndex index = parse("index-v3");
+
+        assertEntries(index);
+        assertTrue(index.entries().get("src/main/Util.java").skipWorktree());
+        assertFalse(index.entries().get("src/main/App.java").skipWorktree());
+    }
+
+    @Test
+    void parsesPrefixCompressedPathsOfVersion4() throws Exception {
+        GitIndex index = parse("index-v4");
+
+        assertEntries(index);
+        assertTrue(index.entries().get("src/main/Util.java").skipWorktree());
+    }
+
+    @Test
+    void trustsStatDataOnlyWhenOlderThanTheIndex() throws Exception {
+        GitIndex.Entry entry = parse("index-v2").entries().get("run.sh");
+        GitIndex index = GitIndex.parse(read("index-v2"), entry.mtimeSeconds() + 1);
+        GitIndex racy = GitIndex.parse(read("index-v2"), entry.mtimeSeconds());
+
+        assertTrue(index.isStatClean(entry, 18, entry.mtimeSeconds(), entry.mtimeNanos()));
+        assertFalse(index.isStatClean(entry, 19, entry.mtimeSeconds(), entry.mtimeNanos()));
+        assertFalse(index.isStatClean(entry, 18, entry.mtimeSeconds() + 1, entry.mtimeNanos()));
+        assertFalse(racy.isStatClean(entry, 18, entry.mtimeSeconds(), entry.mtimeNanos()));
+    }
+
+    @Test
+    void rejectsInvalidFiles() throws Exception {
+        byte[] data = read("index-v2");
+        byte[] version5 = data.clone();
+        version5[7] = 5;
+
+        assertThrows(IOException.class, () -> GitIndex.parse(new byte[]{'D', 'I', 'R'}, 0));
+        assertThrows(IOException.class, () -> GitIndex.parse(version5, 0));
+        assertThrows(IOException.class, () -> GitIndex.parse(Arrays.copyOf(data, 100), 0));
+    }
+
+    private static void assertEntries(GitIndex index) {
+        Map<String, GitIndex.Entry> entries = index.entries();
+        assertEquals(List.of("docs/readme.md", "link", "notes.txt", "run.sh", "src/main/App.java", "src/main/Util.java"),
+                entries.keySet().stream().sorted().toList());
+        assertEntry(entries.get("docs/readme.md"), TreeEntry.MODE_FILE, "9c1b3f46d48023b4ffcc5331a2cad3993c93f275", 14);
+        assertEntry(entries.get("link"), TreeEntry.MODE_SYMLINK, "d669de961167dee328d2efe8d93d2f54e39ae72d", 9);
+        assertEntry(entries.get("notes.txt"), TreeEntry.MODE_FILE, "1dd7e4dafc0111f02189d82fa667878d96eac4b1", 5297);
+        assertEntry(entries.get("run.sh"), TreeEntry.MODE_EXECUTABLE, "4163036efa65bd4a469e752267498f01ea36a55c", 18);
+        assertEntry(entries.get("src/main/App.java"), TreeEntry.MODE_FILE, "07242adb2082c7b15e6cbd556595df28c5b27007", 37);
+        assertEntry(entries.get("src/main/Util.java"), TreeEntry.MODE_FILE, "b44954ffa26916de2b320be674e2aafa5b2275e9", 15);
+    }
+
+    private static void assertEntry(GitIndex.Entry entry, int mode, String id, int size) {
+        assertEquals(mode, entry.mode());
+        assertEquals(id, entry.id());
+        assertEquals(size, entry.size());
+        assertEquals(0, entry.stage());
+        assertTrue(entry.mtimeSeconds() > 0);
+    }
+
+    private static GitIndex parse(String name) throws IOException, URISyntaxException {
+        return GitIndex.parse(read(name), Long.MAX_VALUE);
+    }
+
+    private static byte[] read(String name) throws IOException, URISyntaxException {
+        return Files.readAllBytes(Path.of(GitIndexTest.class.getResource(name).toURI()));
+    }
+}
@@ -0,0 +1,143 @@
+package com.mcp.git;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Reads the git-generated repository under {@code src/test/resources/com/mcp/git/repo}. Its four commits on
+ * {@code main} change {@code notes.txt}, {@code src/main/App.java} and {@code docs/readme.md}; {@code v1} is an
+ * annotated tag on the second commit, which {@code origin/main} (a packed ref) also points to and which is the
+ * configured upstream of {@code main}. All objects are packed except those of the fourth commit, which are loose,
+ * and {@code main} is both a loose ref (fourth commit) and a stale packed ref (third commit).
+ */
+class GitRepositoryTest {
+    private static final String FIRST = "649b66c1e9649662ba55e905787a64b91f6c6dff";
+    private static final String SECOND = "5dfabcb8630eb7a1a8a28741dd9a070bf5992988";
+    private static final String FOURTH = "123cedeaa142bc52c6587910ee6988a54cfb1ef7";
+    private static final String TAG = "96d9d8395bc4a43d90478040077b0626003231cd";
+
+    @TempDir
+    Path tempDir;
+
+    private Path workTree;
+
+    @BeforeEach
+    void copyRepository() throws Exception {
+        workTree = tempDir.resolve("work");
+        Path source = Path.of(GitRepositoryTest.class.getResource("repo").toURI());
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : files.toList()) {
+                Path target = workTree.resolve(".git").resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(file, target);
+                }
+            }
+        }
+        Files.createDirectories(workTree.resolve("src/main"));
+    }
+
+    @Test
+    void findsTheRepositoryFromANestedPath() throws IOException {
+        GitRepository repository = GitRepository.find(workTree.resolve("src/main/App.java"));
+
+        assertNotNull(repository);
+        assertEquals(workTree.toAbsolutePath(), repository.workTree());
+        assertNull(GitRepository.find(tempDir));
+    }
+
+    @Test
+    void findsALinkedWorkTreeThroughItsGitFile() throws IOException {
+        Path linked = Files.createDirectories(tempDir.resolve("linked"));
+        Files.writeString(linked.resolve(".git"), "gitdir: ../work/.git\n");
+
+        GitRepository repository = GitRepository.find(linked);
+
+        assertNotNull(repository);
+        assertEquals(FOURTH, repository.resolve("HEAD"));
+    }
+
+    @Test
+    void resolvesLooseRefsBeforePackedRefs() throws IOException {
+        GitRepository repository = GitRepository.find(workTree);
+
+        assertEquals(FOURTH, repository.resolve("HEAD"));
+        assertEquals(FOURTH, repository.resolve("main"));
+        assertEquals(SECOND, repository.resolve("origin/main"));
+        assertEquals(TAG, repository.resolve("v1"));
+        assertNull(repository.resolve("develop"));
+    }
+
+    @Test
+    void comparesAgainstTheConfiguredUpstream() throws IOException {
+        assertEquals(SECOND, GitRepository.find(workTree).baseCommit("develop"));
+    }
+
+    @Test
+    void fallsBackToThePeeledFallbackRefThenHead() throws IOException {
+        Files.writeString(workTree.resolve(".git/config"), "[core]\n\tbare = false\n");
+        GitRepository repository = GitRepository.find(workTree);
+
+        assertEquals(SECOND, repository.baseCommit("v1"));
+        assertEquals(FOURTH, repository.baseCommit("develop"));
+    }
+
+    @Test
+    void flattensTreesWithModes() throws IOException {
+        GitRepository repository = GitRepository.find(workTree);
+
+        Map<String, TreeEntry> tree = repository.tree(FOURTH);
+
+        assertEquals(Map.of(
+                "docs/readme.md", new TreeEntry(TreeEntry.MODE_FILE, "9c1b3f46d48023b4ffcc5331a2cad3993c93f275"),
+                "link", new TreeEntry(TreeEntry.MODE_SYMLINK, "d669de961167dee328d2efe8d93d2f54e39ae72d"),
+                "notes.txt", new TreeEntry(TreeEntry.MODE_FILE, "1dd7e4dafc0111f02189d82fa667878d96eac4b1"),
+                "run.sh", new TreeEntry(TreeEntry.MODE_EXECUTABLE, "4163036efa65bd4a469e752267498f01ea36a55c"),
+                "src/main/App.java", new TreeEntry(TreeEntry.MODE_FILE, "07242adb2082c7b15e6cbd556595df28c5b27007"),
+                "src/main/Util.java", new TreeEntry(TreeEntry.MODE_FILE, "b44954ffa26916de2b320be674e2aafa5b2275e9")
+        ), tree);
+        assertEquals("d0fa60edab3510b80d03fa4af708bea7a61cc4cd", repository.tree(FIRST).get("docs/readme.md").id());
+        assertEquals("aae7efdbc4628ff95190f40b8c8b1ad329cd4ff2", repository.tree(SECOND).get("notes.txt").id());
+    }
+
+    @Test
+    void readsLooseAndPackedBlobs() throws IOException {
+        GitRepository repository = GitRepository.find(workTree);
+
+        assertEquals("# Docs\n\nMore.\n", new String(repository.blob("9c1b3f46d48023b4ffcc5331a2cad3993c93f275"), StandardCharsets.UTF_8));
+        assertEquals("#!/bin/sh\necho hi\n", new String(repository.blob("4163036efa65bd4a469e752267498f01ea36a55c"), StandardCharsets.UTF_8));
+        assertEquals("notes.txt", new String(repository.blob("d669de961167dee328d2efe8d93d2f54e39ae72d"), StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> repository.blob(FOURTH));
+    }
+
+    @Test
+    void readsTheIndex() throws IOException {
+        GitIndex index = GitRepository.find(workTree).index();
+
+        assertEquals(6, index.entries().size());
+        assertEquals("9c1b3f46d48023b4ffcc5331a2cad3993c93f275", index.entries().get("docs/readme.md").id());
+    }
+
+    @Test
+    void readsTheConfiguration() throws IOException {
+        Map<String, String> config = GitRepository.find(workTree).config();
+
+        assertEquals("origin", config.get("branch.main.remote"));
+        assertEquals("refs/heads/main", config.get("branch.main.merge"));
+        assertEquals("true", config.get("core.filemode"));
+    }
+}
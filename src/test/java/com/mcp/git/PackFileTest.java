@@ -0,0 +1,139 @@
+package com.mcp.git;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads the packs of the fixtures under {@code src/test/resources/com/mcp/git}, which were written by git:
+ * {@code repo/objects/pack} by {@code git repack -adf} and holds {@code OFS_DELTA} entries, and
+ * {@code refdelta/pack} by {@code git rev-list --objects --all | git pack-objects} and holds {@code REF_DELTA}
+ * entries. Every object read is checked against its id.
+ */
+class PackFileTest {
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String[] TYPE_NAMES = {null, "commit", "tree", "blob", "tag"};
+    private static final String NOTES_V2 = "aae7efdbc4628ff95190f40b8c8b1ad329cd4ff2";
+    private static final String NOTES_V3 = "1dd7e4dafc0111f02189d82fa667878d96eac4b1";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsEveryObjectOfAPackWithOffsetDeltas() throws Exception {
+        assertEquals(21, readAllObjects(resource("repo/objects"), MappedFile.WINDOW_SHIFT));
+    }
+
+    @Test
+    void readsEveryObjectOfAPackWithRefDeltas() throws Exception {
+        assertEquals(21, readAllObjects(resource("refdelta"), MappedFile.WINDOW_SHIFT));
+    }
+
+    @Test
+    void readsObjectsSpanningMappedWindows() throws Exception {
+        assertEquals(21, readAllObjects(resource("repo/objects"), 6));
+        assertEquals(21, readAllObjects(resource("refdelta"), 7));
+    }
+
+    @Test
+    void resolvesDeltaChainsToTheFullContent() throws Exception {
+        ObjectDatabase database = new ObjectDatabase(resource("repo/objects"));
+
+        String second = new String(database.read(NOTES_V2).data(), StandardCharsets.UTF_8);
+        String third = new String(database.read(NOTES_V3).data(), StandardCharsets.UTF_8);
+
+        assertEquals(201, second.lines().count());
+        assertTrue(second.startsWith("line 0 of the notes file\n"));
+        assertEquals(second.replace("line 120 of the notes file\n", "changed line one hundred twenty\n"), third);
+    }
+
+    @Test
+    void reportsAbsentObjects() throws Exception {
+        Path index = packIndexes(resource("repo/objects")).getFirst();
+        PackFile pack = new PackFile(index);
+
+        assertEquals(-1, pack.find(new byte[20]));
+        assertEquals(-1, pack.find(HEX.parseHex("ff".repeat(20))));
+        IOException e = assertThrows(IOException.class,
+                () -> new ObjectDatabase(resource("repo/objects")).read("00".repeat(20)));
+        assertTrue(e.getMessage().startsWith("Missing git object 0000"));
+    }
+
+    @Test
+    void skipsPacksThatCannotBeOpened() throws Exception {
+        Path packs = Files.createDirectories(tempDir.resolve("pack"));
+        for (Path file : Files.list(resource("refdelta/pack")).toList()) {
+            Files.copy(file, packs.resolve(file.getFileName()));
+        }
+        Files.write(packs.resolve("pack-broken.idx"), new byte[]{1, 2, 3});
+        Files.write(packs.resolve("pack-broken.pack"), new byte[]{1, 2, 3});
+        ObjectDatabase database = new ObjectDatabase(tempDir);
+
+        assertEquals(GitObject.TYPE_BLOB, database.read(NOTES_V2).type());
+        IOException e = assertThrows(IOException.class, () -> database.read("00".repeat(20)));
+        assertTrue(e.getMessage().contains("pack-broken.idx"), e.getMessage());
+    }
+
+    private static int readAllObjects(Path objects, int windowShift) throws IOException {
+        ObjectDatabase database = new ObjectDatabase(objects);
+        int count = 0;
+        for (Path index : packIndexes(objects)) {
+            PackFile pack = new PackFile(index, windowShift);
+            for (byte[] id : ids(index)) {
+                long offset = pack.find(id);
+                assertTrue(offset >= 0, "object not found: " + HEX.formatHex(id));
+                assertEquals(HEX.formatHex(id), hash(pack.read(offset, database)));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<byte[]> ids(Path index) throws IOException {
+        byte[] data = Files.readAllBytes(index);
+        int count = ByteBuffer.wrap(data).getInt(8 + 255 * 4);
+        List<byte[]> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int start = 8 + 256 * 4 + i * 20;
+            ids.add(Arrays.copyOfRange(data, start, start + 20));
+        }
+        return ids;
+    }
+
+    private static List<Path> packIndexes(Path objects) throws IOException {
+        try (Stream<Path> files = Files.list(objects.resolve("pack"))) {
+            return files.filter(file -> file.toString().endsWith(".idx")).toList();
+        }
+    }
+
+    private static String hash(GitObject object) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update((TYPE_NAMES[object.type()] + " " + object.data().length + "\0").getBytes(StandardCharsets.US_ASCII));
+            return HEX.formatHex(sha1.digest(object.data()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path resource(String name) throws URISyntaxException {
+        return Path.of(PackFileTest.class.getResource(name).toURI());
+    }
+}
@@ -0,0 +1,128 @@
+package com.mcp.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataIndexTest {
+
+    @Test
+    void findsChildrenByParentAndName() {
+        MetadataIndex index = new MetadataIndex();
+        int src = index.put(MetadataIndex.ROOT, "src", MetadataIndex.DIRECTORY, 0, 1);
+        int test = index.put(MetadataIndex.ROOT, "test", MetadataIndex.DIRECTORY, 0, 2);
+        int srcMain = index.put(src, "Main.java", MetadataIndex.FILE, 10, 3);
+        int testMain = index.put(test, "Main.java", MetadataIndex.FILE, 20, 4);
+
+        assertEquals(src, index.child(MetadataIndex.ROOT, "src"));
+        assertEquals(srcMain, index.child(src, "Main.java"));
+        assertEquals(testMain, index.child(test, "Main.java"));
+        assertEquals(MetadataIndex.NONE, index.child(MetadataIndex.ROOT, "Main.java"));
+        assertEquals(MetadataIndex.NONE, index.child(src, "missing"));
+        assertEquals("Main.java", index.name(testMain));
+        assertEquals(20, index.size(testMain));
+        assertEquals(MetadataIndex.FILE, index.type(testMain));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void putUpdatesAnExistingChild() {
+        MetadataIndex index = new MetadataIndex();
+        int dir = index.put(MetadataIndex.ROOT, "dir", MetadataIndex.DIRECTORY, 0, 1);
+        index.put(dir, "a.txt", MetadataIndex.FILE, 1, 1);
+
+        assertEquals(dir, index.put(MetadataIndex.ROOT, "dir", MetadataIndex.DIRECTORY, 0, 5));
+        assertEquals(5, index.modified(dir));
+        assertEquals(3, index.size());
+
+        assertEquals(dir, index.put(MetadataIndex.ROOT, "dir", MetadataIndex.FILE, 7, 6));
+        assertEquals(MetadataIndex.FILE, index.type(dir));
+        assertEquals(MetadataIndex.NONE, index.firstChild(dir));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void removesAnyChildAndItsSubtree() {
+        MetadataIndex index = new MetadataIndex();
+        for (int i = 0; i < 5; i++) {
+            int dir = index.put(MetadataIndex.ROOT, "d" + i, MetadataIndex.DIRECTORY, 0, 0);
+            index.put(dir, "f.txt", MetadataIndex.FILE, i, 0);
+        }
+
+        index.remove(index.child(MetadataIndex.ROOT, "d2"));
+        index.remove(index.child(MetadataIndex.ROOT, "d0"));
+        index.remove(index.child(MetadataIndex.ROOT, "d4"));
+
+        assertEquals(Set.of("d1", "d3"), Set.copyOf(children(index, MetadataIndex.ROOT)));
+        assertEquals(MetadataIndex.NONE, index.child(MetadataIndex.ROOT, "d2"));
+        assertEquals(3, index.size(index.child(index.child(MetadataIndex.ROOT, "d3"), "f.txt")));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void reusesFreedNodesAndReleasesUnusedNames() {
+        MetadataIndex index = new MetadataIndex();
+        int dir = index.put(MetadataIndex.ROOT, "dir", MetadataIndex.DIRECTORY, 0, 0);
+        index.put(dir, "shared", MetadataIndex.FILE, 0, 0);
+        index.put(MetadataIndex.ROOT, "shared", MetadataIndex.FILE, 0, 0);
+        index.put(dir, "once", MetadataIndex.FILE, 0, 0);
+        assertEquals(4, index.nameCount());
+
+        index.remove(dir);
+
+        assertEquals(2, index.nameCount());
+        assertTrue(index.child(MetadataIndex.ROOT, "shared") != MetadataIndex.NONE);
+        int again = index.put(MetadataIndex.ROOT, "again", MetadataIndex.FILE, 0, 0);
+        assertTrue(again <= 4);
+        assertEquals("again", index.name(again));
+        assertEquals("shared", index.name(index.child(MetadataIndex.ROOT, "shared")));
+    }
+
+    @Test
+    void rescanOfALargeDirectoryKeepsLookupsConsistent() {
+        MetadataIndex index = new MetadataIndex();
+        int dir = index.put(MetadataIndex.ROOT, "big", MetadataIndex.DIRECTORY, 0, 0);
+        int entries = 100_000;
+        for (int round = 0; round < 3; round++) {
+            index.clear(dir);
+            for (int i = 0; i < entries; i++) {
+                index.put(dir, "file-" + i, MetadataIndex.FILE, i, round);
+            }
+            for (int i = 0; i < entries; i++) {
+                index.put(dir, "file-" + i, MetadataIndex.FILE, i, round);
+            }
+        }
+
+        assertEquals(entries + 2, index.size());
+        assertEquals(entries + 2, index.nameCount());
+        for (int i = 0; i < entries; i += 997) {
+            int node = index.child(dir, "file-" + i);
+            assertEquals(i, index.size(node));
+            assertEquals(2, index.modified(node));
+        }
+        for (int i = 0; i < entries; i += 2) {
+            index.remove(index.child(dir, "file-" + i));
+        }
+        for (int i = 0; i < entries; i++) {
+            int node = index.child(dir, "file-" + i);
+            assertEquals(i % 2 == 0, node == MetadataIndex.NONE);
+        }
+        assertEquals(entries / 2 + 2, index.nameCount());
+        assertFalse(new HashSet<>(children(index, dir)).contains("file-0"));
+    }
+
+    private static List<String> children(MetadataIndex index, int node) {
+        List<String> names = new ArrayList<>();
+        for (int child = index.firstChild(node); child != MetadataIndex.NONE; child = index.nextSibling(child)) {
+            names.add(index.name(child));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,148 @@
+package com.mcp.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrigramIndexTest {
+    private static final Path ROOT = Path.of("/work").toAbsolutePath();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void extractsSortedDistinctTrigrams() {
+        byte[] data = "abcabc".getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(new int[]{0x616263, 0x626361, 0x636162}, TrigramIndex.trigramsOf(data, 0, data.length));
+        assertArrayEquals(new int[]{0x626361}, TrigramIndex.trigramsOf(data, 1, 3));
+        assertArrayEquals(new int[0], TrigramIndex.trigramsOf(data, 0, 2));
+    }
+
+    @Test
+    void returnsFilesContainingEveryTrigramOfTheNeedle() {
+        TrigramIndex index = new TrigramIndex(ROOT);
+        put(index, "a.txt", "hello world");
+        put(index, "b.txt", "help wanted");
+        put(index, "sub/c.txt", "say hello");
+
+        assertEquals(List.of(file("a.txt"), file("sub/c.txt")), index.candidates(ROOT, bytes("hello")));
+        assertEquals(List.of(file("b.txt")), index.candidates(ROOT, bytes("help")));
+        assertEquals(List.of(), index.candidates(ROOT, bytes("absent")));
+        assertEquals(List.of(file("sub/c.txt")), index.candidates(ROOT.resolve("sub"), bytes("hello")));
+        assertEquals(List.of(file("a.txt")), index.candidates(file("a.txt"), bytes("hello")));
+    }
+
+    @Test
+    void alwaysReturnsUnindexedFiles() {
+        TrigramIndex index = new TrigramIndex(ROOT);
+        put(index, "a.txt", "hello");
+        index.put(file("big.bin"), 1, 1 << 30, null);
+
+        assertEquals(List.of(file("a.txt"), file("big.bin")), index.candidates(ROOT, bytes("hello")));
+        assertEquals(List.of(file("big.bin")), index.candidates(ROOT, bytes("other")));
+    }
+
+    @Test
+    void replacesAndRemovesFiles() {
+        TrigramIndex index = new TrigramIndex(ROOT);
+        put(index, "a.txt", "old content");
+        put(index, "dir/b.txt", "old content");
+        put(index, "dir/c.txt", "old content");
+        put(index, "dirty.txt", "old content");
+
+        put(index, "a.txt", "new content");
+        index.remove(ROOT.resolve("dir"));
+
+        assertEquals(List.of(file("dirty.txt")), index.candidates(ROOT, bytes("old")));
+        assertEquals(List.of(file("a.txt")), index.candidates(ROOT, bytes("new")));
+        assertEquals(2, index.size());
+        index.remove(file("dirty.txt"));
+        assertEquals(List.of(), index.candidates(ROOT, bytes("old")));
+    }
+
+    @Test
+    void tracksStatDataAndDropsUnseenFilesOnReconcile() {
+        TrigramIndex index = new TrigramIndex(ROOT);
+        index.put(file("kept.txt"), 10, 5, TrigramIndex.trigramsOf(bytes("kept"), 0, 4));
+        index.put(file("gone.txt"), 10, 5, TrigramIndex.trigramsOf(bytes("gone"), 0, 4));
+
+        index.beginReconcile();
+        assertTrue(index.isUpToDate(file("kept.txt"), 10, 5));
+        assertFalse(index.isUpToDate(file("gone.txt"), 11, 5));
+        assertFalse(index.isUpToDate(file("new.txt"), 10, 5));
+        index.endReconcile();
+
+        assertEquals(1, index.size());
+        assertEquals(List.of(file("kept.txt")), index.candidates(ROOT, bytes("kept")));
+        assertEquals(List.of(), index.candidates(ROOT, bytes("gone")));
+    }
+
+    @Test
+    void compactsOnceDeadIdsOutnumberLiveOnes() {
+        TrigramIndex index = new TrigramIndex(ROOT);
+        put(index, "stable.txt", "stable text");
+        for (int i = 0; i < 3000; i++) {
+            put(index, "churn.txt", "version " + i);
+        }
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(file("churn.txt")), index.candidates(ROOT, bytes("version 2999")));
+        assertEquals(List.of(), index.candidates(ROOT, bytes("version 1234")));
+        assertEquals(List.of(file("stable.txt")), index.candidates(ROOT, bytes("stable")));
+    }
+
+    @Test
+    void roundTripsThroughASnapshot() throws IOException {
+        TrigramIndex index = new TrigramIndex(ROOT);
+        for (int i = 0; i < 200; i++) {
+            index.put(file("f" + i + ".txt"), i, i * 10L, TrigramIndex.trigramsOf(bytes("file number " + i), 0, ("file number " + i).length()));
+        }
+        index.put(file("big.bin"), 7, 1 << 30, null);
+        index.remove(file("f3.txt"));
+        Path snapshot = tempDir.resolve("snapshots/index.idx");
+        index.save(snapshot);
+
+        TrigramIndex loaded = TrigramIndex.load(ROOT, snapshot);
+
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.candidates(ROOT, bytes("number 1")), loaded.candidates(ROOT, bytes("number 1")));
+        assertEquals(List.of(file("big.bin"), file("f199.txt")), loaded.candidates(ROOT, bytes("number 199")));
+        assertFalse(loaded.candidates(ROOT, bytes("number 3")).contains(file("f3.txt")));
+        assertTrue(loaded.isUpToDate(file("f42.txt"), 42, 420));
+        assertFalse(loaded.isUpToDate(file("f3.txt"), 3, 30));
+        loaded.put(file("f200.txt"), 200, 2000, TrigramIndex.trigramsOf(bytes("number 200"), 0, 10));
+        assertEquals(List.of(file("big.bin"), file("f200.txt")), loaded.candidates(ROOT, bytes("number 200")));
+    }
+
+    @Test
+    void rejectsASnapshotOfAnotherRoot() throws IOException {
+        Path snapshot = tempDir.resolve("index.idx");
+        new TrigramIndex(ROOT).save(snapshot);
+
+        assertThrows(IOException.class, () -> TrigramIndex.load(ROOT.resolve("other"), snapshot));
+    }
+
+    private static void put(TrigramIndex index, String path, String content) {
+        byte[] data = bytes(content);
+        index.put(file(path), 0, data.length, TrigramIndex.trigramsOf(data, 0, data.length));
+    }
+
+    private static Path file(String path) {
+        return ROOT.resolve(path);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
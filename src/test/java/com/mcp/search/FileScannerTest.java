@@ -0,0 +1,89 @@
+package com.mcp.search;
+
+import com.mcp.model.FileMatches;
+import com.mcp.model.LineMatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileScannerTest {
+    private static final int LINE_LENGTH = 60;
+    /**
+     * The line that starts in the first window and ends in the second.
+     */
+    private static final int WINDOW_LINES = 4 * 1024 * 1024 / LINE_LENGTH + 1;
+
+    @TempDir
+    Path tempDir;
+
+    private final FileScanner scanner = new FileScanner();
+
+    @Test
+    void findsMatchesAcrossWindowsWithTheirLineNumbers() throws IOException {
+        Path file = largeFile(WINDOW_LINES * 2 + 100, WINDOW_LINES, WINDOW_LINES * 2 + 50);
+
+        FileMatches matches = scanner.grep(file, ContentMatcher.of(List.of("needle"), false), 0, 10);
+
+        assertArrayEquals(new int[]{2}, matches.matchCounts());
+        assertEquals(List.of(WINDOW_LINES, WINDOW_LINES * 2 + 50), matches.matches().stream().map(LineMatch::line).toList());
+        LineMatch first = matches.matches().getFirst();
+        assertEquals(List.of(line(WINDOW_LINES, true)), first.lines());
+        assertEquals(15, first.column());
+    }
+
+    @Test
+    void regexMatchesLinesSplitByAWindow() throws IOException {
+        Path file = largeFile(WINDOW_LINES + 100, WINDOW_LINES, -1);
+
+        FileMatches matches = scanner.grep(file, ContentMatcher.of(List.of("^line 0*" + WINDOW_LINES + " needle"), true), 0, 10);
+
+        assertArrayEquals(new int[]{1}, matches.matchCounts());
+        assertEquals(WINDOW_LINES, matches.matches().getFirst().line());
+        assertEquals(1, matches.matches().getFirst().column());
+    }
+
+    @Test
+    void findsPatternsInLargeFiles() throws IOException {
+        Path file = largeFile(WINDOW_LINES * 2, WINDOW_LINES * 2 - 1, -1);
+
+        BitSet found = scanner.findPatterns(file, ContentMatcher.of(List.of("needle", "absent"), false));
+
+        assertEquals(BitSet.valueOf(new long[]{1}), found);
+    }
+
+    @Test
+    void skipsBinaryFiles() throws IOException {
+        byte[] content = new byte[5 * 1024 * 1024];
+        content[10] = 0;
+        content[content.length - 1] = 'x';
+        Path file = Files.write(tempDir.resolve("data.bin"), content);
+
+        assertNull(scanner.findPatterns(file, ContentMatcher.of(List.of("x"), false)));
+    }
+
+    /**
+     * Writes numbered lines of a fixed length; the given lines carry a needle.
+     */
+    private Path largeFile(int lines, int needleLine, int otherNeedleLine) throws IOException {
+        StringBuilder content = new StringBuilder(lines * LINE_LENGTH);
+        for (int i = 1; i <= lines; i++) {
+            content.append(line(i, i == needleLine || i == otherNeedleLine)).append('\n');
+        }
+        return Files.writeString(tempDir.resolve("large.txt"), content, StandardCharsets.UTF_8);
+    }
+
+    private static String line(int number, boolean needle) {
+        String text = String.format("line %08d %s", number, needle ? "needle" : "hay");
+        return text + ".".repeat(LINE_LENGTH - 1 - text.length());
+    }
+}
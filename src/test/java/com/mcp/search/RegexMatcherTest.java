@@ -0,0 +1,126 @@
+package com.mcp.search;
+
+import com.mcp.model.FileMatches;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class RegexMatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mapsOffsetsOfMultiByteCharacters() {
+        byte[] content = "héllo wörld 😀 foo".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(List.of("0-4", "19-22"), spans(new RegexMatcher(List.of("h.l", "foo")), content));
+    }
+
+    @Test
+    void mapsOffsetsAfterMalformedBytes() {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] garbage = new byte[400];
+        Arrays.fill(garbage, (byte) 0xE9);
+        content.writeBytes(garbage);
+        content.writeBytes("\nfoo\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of("401-404"), spans(new RegexMatcher(List.of("^foo$")), content.toByteArray()));
+    }
+
+    @Test
+    void mapsOffsetsOfLatin1Text() {
+        byte[] content = "café foo".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertEquals(List.of("5-8"), spans(new RegexMatcher(List.of("foo")), content));
+    }
+
+    @Test
+    void mapsOffsetsAfterTruncatedSequenceAndLiteralReplacementCharacter() {
+        byte[] content = concat(new byte[]{'a', (byte) 0xE2, (byte) 0x82}, "\uFFFDb foo".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of("8-11"), spans(new RegexMatcher(List.of("foo")), content));
+    }
+
+    @Test
+    void findsMatchesAcrossLineAlignedChunks() {
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String prefix = i % 3 == 0 ? "ü" : "é€";
+            int start = text.toString().getBytes(StandardCharsets.UTF_8).length + prefix.getBytes(StandardCharsets.UTF_8).length;
+            text.append(prefix).append("key").append(i).append('\n');
+            int end = start + ("key" + i).length();
+            expected.add(start + "-" + end);
+        }
+
+        List<String> actual = spans(new RegexMatcher(List.of("key\\d+$"), 64), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void splitsLinesLongerThanAChunkAtCharacterBoundaries() {
+        byte[] content = ("€€€€€€€€€€ foo").getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(List.of("31-32", "32-33", "33-34"), spans(new RegexMatcher(List.of("[fo]"), 8), content));
+        assertEquals(List.of("0-3", "3-6", "6-9"), spans(new RegexMatcher(List.of("€"), 8), Arrays.copyOf(content, 9)));
+    }
+
+    @Test
+    void reportsMatchesOfSeveralPatternsByEndOffset() {
+        byte[] content = "abc abd".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(List.of("0-2:0", "0-3:1", "4-6:0"), spansWithPattern(new RegexMatcher(List.of("ab", "abc")), content));
+    }
+
+    @Test
+    void grepReportsTheSameColumnAsLiteralMatchingInLatin1File() throws IOException {
+        Path file = tempDir.resolve("latin1.txt");
+        Files.write(file, "café\nfoo café foo\n".getBytes(StandardCharsets.ISO_8859_1));
+        FileScanner scanner = new FileScanner();
+
+        FileMatches literal = scanner.grep(file, ContentMatcher.of(List.of("foo"), false), 0, 10);
+        FileMatches regex = scanner.grep(file, ContentMatcher.of(List.of("foo"), true), 0, 10);
+
+        assertNotNull(regex);
+        assertEquals(positions(literal), positions(regex));
+        assertEquals(List.of("2:1", "2:10"), positions(regex));
+    }
+
+    private static List<String> positions(FileMatches matches) {
+        return matches.matches().stream().map(match -> match.line() + ":" + match.column()).toList();
+    }
+
+    private static List<String> spans(ContentMatcher matcher, byte[] content) {
+        List<String> spans = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        matcher.scan(buffer, 0, content.length, (start, end, pattern) -> spans.add(start + "-" + end));
+        return spans;
+    }
+
+    private static List<String> spansWithPattern(ContentMatcher matcher, byte[] content) {
+        List<String> spans = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        matcher.scan(buffer, 0, content.length, (start, end, pattern) -> spans.add(start + "-" + end + ":" + pattern));
+        return spans;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}